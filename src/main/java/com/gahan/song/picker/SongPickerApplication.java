@@ -3,12 +3,18 @@ package com.gahan.song.picker;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Map;
+
 
 @SpringBootApplication
 public class SongPickerApplication {
 
   public static void main(String[] args) {
-    SpringApplication.run(SongPickerApplication.class, args);
+    SpringApplication application = new SpringApplication(SongPickerApplication.class);
+    // Defaults only; any application.properties or environment setting wins.
+    application.setDefaultProperties(Map.of(
+            "management.endpoints.web.exposure.include", "health,metrics,prometheus"));
+    application.run(args);
   }
 
 }
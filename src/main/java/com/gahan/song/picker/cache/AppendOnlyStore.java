@@ -0,0 +1,399 @@
+package com.gahan.song.picker.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * On-disk key/value tier that survives restarts. Entries are appended to a
+ * log and found through a hash index in a memory-mapped file next to it, so
+ * neither keys nor values are held on the heap; a lookup reads its record
+ * back from the log, normally from the page cache. The last write for a key
+ * wins, and a {@code null} value records a negative ("not found") answer
+ * that counts as a miss once it is older than the negative TTL.
+ *
+ * <pre>
+ * log    magic, version, then per entry: key length, value length (-1 when negative),
+ *        written-at millis, UTF-8 key, UTF-8 value
+ * index  key hash and log offset (8 bytes each) per slot, open addressing
+ * </pre>
+ *
+ * The index is rebuilt from the log on open. When more than half of the log
+ * is overwritten entries, the log is compacted then, dropping those and any
+ * expired negative answers. Writes are not forced to disk; a record torn by
+ * a crash is cut off on the next open.
+ */
+public class AppendOnlyStore<V> implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(AppendOnlyStore.class);
+
+  static final int MAGIC = 0x53504353; // "SPCS"
+  static final int VERSION = 1;
+  static final int FILE_HEADER_BYTES = 8;
+  static final int RECORD_HEADER_BYTES = 16;
+  private static final int SLOT_BYTES = 16;
+  private static final int INITIAL_CAPACITY = 1024;
+  // One mapping holds at most 2 GB of slots.
+  private static final int MAX_CAPACITY = 1 << 26;
+  private static final int MAX_KEY_BYTES = 1 << 16;
+  private static final int MAX_VALUE_BYTES = 1 << 24;
+
+  private final Path file;
+  private final Path indexFile;
+  private final Function<V, String> encoder;
+  private final Function<String, V> decoder;
+  private final long negativeTtlMillis;
+  private final LongSupplier clock;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private FileChannel channel;
+  private final FileChannel indexChannel;
+  private MappedByteBuffer table;
+  private long tableStart;
+  private int capacity;
+  private int size;
+  private long logSize;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public AppendOnlyStore(Path file, Function<V, String> encoder, Function<String, V> decoder, Duration negativeTtl) {
+    this(file, encoder, decoder, negativeTtl, System::currentTimeMillis);
+  }
+
+  AppendOnlyStore(Path file, Function<V, String> encoder, Function<String, V> decoder, Duration negativeTtl,
+                  LongSupplier clock) {
+    this.file = file;
+    this.indexFile = file.resolveSibling(file.getFileName() + ".idx");
+    this.encoder = encoder;
+    this.decoder = decoder;
+    this.negativeTtlMillis = negativeTtl.toMillis();
+    this.clock = clock;
+    try {
+      Files.createDirectories(file.getParent());
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+              StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      capacity = INITIAL_CAPACITY;
+      table = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * SLOT_BYTES);
+      replay();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not open cache store " + file, e);
+    }
+  }
+
+  public V get(String key, Function<String, V> loader) {
+    CacheBackend.Hit<V> hit = peek(key);
+    if (hit != null) {
+      return hit.value();
+    }
+    V value = loader.apply(key);
+    put(key, value);
+    return value;
+  }
+
+  // The stored answer, or null when the key was never stored or its negative answer expired;
+  // a negative entry has a null value.
+  public CacheBackend.Hit<V> peek(String key) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    lock.readLock().lock();
+    try {
+      long offset = find(keyBytes, hash(keyBytes));
+      if (offset >= 0) {
+        ByteBuffer header = read(offset, RECORD_HEADER_BYTES);
+        int valueLength = header.getInt(4);
+        if (valueLength >= 0) {
+          hits.increment();
+          byte[] value = read(offset + RECORD_HEADER_BYTES + keyBytes.length, valueLength).array();
+          return new CacheBackend.Hit<>(decoder.apply(new String(value, StandardCharsets.UTF_8)));
+        }
+        if (!expired(header)) {
+          hits.increment();
+          return new CacheBackend.Hit<>(null);
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Cache store read failed: {}", e.getMessage());
+    } finally {
+      lock.readLock().unlock();
+    }
+    misses.increment();
+    return null;
+  }
+
+  public void put(String key, V value) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    byte[] valueBytes = value == null ? null : encoder.apply(value).getBytes(StandardCharsets.UTF_8);
+    lock.writeLock().lock();
+    try {
+      long offset = logSize;
+      append(keyBytes, valueBytes, clock.getAsLong());
+      index(keyBytes, hash(keyBytes), offset);
+    } catch (IOException e) {
+      log.warn("Cache store write failed: {}", e.getMessage());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public CacheStats stats() {
+    lock.readLock().lock();
+    try {
+      return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      channel.close();
+      indexChannel.close();
+      Files.deleteIfExists(indexFile);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // Indexes every record in the log, cutting off a torn or unreadable tail, then compacts
+  // the log when overwritten records outnumber live ones.
+  private void replay() throws IOException {
+    if (channel.size() < FILE_HEADER_BYTES || !hasHeader()) {
+      if (channel.size() > 0) {
+        log.info("Cache store {} is not in the current format, starting empty", file);
+      }
+      channel.truncate(0);
+      ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+      writeFully(header, 0);
+      logSize = FILE_HEADER_BYTES;
+      return;
+    }
+
+    long records = 0;
+    long offset = FILE_HEADER_BYTES;
+    logSize = offset;
+    channel.position(offset);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+    try {
+      while (offset < channel.size()) {
+        int keyLength = in.readInt();
+        int valueLength = in.readInt();
+        in.readLong();
+        if (keyLength <= 0 || keyLength > MAX_KEY_BYTES || valueLength < -1 || valueLength > MAX_VALUE_BYTES) {
+          break;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        in.readFully(keyBytes);
+        in.skipNBytes(Math.max(valueLength, 0));
+        logSize = offset + RECORD_HEADER_BYTES + keyLength + Math.max(valueLength, 0);
+        index(keyBytes, hash(keyBytes), offset);
+        records++;
+        offset = logSize;
+      }
+    } catch (EOFException e) {
+      // A record cut short by a crash; everything before it is kept.
+    }
+    if (logSize < channel.size()) {
+      log.warn("Cache store {} has a torn record at {}, dropping {} bytes", file, logSize, channel.size() - logSize);
+      channel.truncate(logSize);
+    }
+    if (records - size > size) {
+      compact(records);
+    }
+  }
+
+  // Copies the live records into a new log, moves it over the old one and points a fresh
+  // index at the copies.
+  private void compact(long records) throws IOException {
+    Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+    FileChannel old = channel;
+    int before = size;
+    channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    writeFully(ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip(), 0);
+    long oldSize = logSize;
+    logSize = FILE_HEADER_BYTES;
+    rehash(capacity, offset -> {
+      ByteBuffer header = read(old, offset, RECORD_HEADER_BYTES);
+      int valueLength = header.getInt(4);
+      if (valueLength < 0 && expired(header)) {
+        return -1;
+      }
+      int length = RECORD_HEADER_BYTES + header.getInt(0) + Math.max(valueLength, 0);
+      long copied = logSize;
+      writeFully(read(old, offset, length), copied);
+      logSize += length;
+      return copied;
+    });
+    old.close();
+    channel.close();
+    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    evictions.add(before - size);
+    log.info("Compacted cache store {} from {} records ({} bytes) to {} ({} bytes)",
+            file, records, oldSize, size, logSize);
+  }
+
+  private boolean hasHeader() throws IOException {
+    ByteBuffer header = read(0, FILE_HEADER_BYTES);
+    return header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+  }
+
+  private boolean expired(ByteBuffer recordHeader) {
+    return clock.getAsLong() - recordHeader.getLong(8) >= negativeTtlMillis;
+  }
+
+  // Log offset of the key's latest record, or -1.
+  private long find(byte[] keyBytes, long hash) throws IOException {
+    int mask = capacity - 1;
+    for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+      long slotHash = table.getLong(slot * SLOT_BYTES);
+      if (slotHash == 0) {
+        return -1;
+      }
+      long offset = table.getLong(slot * SLOT_BYTES + 8);
+      if (slotHash == hash && keyAt(offset, keyBytes)) {
+        return offset;
+      }
+    }
+  }
+
+  private void index(byte[] keyBytes, long hash, long offset) throws IOException {
+    int mask = capacity - 1;
+    for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+      long slotHash = table.getLong(slot * SLOT_BYTES);
+      if (slotHash == 0) {
+        if ((size + 1) * 2 > capacity) {
+          if (capacity == MAX_CAPACITY) {
+            throw new IOException("Cache store " + file + " is full");
+          }
+          rehash(capacity * 2, moved -> moved);
+          index(keyBytes, hash, offset);
+          return;
+        }
+        table.putLong(slot * SLOT_BYTES, hash);
+        table.putLong(slot * SLOT_BYTES + 8, offset);
+        size++;
+        return;
+      }
+      if (slotHash == hash && keyAt(table.getLong(slot * SLOT_BYTES + 8), keyBytes)) {
+        table.putLong(slot * SLOT_BYTES + 8, offset);
+        return;
+      }
+    }
+  }
+
+  // Moves every entry into a new table mapped after the current one, so the old table stays
+  // readable while entries move. The index file is truncated on the next open.
+  private void rehash(int newCapacity, Relocation relocation) throws IOException {
+    MappedByteBuffer old = table;
+    int oldCapacity = capacity;
+    tableStart += (long) oldCapacity * SLOT_BYTES;
+    table = indexChannel.map(FileChannel.MapMode.READ_WRITE, tableStart, (long) newCapacity * SLOT_BYTES);
+    capacity = newCapacity;
+    size = 0;
+    int mask = capacity - 1;
+    for (int i = 0; i < oldCapacity; i++) {
+      long hash = old.getLong(i * SLOT_BYTES);
+      if (hash == 0) {
+        continue;
+      }
+      long offset = relocation.relocate(old.getLong(i * SLOT_BYTES + 8));
+      if (offset < 0) {
+        continue;
+      }
+      int slot = (int) hash & mask;
+      while (table.getLong(slot * SLOT_BYTES) != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table.putLong(slot * SLOT_BYTES, hash);
+      table.putLong(slot * SLOT_BYTES + 8, offset);
+      size++;
+    }
+  }
+
+  private boolean keyAt(long offset, byte[] keyBytes) throws IOException {
+    ByteBuffer record = read(offset, RECORD_HEADER_BYTES + keyBytes.length);
+    if (record.getInt(0) != keyBytes.length) {
+      return false;
+    }
+    return Arrays.equals(record.array(), RECORD_HEADER_BYTES, record.capacity(), keyBytes, 0, keyBytes.length);
+  }
+
+  private void append(byte[] keyBytes, byte[] valueBytes, long writtenAt) throws IOException {
+    int valueLength = valueBytes != null ? valueBytes.length : 0;
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.length + valueLength)
+            .putInt(keyBytes.length)
+            .putInt(valueBytes != null ? valueBytes.length : -1)
+            .putLong(writtenAt)
+            .put(keyBytes);
+    if (valueBytes != null) {
+      record.put(valueBytes);
+    }
+    writeFully(record.flip(), logSize);
+    logSize += record.limit();
+  }
+
+  private ByteBuffer read(long offset, int length) throws IOException {
+    return read(channel, offset, length);
+  }
+
+  private static ByteBuffer read(FileChannel from, long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (from.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException("Cache store record at " + offset + " is cut short");
+      }
+    }
+    return buffer.flip();
+  }
+
+  private void writeFully(ByteBuffer buffer, long offset) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, offset + buffer.position());
+    }
+  }
+
+  // FNV-1a with a final mix so the low bits used for the slot are well spread; 0 marks an
+  // empty slot, so it is never returned.
+  private static long hash(byte[] keyBytes) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : keyBytes) {
+      hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return hash != 0 ? hash : 1;
+  }
+
+  @FunctionalInterface
+  private interface Relocation {
+    // The entry's new log offset, or -1 to drop it.
+    long relocate(long offset) throws IOException;
+  }
+}
@@ -0,0 +1,41 @@
+package com.gahan.song.picker.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A cache tier as the services see it. {@link TtlCache} keeps everything in
+ * this process; {@link RedisCacheBackend} shares entries between app nodes.
+ * As with {@code TtlCache}, a loader returning {@code null} is cached as a
+ * negative entry.
+ */
+public interface CacheBackend<K, V> {
+
+  // A cached answer; value is null for a negative entry.
+  record Hit<V>(V value) {
+  }
+
+  V get(K key, Function<K, V> loader);
+
+  // The cached answer, or null on a miss. Unlike getIfPresent, a negative entry is told
+  // apart from a miss, and unlike containsKey followed by get, it is a single lookup.
+  Hit<V> peek(K key);
+
+  // A negative entry and a miss both come back as null.
+  V getIfPresent(K key);
+
+  // True for live entries, negative ones included; does not count as a hit or miss.
+  boolean containsKey(K key);
+
+  void put(K key, V value);
+
+  // Fetches many entries in one round trip ahead of peek/get calls for them, and returns the
+  // keys no tier holds so the caller can treat them as misses without asking again. Tiers
+  // that are already in memory fetch nothing and return an empty set.
+  default Set<K> preload(Collection<K> keys) {
+    return Set.of();
+  }
+
+  CacheStats stats();
+}
@@ -0,0 +1,122 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.config.ResilienceProperties;
+import com.gahan.song.picker.http.CircuitBreaker;
+import com.gahan.song.picker.http.RateLimiter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Creates the cache tiers for MBIDs, audio features, image analyses and
+ * playlists. With {@code songpicker.cache.backend=local} (the default) each
+ * is a {@link TtlCache} in this process. With {@code redis} each is a
+ * {@link RedisCacheBackend} with a small near cache, so nodes behind a load
+ * balancer share what any of them has fetched. Upstream rate limits and
+ * leases on cold lookups are then shared through Redis too, so adding nodes
+ * does not multiply upstream traffic.
+ */
+@Component
+public class CacheBackends {
+
+  private static final Logger log = LoggerFactory.getLogger(CacheBackends.class);
+
+  @Value("${songpicker.cache.backend:local}")
+  private String backend;
+
+  @Value("${songpicker.cache.redis.host:localhost}")
+  private String redisHost;
+
+  @Value("${songpicker.cache.redis.port:6379}")
+  private int redisPort;
+
+  @Value("${songpicker.cache.redis.pool-size:16}")
+  private int redisPoolSize;
+
+  @Value("${songpicker.cache.redis.timeout:PT0.25S}")
+  private Duration redisTimeout;
+
+  // Entries other nodes add show up here once the near copy expires.
+  @Value("${songpicker.cache.near.max-entries:10000}")
+  private int nearMaxEntries;
+
+  @Value("${songpicker.cache.near.ttl:PT5M}")
+  private Duration nearTtl;
+
+  // How long a node may work on a cold lookup before another node takes it over.
+  @Value("${songpicker.cache.redis.lease-ttl:PT5S}")
+  private Duration leaseTtl;
+
+  @Autowired
+  private ResilienceProperties resilience;
+
+  private RespClient client;
+
+  @PostConstruct
+  void init() {
+    switch (backend) {
+      case "local" -> { }
+      case "redis" -> {
+        client = new RespClient(redisHost, redisPort, redisPoolSize, redisTimeout,
+                new CircuitBreaker("redis", resilience.circuitBreakerSettings()));
+        log.info("Sharing caches through Redis at {}:{}", redisHost, redisPort);
+      }
+      default -> throw new IllegalArgumentException("Unknown songpicker.cache.backend " + backend);
+    }
+  }
+
+  @PreDestroy
+  void close() {
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  public boolean shared() {
+    return client != null;
+  }
+
+  public <V> CacheBackend<String, V> create(String name, CacheCodec<V> codec, int maxEntries, Duration ttl) {
+    if (client == null) {
+      return new TtlCache<>(maxEntries, ttl);
+    }
+    return new RedisCacheBackend<>(name, client, codec, ttl,
+            new TtlCache<>(Math.min(maxEntries, nearMaxEntries), nearTtl.compareTo(ttl) < 0 ? nearTtl : ttl));
+  }
+
+  // For callers that keep their own node-local tier in front; null when nothing is shared.
+  public <V> CacheBackend<String, V> createShared(String name, CacheCodec<V> codec, Duration ttl) {
+    return client != null ? new RedisCacheBackend<>(name, client, codec, ttl, null) : null;
+  }
+
+  // The node's own limiter when nothing is shared, otherwise one limiter for all nodes.
+  public RateLimiter rateLimiter(String name, double permitsPerSecond, RateLimiter local) {
+    return client != null ? new RedisRateLimiter(name, client, permitsPerSecond, local) : local;
+  }
+
+  // True when this node should do the work behind the key: nothing is shared, Redis cannot
+  // be reached, or no other node has taken the lease in the last lease-ttl.
+  public boolean tryLease(String name, String key) {
+    if (client == null) {
+      return true;
+    }
+    try {
+      return client.setIfAbsent("songpicker:lease:" + name + ":" + key, new byte[] {1}, leaseTtl);
+    } catch (RuntimeException e) {
+      log.debug("Shared lease on {} unavailable: {}", key, e.getMessage());
+      return true;
+    }
+  }
+
+  public List<CircuitBreaker> circuitBreakers() {
+    return client != null ? List.of(client.breaker()) : List.of();
+  }
+}
@@ -0,0 +1,15 @@
+package com.gahan.song.picker.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Binary form of a cached value for tiers that leave the process.
+ */
+public interface CacheCodec<V> {
+
+  void write(V value, DataOutputStream out) throws IOException;
+
+  V read(DataInputStream in) throws IOException;
+}
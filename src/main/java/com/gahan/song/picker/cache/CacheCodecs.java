@@ -0,0 +1,135 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SharedPlaylist;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codecs for the shared cache tiers. Strings are a varint length and UTF-8
+ * bytes, with length 0 meaning null; numbers are fixed width.
+ */
+public final class CacheCodecs {
+
+  public static final CacheCodec<String> STRING = new CacheCodec<>() {
+    @Override
+    public void write(String value, DataOutputStream out) throws IOException {
+      writeString(value, out);
+    }
+
+    @Override
+    public String read(DataInputStream in) throws IOException {
+      return readString(in);
+    }
+  };
+
+  public static final CacheCodec<AudioFeatures> AUDIO_FEATURES = new CacheCodec<>() {
+    @Override
+    public void write(AudioFeatures value, DataOutputStream out) throws IOException {
+      out.writeDouble(value.energy());
+      out.writeDouble(value.valence());
+      out.writeDouble(value.danceability());
+    }
+
+    @Override
+    public AudioFeatures read(DataInputStream in) throws IOException {
+      return new AudioFeatures(in.readDouble(), in.readDouble(), in.readDouble());
+    }
+  };
+
+  public static final CacheCodec<SharedPlaylist> PLAYLIST = new CacheCodec<>() {
+    @Override
+    public void write(SharedPlaylist value, DataOutputStream out) throws IOException {
+      writeString(value.snapshotId(), out);
+      writeVarint(value.tracks().size(), out);
+      for (SpotifyTrack track : value.tracks()) {
+        writeString(track.id(), out);
+        writeString(track.name(), out);
+        writeString(track.artist(), out);
+        writeString(track.previewUrl(), out);
+        writeString(track.spotifyUrl(), out);
+      }
+    }
+
+    @Override
+    public SharedPlaylist read(DataInputStream in) throws IOException {
+      String snapshotId = readString(in);
+      int count = readVarint(in);
+      List<SpotifyTrack> tracks = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        tracks.add(new SpotifyTrack(readString(in), readString(in), readString(in), readString(in), readString(in)));
+      }
+      return new SharedPlaylist(snapshotId, tracks);
+    }
+  };
+
+  private CacheCodecs() {
+  }
+
+  public static <V> byte[] encode(CacheCodec<V> codec, V value) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      codec.write(value, out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static <V> V decode(CacheCodec<V> codec, byte[] bytes, int offset) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, bytes.length - offset))) {
+      return codec.read(in);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeString(String value, DataOutputStream out) throws IOException {
+    if (value == null) {
+      writeVarint(0, out);
+      return;
+    }
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(utf8.length + 1, out);
+    out.write(utf8);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = readVarint(in);
+    if (length == 0) {
+      return null;
+    }
+    byte[] utf8 = new byte[length - 1];
+    in.readFully(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  private static void writeVarint(int value, DataOutputStream out) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static int readVarint(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+}
@@ -0,0 +1,4 @@
+package com.gahan.song.picker.cache;
+
+public record CacheStats(long hits, long misses, long evictions, long size) {
+}
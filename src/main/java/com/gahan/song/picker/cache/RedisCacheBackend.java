@@ -0,0 +1,177 @@
+package com.gahan.song.picker.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A cache tier shared by every app node through Redis, with an optional
+ * in-process near cache in front. A value loaded on one node is stored under
+ * {@code songpicker:<name>:<key>} and found by the others, so an upstream
+ * answer is fetched once for the cluster rather than once per node.
+ *
+ * <p>Values are one tag byte (negative or value) followed by the codec's
+ * bytes. Redis failures are logged and treated as misses: the request goes
+ * on to the next tier instead of failing.
+ */
+public class RedisCacheBackend<V> implements CacheBackend<String, V> {
+
+  private static final Logger log = LoggerFactory.getLogger(RedisCacheBackend.class);
+
+  private static final byte NEGATIVE = 0;
+  private static final byte VALUE = 1;
+  private static final int PRELOAD_CHUNK = 500;
+
+  private final String prefix;
+  private final RespClient client;
+  private final CacheCodec<V> codec;
+  private final Duration ttl;
+  private final TtlCache<String, V> near;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // near may be null when the caller keeps its own node-local tier.
+  public RedisCacheBackend(String name, RespClient client, CacheCodec<V> codec, Duration ttl,
+                           TtlCache<String, V> near) {
+    this.prefix = "songpicker:" + name + ":";
+    this.client = client;
+    this.codec = codec;
+    this.ttl = ttl;
+    this.near = near;
+  }
+
+  @Override
+  public V get(String key, Function<String, V> loader) {
+    return near != null ? near.get(key, k -> loadThroughRemote(k, loader)) : loadThroughRemote(key, loader);
+  }
+
+  @Override
+  public Hit<V> peek(String key) {
+    if (near != null) {
+      Hit<V> hit = near.peek(key);
+      if (hit != null) {
+        return hit;
+      }
+    }
+    byte[] stored = fetch(key);
+    if (stored == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    V value = decode(stored);
+    if (near != null) {
+      near.put(key, value);
+    }
+    return new Hit<>(value);
+  }
+
+  @Override
+  public V getIfPresent(String key) {
+    Hit<V> hit = peek(key);
+    return hit != null ? hit.value() : null;
+  }
+
+  // With a near cache only the near tier is consulted, so callers preload() the keys first.
+  @Override
+  public boolean containsKey(String key) {
+    return near != null ? near.containsKey(key) : fetch(key) != null;
+  }
+
+  @Override
+  public void put(String key, V value) {
+    if (near != null) {
+      near.put(key, value);
+    }
+    store(key, value);
+  }
+
+  @Override
+  public Set<String> preload(Collection<String> keys) {
+    Set<String> absent = new HashSet<>();
+    if (near == null) {
+      return absent;
+    }
+    List<String> missing = keys.stream().filter(key -> !near.containsKey(key)).distinct().toList();
+    for (int start = 0; start < missing.size(); start += PRELOAD_CHUNK) {
+      List<String> chunk = missing.subList(start, Math.min(start + PRELOAD_CHUNK, missing.size()));
+      List<String> remoteKeys = new ArrayList<>(chunk.size());
+      chunk.forEach(key -> remoteKeys.add(prefix + key));
+      List<byte[]> values;
+      try {
+        values = client.mget(remoteKeys);
+      } catch (RuntimeException e) {
+        log.debug("Shared cache preload of {} keys failed: {}", chunk.size(), e.getMessage());
+        return absent;
+      }
+      for (int i = 0; i < chunk.size(); i++) {
+        if (values.get(i) != null) {
+          hits.increment();
+          near.put(chunk.get(i), decode(values.get(i)));
+        } else {
+          misses.increment();
+          absent.add(chunk.get(i));
+        }
+      }
+    }
+    return absent;
+  }
+
+  // Hits on either tier; misses are lookups that neither tier could answer.
+  @Override
+  public CacheStats stats() {
+    CacheStats local = near != null ? near.stats() : new CacheStats(0, 0, 0, 0);
+    return new CacheStats(local.hits() + hits.sum(), misses.sum(), local.evictions(), local.size());
+  }
+
+  private V loadThroughRemote(String key, Function<String, V> loader) {
+    byte[] stored = fetch(key);
+    if (stored != null) {
+      hits.increment();
+      return decode(stored);
+    }
+    misses.increment();
+    V value = loader.apply(key);
+    store(key, value);
+    return value;
+  }
+
+  private byte[] fetch(String key) {
+    try {
+      return client.get(prefix + key);
+    } catch (RuntimeException e) {
+      log.debug("Shared cache read of {} failed: {}", key, e.getMessage());
+      return null;
+    }
+  }
+
+  private void store(String key, V value) {
+    byte[] stored;
+    if (value == null) {
+      stored = new byte[] {NEGATIVE};
+    } else {
+      byte[] body = CacheCodecs.encode(codec, value);
+      stored = new byte[body.length + 1];
+      stored[0] = VALUE;
+      System.arraycopy(body, 0, stored, 1, body.length);
+    }
+    try {
+      client.set(prefix + key, stored, ttl);
+    } catch (RuntimeException e) {
+      log.debug("Shared cache write of {} failed: {}", key, e.getMessage());
+    }
+  }
+
+  private V decode(byte[] stored) {
+    return stored.length == 0 || stored[0] == NEGATIVE ? null : CacheCodecs.decode(codec, stored, 1);
+  }
+}
@@ -0,0 +1,62 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.http.RateLimiter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter shared by every app node through Redis. Time is cut into
+ * fixed windows and each call increments the window's counter under
+ * {@code songpicker:rate:<name>:<window>}; a call past the window's share
+ * waits for the next window. Node clocks only need to agree to within a
+ * fraction of a window.
+ *
+ * <p>When Redis cannot be reached the node falls back to its own limiter,
+ * so an outage costs the shared budget rather than stalling lookups.
+ */
+public class RedisRateLimiter implements RateLimiter {
+
+  private static final Logger log = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+  private final String prefix;
+  private final RespClient client;
+  private final RateLimiter fallback;
+  private final long windowMillis;
+  private final long permitsPerWindow;
+
+  // Rates below one per second get longer windows with a single permit each.
+  public RedisRateLimiter(String name, RespClient client, double permitsPerSecond, RateLimiter fallback) {
+    this.prefix = "songpicker:rate:" + name + ":";
+    this.client = client;
+    this.fallback = fallback;
+    this.windowMillis = permitsPerSecond >= 1 ? 1000 : Math.round(1000 / permitsPerSecond);
+    this.permitsPerWindow = Math.max(1, (long) Math.floor(permitsPerSecond * windowMillis / 1000));
+  }
+
+  @Override
+  public boolean tryAcquire(long deadlineNanos) throws InterruptedException {
+    while (true) {
+      long now = System.currentTimeMillis();
+      long window = now / windowMillis;
+      long count;
+      try {
+        count = client.increment(prefix + window, Duration.ofMillis(windowMillis * 2));
+      } catch (RuntimeException e) {
+        log.debug("Shared rate limit unavailable, pacing locally: {}", e.getMessage());
+        return fallback.tryAcquire(deadlineNanos);
+      }
+      if (count <= permitsPerWindow) {
+        return true;
+      }
+      long waitNanos = TimeUnit.MILLISECONDS.toNanos((window + 1) * windowMillis - now);
+      if (System.nanoTime() + waitNanos - deadlineNanos > 0) {
+        return false;
+      }
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.http.CircuitBreaker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal Redis (RESP2) client for the shared cache: GET, MGET, SET with an
+ * expiry (optionally only if absent) and INCR with an expiry, over a small
+ * pool of blocking connections. Every command goes
+ * through a circuit breaker, so an unreachable server costs one timeout per
+ * call only until the breaker opens; callers treat any failure as a miss.
+ */
+public class RespClient implements AutoCloseable {
+
+  private final String host;
+  private final int port;
+  private final int timeoutMillis;
+  private final Semaphore connections;
+  private final BlockingQueue<Connection> idle;
+  private final CircuitBreaker breaker;
+
+  public RespClient(String host, int port, int poolSize, Duration timeout, CircuitBreaker breaker) {
+    this.host = host;
+    this.port = port;
+    this.timeoutMillis = (int) timeout.toMillis();
+    this.connections = new Semaphore(poolSize);
+    this.idle = new ArrayBlockingQueue<>(poolSize);
+    this.breaker = breaker;
+  }
+
+  public CircuitBreaker breaker() {
+    return breaker;
+  }
+
+  public byte[] get(String key) {
+    return (byte[]) execute(bytes("GET"), bytes(key));
+  }
+
+  // One value per key, null where the key is absent.
+  @SuppressWarnings("unchecked")
+  public List<byte[]> mget(List<String> keys) {
+    byte[][] command = new byte[keys.size() + 1][];
+    command[0] = bytes("MGET");
+    for (int i = 0; i < keys.size(); i++) {
+      command[i + 1] = bytes(keys.get(i));
+    }
+    return (List<byte[]>) (List<?>) execute(command);
+  }
+
+  public void set(String key, byte[] value, Duration ttl) {
+    execute(bytes("SET"), bytes(key), value, bytes("PX"), bytes(Long.toString(ttl.toMillis())));
+  }
+
+  // True when the key was absent and is now set; false when another caller holds it.
+  public boolean setIfAbsent(String key, byte[] value, Duration ttl) {
+    return execute(bytes("SET"), bytes(key), value, bytes("NX"), bytes("PX"),
+            bytes(Long.toString(ttl.toMillis()))) != null;
+  }
+
+  // The counter's new value. The expiry is set by the caller that created the counter.
+  public long increment(String key, Duration ttl) {
+    long count = (Long) execute(bytes("INCR"), bytes(key));
+    if (count == 1) {
+      execute(bytes("PEXPIRE"), bytes(key), bytes(Long.toString(ttl.toMillis())));
+    }
+    return count;
+  }
+
+  @Override
+  public void close() {
+    Connection connection;
+    while ((connection = idle.poll()) != null) {
+      connection.close();
+    }
+  }
+
+  private Object execute(byte[]... command) {
+    return breaker.execute(() -> {
+      Connection connection = borrow();
+      boolean reusable = false;
+      try {
+        connection.write(command);
+        Object reply = connection.read();
+        reusable = true;
+        if (reply instanceof ServerError error) {
+          throw new IllegalStateException("Redis error: " + error.message());
+        }
+        return reply;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        giveBack(connection, reusable);
+      }
+    }, e -> !(e instanceof IllegalStateException));
+  }
+
+  private Connection borrow() {
+    try {
+      if (!connections.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new UncheckedIOException(new IOException("No free connection to " + host + ":" + port));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(new IOException("Interrupted waiting for a connection"));
+    }
+    Connection connection = idle.poll();
+    if (connection != null) {
+      return connection;
+    }
+    try {
+      return new Connection(host, port, timeoutMillis);
+    } catch (IOException e) {
+      connections.release();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // A connection that failed mid-reply may still have bytes in flight, so it is dropped.
+  private void giveBack(Connection connection, boolean reusable) {
+    if (!reusable || !idle.offer(connection)) {
+      connection.close();
+    }
+    connections.release();
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private record ServerError(String message) {
+  }
+
+  private static final class Connection {
+
+    private final Socket socket;
+    private final OutputStream out;
+    private final InputStream in;
+
+    Connection(String host, int port, int timeoutMillis) throws IOException {
+      socket = new Socket();
+      try {
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        socket.setSoTimeout(timeoutMillis);
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        socket.close();
+        throw e;
+      }
+      out = new BufferedOutputStream(socket.getOutputStream());
+      in = new BufferedInputStream(socket.getInputStream());
+    }
+
+    void write(byte[][] command) throws IOException {
+      writeLine('*', command.length);
+      for (byte[] argument : command) {
+        writeLine('$', argument.length);
+        out.write(argument);
+        out.write('\r');
+        out.write('\n');
+      }
+      out.flush();
+    }
+
+    Object read() throws IOException {
+      int type = in.read();
+      String line = readLine();
+      switch (type) {
+        case '+':
+          return line;
+        case '-':
+          return new ServerError(line);
+        case ':':
+          return Long.parseLong(line);
+        case '$': {
+          int length = Integer.parseInt(line);
+          if (length < 0) {
+            return null;
+          }
+          byte[] value = in.readNBytes(length);
+          if (value.length < length || in.read() != '\r' || in.read() != '\n') {
+            throw new EOFException("Truncated bulk reply");
+          }
+          return value;
+        }
+        case '*': {
+          int count = Integer.parseInt(line);
+          if (count < 0) {
+            return null;
+          }
+          List<Object> items = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            items.add(read());
+          }
+          return items;
+        }
+        default:
+          throw new IOException("Unexpected reply type " + type);
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+        // nothing left to release
+      }
+    }
+
+    private void writeLine(char type, int value) throws IOException {
+      out.write(type);
+      out.write(bytes(Integer.toString(value)));
+      out.write('\r');
+      out.write('\n');
+    }
+
+    private String readLine() throws IOException {
+      StringBuilder line = new StringBuilder();
+      int b;
+      while ((b = in.read()) != '\r') {
+        if (b < 0) {
+          throw new EOFException("Connection closed");
+        }
+        line.append((char) b);
+      }
+      if (in.read() != '\n') {
+        throw new IOException("Malformed reply line");
+      }
+      return line.toString();
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide table of every track seen in a playlist, keyed by Spotify track
+ * id. Each track is held once, with its MBID and audio features once they are
+ * known, and playlists refer to tracks by their {@code int} slot here, so a
+ * track shared by many playlists is stored and enriched once.
+ *
+ * <p>Once the table is full, each new track takes the slot of one that no
+ * playlist has used lately, found by a clock sweep over the slots. A slot's
+ * stamp changes when it is reused and refs remember the stamps they were
+ * given, so a ref to a reused slot reads as unknown and its writes are
+ * dropped. Refs also keep the playlist's own tracks, so only the enrichment
+ * held here is lost, and the MBID and feature caches still have that.
+ *
+ * <p>Interning takes a lock; reading and recording enrichment do not.
+ */
+@Component
+public class TrackRegistry {
+
+  private static final Logger log = LoggerFactory.getLogger(TrackRegistry.class);
+
+  private static final int PAGE_BITS = 12;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+  @Value("${songpicker.track-registry.max-tracks:1000000}")
+  private int maxTracks;
+
+  // Slots live in fixed-size pages that never move, so writes need no lock.
+  private volatile Page[] pages = new Page[0];
+  private final Map<String, Integer> positions = new HashMap<>();
+  private int size;
+  private int hand;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public TrackRegistry() {
+  }
+
+  TrackRegistry(int maxTracks) {
+    this.maxTracks = maxTracks;
+  }
+
+  // tracks holds the registry's instance of each track, or the given one if its slot was
+  // reused before interning finished; such a track gets stamp -1, which no slot has.
+  public record Refs(List<SpotifyTrack> tracks, int[] refs, int[] stamps) {
+  }
+
+  public record Enrichment(String[] mbids, AudioFeatures[] features) {
+  }
+
+  private record Slot(SpotifyTrack track, int stamp, String mbid, AudioFeatures features) {
+  }
+
+  private static final class Page {
+    final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(PAGE_SIZE);
+    // Set when a playlist uses the slot, cleared as the clock hand passes.
+    final AtomicIntegerArray used = new AtomicIntegerArray(PAGE_SIZE);
+  }
+
+  // Refs for the given tracks, interning the ones not seen before.
+  public synchronized Refs intern(List<SpotifyTrack> playlist) {
+    int[] refs = new int[playlist.size()];
+    for (int i = 0; i < refs.length; i++) {
+      SpotifyTrack track = playlist.get(i);
+      Integer position = positions.get(key(track));
+      if (position != null) {
+        hits++;
+        markUsed(position);
+      } else {
+        misses++;
+        position = add(track);
+      }
+      refs[i] = position;
+    }
+
+    SpotifyTrack[] tracks = new SpotifyTrack[refs.length];
+    int[] stamps = new int[refs.length];
+    for (int i = 0; i < refs.length; i++) {
+      Slot slot = slot(refs[i]);
+      boolean same = key(slot.track()).equals(key(playlist.get(i)));
+      tracks[i] = same ? slot.track() : playlist.get(i);
+      stamps[i] = same ? slot.stamp() : -1;
+    }
+    return new Refs(List.of(tracks), refs, stamps);
+  }
+
+  // What is already known for each track; nothing for tracks whose slot has been reused.
+  public Enrichment enrichment(Refs refs) {
+    int[] positions = refs.refs();
+    String[] knownMbids = new String[positions.length];
+    AudioFeatures[] knownFeatures = new AudioFeatures[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      Slot slot = slot(positions[i]);
+      if (slot.stamp() == refs.stamps()[i]) {
+        knownMbids[i] = slot.mbid();
+        knownFeatures[i] = slot.features();
+        markUsed(positions[i]);
+      }
+    }
+    return new Enrichment(knownMbids, knownFeatures);
+  }
+
+  public void setMbid(Refs refs, int index, String mbid) {
+    update(refs, index, mbid, null);
+  }
+
+  public void setFeatures(Refs refs, int index, AudioFeatures trackFeatures) {
+    update(refs, index, null, trackFeatures);
+  }
+
+  public synchronized CacheStats stats() {
+    return new CacheStats(hits, misses, evictions, size);
+  }
+
+  // Retries only when another write to the same slot got in first.
+  private void update(Refs refs, int index, String mbid, AudioFeatures trackFeatures) {
+    int position = refs.refs()[index];
+    AtomicReferenceArray<Slot> slots = pages[position >>> PAGE_BITS].slots;
+    int offset = position & (PAGE_SIZE - 1);
+    while (true) {
+      Slot slot = slots.get(offset);
+      if (slot.stamp() != refs.stamps()[index]) {
+        return;
+      }
+      Slot updated = new Slot(slot.track(), slot.stamp(), mbid != null ? mbid : slot.mbid(),
+              trackFeatures != null ? trackFeatures : slot.features());
+      if (slots.compareAndSet(offset, slot, updated)) {
+        return;
+      }
+    }
+  }
+
+  private int add(SpotifyTrack track) {
+    int position;
+    int stamp = 0;
+    if (size < Math.max(1, maxTracks)) {
+      position = size++;
+      if (position >>> PAGE_BITS == pages.length) {
+        Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+        grown[pages.length] = new Page();
+        pages = grown;
+      }
+      if (size == maxTracks) {
+        log.info("Track registry reached {} tracks, evicting the least recently used from now on", size);
+      }
+    } else {
+      position = evict();
+      stamp = slot(position).stamp() + 1;
+    }
+    pages[position >>> PAGE_BITS].slots.set(position & (PAGE_SIZE - 1), new Slot(track, stamp, null, null));
+    markUsed(position);
+    positions.put(key(track), position);
+    return position;
+  }
+
+  // Clock sweep: a slot used since the hand last passed it gets another lap.
+  private int evict() {
+    while (true) {
+      int position = hand;
+      hand = (hand + 1) % size;
+      if (pages[position >>> PAGE_BITS].used.getAndSet(position & (PAGE_SIZE - 1), 0) == 0) {
+        positions.remove(key(slot(position).track()));
+        evictions++;
+        return position;
+      }
+    }
+  }
+
+  private void markUsed(int position) {
+    AtomicIntegerArray used = pages[position >>> PAGE_BITS].used;
+    int offset = position & (PAGE_SIZE - 1);
+    if (used.get(offset) == 0) {
+      used.lazySet(offset, 1);
+    }
+  }
+
+  private Slot slot(int position) {
+    return pages[position >>> PAGE_BITS].slots.get(position & (PAGE_SIZE - 1));
+  }
+
+  // Local files in a playlist have no Spotify id.
+  private static String key(SpotifyTrack track) {
+    return track.id() != null ? track.id() : "local:" + track.name() + '\u001f' + track.artist();
+  }
+}
@@ -0,0 +1,113 @@
+package com.gahan.song.picker.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded LRU cache with a time-to-live per entry. A loader returning
+ * {@code null} is remembered as a negative entry, so "not found" answers are
+ * cached the same way as real values. Loader exceptions are not cached.
+ */
+public class TtlCache<K, V> implements CacheBackend<K, V> {
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final Map<K, Entry<V>> entries;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  public TtlCache(int maxSize, Duration ttl) {
+    this.maxSize = maxSize;
+    this.ttlNanos = ttl.toNanos();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        if (size() > TtlCache.this.maxSize) {
+          evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  public V get(K key, Function<K, V> loader) {
+    Entry<V> entry = lookup(key);
+    if (entry != null) {
+      return entry.value;
+    }
+
+    V value = loader.apply(key);
+    put(key, value);
+    return value;
+  }
+
+  @Override
+  public Hit<V> peek(K key) {
+    Entry<V> entry = lookup(key);
+    return entry != null ? new Hit<>(entry.value) : null;
+  }
+
+  // Unlike get(), a negative entry and a miss both come back as null here.
+  @Override
+  public V getIfPresent(K key) {
+    Entry<V> entry = lookup(key);
+    return entry != null ? entry.value : null;
+  }
+
+  // True for live entries, negative ones included; does not count as a hit or miss.
+  @Override
+  public boolean containsKey(K key) {
+    synchronized (entries) {
+      Entry<V> entry = entries.get(key);
+      return entry != null && System.nanoTime() - entry.loadedAt < ttlNanos;
+    }
+  }
+
+  @Override
+  public void put(K key, V value) {
+    synchronized (entries) {
+      entries.put(key, new Entry<>(value, System.nanoTime()));
+    }
+  }
+
+  public void invalidate(K key) {
+    synchronized (entries) {
+      entries.remove(key);
+    }
+  }
+
+  private Entry<V> lookup(K key) {
+    synchronized (entries) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null) {
+        if (System.nanoTime() - entry.loadedAt < ttlNanos) {
+          hits.increment();
+          return entry;
+        }
+        entries.remove(key);
+        evictions.increment();
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  @Override
+  public CacheStats stats() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+  }
+
+  private record Entry<V>(V value, long loadedAt) {
+  }
+}
@@ -0,0 +1,78 @@
+package com.gahan.song.picker.config;
+
+import com.gahan.song.picker.http.OverloadedException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService enrichmentExecutor(@Value("${songpicker.enrichment.threads:16}") int threads) {
+    return Executors.newFixedThreadPool(threads, daemonThreads("enrichment-"));
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService playlistPageExecutor(@Value("${songpicker.spotify.page-concurrency:4}") int threads) {
+    return Executors.newFixedThreadPool(threads, daemonThreads("playlist-page-"));
+  }
+
+  // The vision and playlist stages are bulkheads: each has its own threads and a bounded
+  // queue, so a slow OpenAI or Spotify cannot take the other stage's capacity, and work
+  // beyond the queue is rejected as overload instead of piling up.
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService visionExecutor(@Value("${songpicker.pipeline.vision-threads:16}") int threads,
+                                        @Value("${songpicker.pipeline.vision-queue:256}") int queue) {
+    return stage("vision", threads, queue);
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService playlistExecutor(@Value("${songpicker.pipeline.playlist-threads:16}") int threads,
+                                          @Value("${songpicker.pipeline.playlist-queue:64}") int queue) {
+    return stage("playlist", threads, queue);
+  }
+
+  // Runs MusicBrainz/AcousticBrainz attempts, including hedges, so a caller can stop
+  // waiting at its deadline without blocking on the socket.
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService hedgeExecutor(@Value("${songpicker.resilience.threads:32}") int threads) {
+    return Executors.newFixedThreadPool(threads, daemonThreads("upstream-"));
+  }
+
+  // Starts admitted analyze requests, so reading and hashing the uploads does not run on
+  // whichever thread freed the permit. Admission bounds how many are started at once, so
+  // the queue cannot grow past that.
+  @Bean(destroyMethod = "shutdownNow")
+  public ExecutorService requestExecutor(@Value("${songpicker.admission.threads:8}") int threads) {
+    return Executors.newFixedThreadPool(threads, daemonThreads("request-"));
+  }
+
+  @Bean(destroyMethod = "shutdownNow")
+  public ScheduledExecutorService progressScheduler(@Value("${songpicker.stream.threads:2}") int threads) {
+    return Executors.newScheduledThreadPool(threads, daemonThreads("progress-"));
+  }
+
+  private static ExecutorService stage(String name, int threads, int queue) {
+    return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue),
+            daemonThreads(name + "-"), (task, executor) -> {
+              throw new OverloadedException("The " + name + " stage is full", Duration.ofSeconds(1));
+            });
+  }
+
+  static CustomizableThreadFactory daemonThreads(String prefix) {
+    CustomizableThreadFactory factory = new CustomizableThreadFactory(prefix);
+    factory.setDaemon(true);
+    return factory;
+  }
+}
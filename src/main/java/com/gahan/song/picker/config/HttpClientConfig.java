@@ -0,0 +1,88 @@
+package com.gahan.song.picker.config;
+
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.ObservationExecChainHandler;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One pooled, keep-alive HTTP client shared by every outbound call (Spotify,
+ * MusicBrainz, AcousticBrainz, OpenAI), with per-host connection limits and read timeouts.
+ * Responses are transparently decompressed by the client. Every exchange is
+ * observed, which also yields a per-host count of requests in flight.
+ */
+@Configuration
+@EnableConfigurationProperties({HttpClientProperties.class, ResilienceProperties.class})
+public class HttpClientConfig {
+
+  @Bean
+  public PoolingHttpClientConnectionManager httpConnectionManager(HttpClientProperties properties) {
+    ConnectionConfig defaultConfig = connectionConfig(properties, properties.getReadTimeout());
+    Map<String, ConnectionConfig> hostConfigs = new HashMap<>();
+    properties.getHostReadTimeouts().forEach((host, readTimeout) ->
+            hostConfigs.put(host, connectionConfig(properties, readTimeout)));
+
+    PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(properties.getMaxTotalConnections())
+            .setMaxConnPerRoute(properties.getMaxConnectionsPerHost())
+            .setConnectionConfigResolver(route ->
+                    hostConfigs.getOrDefault(route.getTargetHost().getHostName(), defaultConfig))
+            .build();
+
+    for (Map.Entry<String, Integer> limit : properties.getHostLimits().entrySet()) {
+      manager.setMaxPerRoute(httpsRoute(limit.getKey()), limit.getValue());
+    }
+    return manager;
+  }
+
+  @Bean
+  public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpConnectionManager,
+                                        HttpClientProperties properties,
+                                        ObservationRegistry observationRegistry) {
+    return HttpClients.custom()
+            .setConnectionManager(httpConnectionManager)
+            .addExecInterceptorFirst("micrometer", new ObservationExecChainHandler(observationRegistry))
+            // No response timeout here, so the per-host socket timeout applies to responses.
+            .setDefaultRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+                    .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+            .build();
+  }
+
+  @Bean
+  public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+    return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+  }
+
+  private static ConnectionConfig connectionConfig(HttpClientProperties properties, Duration readTimeout) {
+    return ConnectionConfig.custom()
+            .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+            .setSocketTimeout(Timeout.of(readTimeout))
+            .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+            .build();
+  }
+
+  // Must match the route the client plans for https://host, which uses the explicit port.
+  static HttpRoute httpsRoute(String host) {
+    return new HttpRoute(new HttpHost("https", host, 443), null, true);
+  }
+}
@@ -0,0 +1,93 @@
+package com.gahan.song.picker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "songpicker.http")
+public class HttpClientProperties {
+
+  private int maxTotalConnections = 200;
+  private int maxConnectionsPerHost = 20;
+  private Duration connectTimeout = Duration.ofSeconds(5);
+  private Duration readTimeout = Duration.ofSeconds(60);
+  private Duration connectionRequestTimeout = Duration.ofSeconds(5);
+  private Duration idleTimeout = Duration.ofSeconds(30);
+  private Map<String, Integer> hostLimits = new LinkedHashMap<>(Map.of(
+          "musicbrainz.org", 4,
+          "acousticbrainz.org", 16,
+          "api.spotify.com", 16,
+          "accounts.spotify.com", 4,
+          "api.openai.com", 32));
+  // Metadata lookups are optional enrichment; waiting the full read timeout on them only
+  // ties up enrichment threads.
+  private Map<String, Duration> hostReadTimeouts = new LinkedHashMap<>(Map.of(
+          "musicbrainz.org", Duration.ofSeconds(5),
+          "acousticbrainz.org", Duration.ofSeconds(5)));
+
+  public int getMaxTotalConnections() {
+    return maxTotalConnections;
+  }
+
+  public void setMaxTotalConnections(int maxTotalConnections) {
+    this.maxTotalConnections = maxTotalConnections;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout(Duration connectTimeout) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public Duration getReadTimeout() {
+    return readTimeout;
+  }
+
+  public void setReadTimeout(Duration readTimeout) {
+    this.readTimeout = readTimeout;
+  }
+
+  public Duration getConnectionRequestTimeout() {
+    return connectionRequestTimeout;
+  }
+
+  public void setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+    this.connectionRequestTimeout = connectionRequestTimeout;
+  }
+
+  public Duration getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout(Duration idleTimeout) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public Map<String, Integer> getHostLimits() {
+    return hostLimits;
+  }
+
+  public void setHostLimits(Map<String, Integer> hostLimits) {
+    this.hostLimits = hostLimits;
+  }
+
+  public Map<String, Duration> getHostReadTimeouts() {
+    return hostReadTimeouts;
+  }
+
+  public void setHostReadTimeouts(Map<String, Duration> hostReadTimeouts) {
+    this.hostReadTimeouts = hostReadTimeouts;
+  }
+}
@@ -0,0 +1,28 @@
+package com.gahan.song.picker.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  public MeterBinder httpConnectionPoolMetrics(PoolingHttpClientConnectionManager httpConnectionManager) {
+    return new PoolingHttpClientConnectionManagerMetricsBinder(httpConnectionManager, "outbound");
+  }
+
+  // Queue depth and active threads for each pipeline pool, tagged with the bean name.
+  @Bean
+  public MeterBinder executorMetrics(Map<String, ExecutorService> executors) {
+    return registry -> executors.forEach((name, executor) ->
+            new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(registry));
+  }
+}
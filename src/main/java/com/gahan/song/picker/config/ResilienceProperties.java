@@ -0,0 +1,120 @@
+package com.gahan.song.picker.config;
+
+import com.gahan.song.picker.http.CircuitBreaker;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker, hedging and retry budget settings for the metadata
+ * upstreams (MusicBrainz and AcousticBrainz). Each upstream gets its own
+ * breaker and budget built from the same settings.
+ */
+@ConfigurationProperties(prefix = "songpicker.resilience")
+public class ResilienceProperties {
+
+  private int windowSize = 20;
+  private int minimumCalls = 10;
+  private double failureRateThreshold = 0.5;
+  private Duration slowCallDuration = Duration.ofSeconds(2);
+  private double slowCallRateThreshold = 0.8;
+  private Duration openDuration = Duration.ofSeconds(30);
+  private int halfOpenProbes = 3;
+  private Duration hedgeDelay = Duration.ofMillis(500);
+  private double retryRatio = 0.1;
+  private double retryMinPerSecond = 1;
+  private double retryMaxBalance = 10;
+
+  public CircuitBreaker.Settings circuitBreakerSettings() {
+    return new CircuitBreaker.Settings(windowSize, minimumCalls, failureRateThreshold,
+            slowCallDuration, slowCallRateThreshold, openDuration, halfOpenProbes);
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  public void setWindowSize(int windowSize) {
+    this.windowSize = windowSize;
+  }
+
+  public int getMinimumCalls() {
+    return minimumCalls;
+  }
+
+  public void setMinimumCalls(int minimumCalls) {
+    this.minimumCalls = minimumCalls;
+  }
+
+  public double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public void setFailureRateThreshold(double failureRateThreshold) {
+    this.failureRateThreshold = failureRateThreshold;
+  }
+
+  public Duration getSlowCallDuration() {
+    return slowCallDuration;
+  }
+
+  public void setSlowCallDuration(Duration slowCallDuration) {
+    this.slowCallDuration = slowCallDuration;
+  }
+
+  public double getSlowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+    this.slowCallRateThreshold = slowCallRateThreshold;
+  }
+
+  public Duration getOpenDuration() {
+    return openDuration;
+  }
+
+  public void setOpenDuration(Duration openDuration) {
+    this.openDuration = openDuration;
+  }
+
+  public int getHalfOpenProbes() {
+    return halfOpenProbes;
+  }
+
+  public void setHalfOpenProbes(int halfOpenProbes) {
+    this.halfOpenProbes = halfOpenProbes;
+  }
+
+  public Duration getHedgeDelay() {
+    return hedgeDelay;
+  }
+
+  public void setHedgeDelay(Duration hedgeDelay) {
+    this.hedgeDelay = hedgeDelay;
+  }
+
+  public double getRetryRatio() {
+    return retryRatio;
+  }
+
+  public void setRetryRatio(double retryRatio) {
+    this.retryRatio = retryRatio;
+  }
+
+  public double getRetryMinPerSecond() {
+    return retryMinPerSecond;
+  }
+
+  public void setRetryMinPerSecond(double retryMinPerSecond) {
+    this.retryMinPerSecond = retryMinPerSecond;
+  }
+
+  public double getRetryMaxBalance() {
+    return retryMaxBalance;
+  }
+
+  public void setRetryMaxBalance(double retryMaxBalance) {
+    this.retryMaxBalance = retryMaxBalance;
+  }
+}
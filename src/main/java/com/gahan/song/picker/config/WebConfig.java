@@ -0,0 +1,32 @@
+package com.gahan.song.picker.config;
+
+import com.gahan.song.picker.http.AdmissionQueue;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+  @Value("${songpicker.pipeline.request-timeout:PT2M}")
+  private Duration requestTimeout;
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.setDefaultTimeout(requestTimeout.toMillis());
+  }
+
+  // Shared by the analyze endpoints; a batch holds one permit for all of its images.
+  @Bean
+  public AdmissionQueue analyzeAdmission(@Value("${songpicker.admission.max-in-flight:32}") int maxInFlight,
+                                         @Value("${songpicker.admission.max-queued:64}") int maxQueued,
+                                         @Value("${songpicker.admission.max-queued-per-client:16}") int perClient,
+                                         @Value("${songpicker.admission.max-wait:PT10S}") Duration maxWait) {
+    return new AdmissionQueue(new AdmissionQueue.Settings(maxInFlight, maxQueued, perClient, maxWait));
+  }
+}
@@ -0,0 +1,39 @@
+package com.gahan.song.picker.controller;
+
+import com.gahan.song.picker.cache.CacheStats;
+import com.gahan.song.picker.cache.TrackRegistry;
+import com.gahan.song.picker.service.AcousticBrainzService;
+import com.gahan.song.picker.service.OpenAIService;
+import com.gahan.song.picker.service.SpotifyService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+  @Autowired
+  private AcousticBrainzService acousticBrainzService;
+
+  @Autowired
+  private SpotifyService spotifyService;
+
+  @Autowired
+  private TrackRegistry trackRegistry;
+
+  @Autowired
+  private OpenAIService openAIService;
+
+  @GetMapping("/stats")
+  public Map<String, CacheStats> stats() {
+    Map<String, CacheStats> stats = new LinkedHashMap<>(acousticBrainzService.cacheStats());
+    stats.put("playlists", spotifyService.cacheStats());
+    stats.put("tracks", trackRegistry.stats());
+    stats.put("image_analyses", openAIService.cacheStats());
+    return stats;
+  }
+}
@@ -0,0 +1,51 @@
+package com.gahan.song.picker.controller;
+
+import com.gahan.song.picker.http.CircuitBreaker;
+import com.gahan.song.picker.service.AcousticBrainzService;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/http")
+public class HttpClientController {
+
+  @Autowired
+  private PoolingHttpClientConnectionManager httpConnectionManager;
+
+  @Autowired
+  private AcousticBrainzService acousticBrainzService;
+
+  @GetMapping("/pool")
+  public Map<String, Map<String, Integer>> pool() {
+    Map<String, Map<String, Integer>> stats = new LinkedHashMap<>();
+    stats.put("total", describe(httpConnectionManager.getTotalStats()));
+    for (HttpRoute route : httpConnectionManager.getRoutes()) {
+      stats.put(route.getTargetHost().getHostName(), describe(httpConnectionManager.getStats(route)));
+    }
+    return stats;
+  }
+
+  @GetMapping("/circuits")
+  public Map<String, CircuitBreaker.State> circuits() {
+    Map<String, CircuitBreaker.State> states = new LinkedHashMap<>();
+    for (CircuitBreaker breaker : acousticBrainzService.circuitBreakers()) {
+      states.put(breaker.name(), breaker.state());
+    }
+    return states;
+  }
+
+  private static Map<String, Integer> describe(PoolStats stats) {
+    return Map.of(
+            "leased", stats.getLeased(),
+            "available", stats.getAvailable(),
+            "pending", stats.getPending(),
+            "max", stats.getMax());
+  }
+}
@@ -1,62 +1,234 @@
 package com.gahan.song.picker.controller;
 
+import com.gahan.song.picker.http.AdmissionQueue;
+import com.gahan.song.picker.http.OverloadedException;
+import com.gahan.song.picker.model.SpotifyTrack;
+import com.gahan.song.picker.scoring.TrackColumns;
 import com.gahan.song.picker.service.OpenAIService;
+import com.gahan.song.picker.service.RecommendationStreamService;
 import com.gahan.song.picker.service.SpotifyService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
 @RestController
 @RequestMapping("/api/image")
 @CrossOrigin(origins = {"http://localhost:3000", "http://127.0.0.1:3000"})
 public class ImageController {
 
+  private static final Logger log = LoggerFactory.getLogger(ImageController.class);
+
   @Autowired
   private OpenAIService openAIService;
 
   @Autowired
   private SpotifyService spotifyService;
 
+  @Autowired
+  private RecommendationStreamService recommendationStreamService;
+
+  @Autowired
+  private AdmissionQueue analyzeAdmission;
+
+  @Autowired
+  private ExecutorService requestExecutor;
+
+  @Value("${songpicker.pipeline.request-timeout:PT2M}")
+  private Duration streamTimeout;
+
+  @Value("${songpicker.batch.max-images:50}")
+  private int maxBatchImages;
+
   @GetMapping("/test")
   public String test() {
     return "Image controller is working!";
   }
 
+  // The image analysis and the playlist load/enrichment run concurrently and are only
+  // joined for scoring; the servlet thread is released while both are in flight. Scoring
+  // runs on the request executor, not on whichever stage thread finished last.
   @PostMapping("/analyze")
-  public ResponseEntity<?> analyzeImage(
+  public DeferredResult<ResponseEntity<?>> analyzeImage(
+          @RequestParam("image") MultipartFile file,
+          @RequestParam(value = "playlistUrl", required = false) String playlistUrl,
+          HttpServletRequest request) {
+
+    log.debug("Analyze request for {}", file.getOriginalFilename());
+
+    if (file.isEmpty()) {
+      return respond(ResponseEntity.badRequest().body("Please select a file"));
+    }
+
+    return admitted(request, () -> {
+      CompletableFuture<TrackColumns> playlist = spotifyService.loadPlaylistAsync(playlistUrl);
+      CompletableFuture<String> analysis = openAIService.analyzeImageAsync(file);
+
+      return analysis.<TrackColumns, ResponseEntity<?>>thenCombineAsync(playlist, (text, columns) -> {
+        List<SpotifyTrack> spotifyTracks = spotifyService.recommend(text, columns);
+        return ResponseEntity.ok(Map.of(
+                "analysis", text,
+                "spotify_tracks", spotifyTracks
+        ));
+      }, requestExecutor);
+    });
+  }
+
+  // Many images against one playlist: the playlist is loaded and enriched once, the image
+  // analyses run concurrently, and every image is scored against the shared columns.
+  @PostMapping("/analyze/batch")
+  public DeferredResult<ResponseEntity<?>> analyzeImageBatch(
+          @RequestParam("images") List<MultipartFile> files,
+          @RequestParam("playlistUrl") String playlistUrl,
+          HttpServletRequest request) {
+
+    log.debug("Batch analyze request for {} images", files.size());
+
+    if (files.isEmpty() || files.stream().anyMatch(MultipartFile::isEmpty)) {
+      return respond(ResponseEntity.badRequest().body("Please select non-empty files"));
+    }
+    if (files.size() > maxBatchImages) {
+      return respond(ResponseEntity.badRequest().body("At most " + maxBatchImages + " images per batch"));
+    }
+
+    return admitted(request, () -> {
+      CompletableFuture<TrackColumns> playlist = spotifyService.loadPlaylistAsync(playlistUrl);
+      List<CompletableFuture<String>> analyses = new ArrayList<>(files.size());
+      for (MultipartFile file : files) {
+        analyses.add(openAIService.analyzeImageAsync(file));
+      }
+
+      return CompletableFuture.allOf(analyses.toArray(new CompletableFuture<?>[0]))
+              .<TrackColumns, ResponseEntity<?>>thenCombineAsync(playlist, (done, columns) -> {
+                List<String> texts = analyses.stream().map(CompletableFuture::join).toList();
+                List<List<SpotifyTrack>> tracks = spotifyService.recommendBatch(texts, columns);
+
+                List<Map<String, Object>> results = new ArrayList<>(files.size());
+                for (int i = 0; i < files.size(); i++) {
+                  results.add(Map.of(
+                          "filename", Objects.toString(files.get(i).getOriginalFilename(), ""),
+                          "analysis", texts.get(i),
+                          "spotify_tracks", tracks.get(i)
+                  ));
+                }
+                return ResponseEntity.ok(Map.of("results", results));
+              }, requestExecutor);
+    });
+  }
+
+  // Same inputs as /analyze, answered as Server-Sent Events: "analysis", then "progress"
+  // with the running top 5 while the playlist enriches, then "complete". An immediate
+  // admission rejection is still a plain 429; one that comes after queueing ends the stream.
+  @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter analyzeImageStream(
           @RequestParam("image") MultipartFile file,
-          @RequestParam(value = "playlistUrl", required = false) String playlistUrl) {
+          @RequestParam(value = "playlistUrl", required = false) String playlistUrl,
+          HttpServletRequest request) {
 
-    System.out.println("=== CONTROLLER RECEIVED REQUEST ===");
-    System.out.println("File: " + file.getOriginalFilename());
+    log.debug("Streaming analyze request for {}", file.getOriginalFilename());
 
+    SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
     if (file.isEmpty()) {
-      return ResponseEntity.badRequest().body("Please select a file");
+      emitter.completeWithError(new IllegalArgumentException("Please select a file"));
+      return emitter;
     }
 
+    CompletableFuture<AdmissionQueue.Permit> admission = analyzeAdmission.acquire(request.getRemoteAddr());
+    // Registered up front so a request whose client goes away while queued leaves the queue,
+    // and a permit granted after the client has gone is still freed.
+    emitter.onCompletion(() -> {
+      admission.cancel(false);
+      admission.thenAccept(AdmissionQueue.Permit::release);
+    });
+    admission.thenAcceptAsync(permit -> {
+      try {
+        recommendationStreamService.stream(emitter, openAIService.analyzeImageAsync(file), playlistUrl);
+      } catch (Exception e) {
+        emitter.completeWithError(e);
+      }
+    }, requestExecutor).exceptionally(e -> {
+      emitter.completeWithError(unwrap(e));
+      return null;
+    });
+    return emitter;
+  }
+
+  @ExceptionHandler(OverloadedException.class)
+  public ResponseEntity<?> overloaded(OverloadedException e) {
+    long seconds = Math.max(1, (e.retryAfter().toMillis() + 999) / 1000);
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+            .body(e.getMessage());
+  }
+
+  // Starts the work on the request executor once the request is admitted, rather than on
+  // the thread that freed the permit, and frees the permit when the response is ready.
+  // Requests are queued per client address, so one caller's burst waits behind itself
+  // rather than in front of everyone else.
+  private DeferredResult<ResponseEntity<?>> admitted(HttpServletRequest request,
+                                                     Callable<CompletableFuture<ResponseEntity<?>>> work) {
+    CompletableFuture<AdmissionQueue.Permit> admission;
     try {
-      String analysis = openAIService.analyzeImage(file);
+      admission = analyzeAdmission.acquire(request.getRemoteAddr());
+    } catch (OverloadedException e) {
+      return respond(overloaded(e));
+    }
 
-      List<Map<String, Object>> spotifyTracks;
-      if (playlistUrl != null && !playlistUrl.isEmpty()) {
-        spotifyTracks = spotifyService.findPlaylistRecommendations(analysis, playlistUrl);
-      } else {
-        spotifyTracks = spotifyService.findRecommendations(analysis);
+    DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+    // Also runs on timeout and when the client disconnects, taking a still-queued request
+    // out of the queue; an admission already granted is not affected.
+    result.onCompletion(() -> admission.cancel(false));
+    admission.thenComposeAsync(permit -> {
+      CompletableFuture<ResponseEntity<?>> response;
+      try {
+        response = work.call();
+      } catch (Exception e) {
+        response = CompletableFuture.failedFuture(e);
+      }
+      return response.whenComplete((done, e) -> permit.release());
+    }, requestExecutor).whenComplete((response, e) -> {
+      if (!admission.isCancelled()) {
+        result.setResult(e == null ? response : error(e));
       }
+    });
+    return result;
+  }
+
+  private static DeferredResult<ResponseEntity<?>> respond(ResponseEntity<?> response) {
+    DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+    result.setResult(response);
+    return result;
+  }
 
-      return ResponseEntity.ok(Map.of(
-              "analysis", analysis,
-              "spotify_tracks", spotifyTracks
-      ));
-    } catch (Exception e) {
-      System.out.println("Error: " + e.getMessage());
-      e.printStackTrace();
-      return ResponseEntity.status(500).body("Error: " + e.getMessage());
+  private ResponseEntity<?> error(Throwable e) {
+    if (unwrap(e) instanceof OverloadedException overloaded) {
+      return overloaded(overloaded);
     }
+    log.error("Analyze request failed", e);
+    return ResponseEntity.status(500).body("Error: " + e.getMessage());
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+package com.gahan.song.picker.http;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounds how many requests run at once. Up to {@code maxInFlight} hold a
+ * permit; the rest wait in a bounded queue for at most {@code maxWait}. Each
+ * client has its own FIFO queue and freed permits go round-robin across the
+ * clients that are waiting, so one busy client cannot starve the others.
+ *
+ * <p>A request is turned away at once, rather than queued, when the queue or
+ * the client's share of it is full, or when the expected wait (from recent
+ * permit hold times) is already past {@code maxWait}. The rejection carries
+ * that expected wait as its Retry-After.
+ */
+public class AdmissionQueue {
+
+  public record Settings(int maxInFlight, int maxQueued, int maxQueuedPerClient, Duration maxWait) {
+  }
+
+  // Weight of the newest hold time in the running average.
+  private static final double SMOOTHING = 0.2;
+  private static final Duration MIN_RETRY_AFTER = Duration.ofSeconds(1);
+
+  private final Settings settings;
+  private final LongSupplier nanoClock;
+  private final Map<String, ArrayDeque<Waiter>> waiting = new HashMap<>();
+  // Clients with at least one waiter, in the order they are next served.
+  private final ArrayDeque<String> rotation = new ArrayDeque<>();
+
+  private int inFlight;
+  private int queued;
+  private double averageHoldNanos;
+  private long rejected;
+
+  public AdmissionQueue(Settings settings) {
+    this(settings, System::nanoTime);
+  }
+
+  AdmissionQueue(Settings settings, LongSupplier nanoClock) {
+    this.settings = settings;
+    this.nanoClock = nanoClock;
+  }
+
+  /**
+   * Completes with a permit once the request may run. Throws
+   * {@link OverloadedException} when it is rejected straight away; the future
+   * fails with one when the request waited {@code maxWait} without a permit.
+   * Cancelling the future while it waits takes the request out of the queue.
+   */
+  public CompletableFuture<Permit> acquire(String client) {
+    Waiter waiter;
+    synchronized (this) {
+      if (inFlight < settings.maxInFlight() && queued == 0) {
+        inFlight++;
+        return CompletableFuture.completedFuture(new Permit(nanoClock.getAsLong()));
+      }
+
+      ArrayDeque<Waiter> clientQueue = waiting.get(client);
+      int clientQueued = clientQueue != null ? clientQueue.size() : 0;
+      Duration expectedWait = expectedWait(queued + 1);
+      if (queued >= settings.maxQueued() || clientQueued >= settings.maxQueuedPerClient()
+              || expectedWait.compareTo(settings.maxWait()) > 0) {
+        rejected++;
+        throw new OverloadedException("Too many analyses in progress", retryAfter(expectedWait));
+      }
+
+      waiter = new Waiter(client, new CompletableFuture<>());
+      if (clientQueue == null) {
+        clientQueue = new ArrayDeque<>();
+        waiting.put(client, clientQueue);
+        rotation.add(client);
+      }
+      clientQueue.add(waiter);
+      queued++;
+    }
+
+    waiter.permit.whenComplete((permit, e) -> {
+      if (e instanceof CancellationException) {
+        remove(waiter);
+      }
+    });
+    CompletableFuture.delayedExecutor(settings.maxWait().toNanos(), TimeUnit.NANOSECONDS)
+            .execute(() -> expire(waiter));
+    return waiter.permit;
+  }
+
+  public synchronized int inFlight() {
+    return inFlight;
+  }
+
+  public synchronized int queued() {
+    return queued;
+  }
+
+  public synchronized long rejected() {
+    return rejected;
+  }
+
+  private void expire(Waiter waiter) {
+    Duration retryAfter;
+    synchronized (this) {
+      if (!remove(waiter)) {
+        return;
+      }
+      rejected++;
+      retryAfter = retryAfter(expectedWait(queued + 1));
+    }
+    waiter.permit.completeExceptionally(
+            new OverloadedException("No capacity within " + settings.maxWait(), retryAfter));
+  }
+
+  private synchronized boolean remove(Waiter waiter) {
+    ArrayDeque<Waiter> clientQueue = waiting.get(waiter.client);
+    if (clientQueue == null || !clientQueue.remove(waiter)) {
+      return false;
+    }
+    if (clientQueue.isEmpty()) {
+      waiting.remove(waiter.client);
+      rotation.remove(waiter.client);
+    }
+    queued--;
+    return true;
+  }
+
+  private void release(long heldNanos) {
+    synchronized (this) {
+      averageHoldNanos = averageHoldNanos == 0
+              ? heldNanos : averageHoldNanos + SMOOTHING * (heldNanos - averageHoldNanos);
+    }
+    // The freed slot passes straight to the next waiter, so inFlight is unchanged. A waiter
+    // cancelled just before it was polled cannot take it, so it goes to the one after.
+    while (true) {
+      Waiter next = next();
+      if (next == null || next.permit.complete(new Permit(nanoClock.getAsLong()))) {
+        return;
+      }
+    }
+  }
+
+  // The next waiter in rotation, or null after giving the slot up when nobody waits.
+  private synchronized Waiter next() {
+    String client = rotation.poll();
+    if (client == null) {
+      inFlight--;
+      return null;
+    }
+    ArrayDeque<Waiter> clientQueue = waiting.get(client);
+    Waiter next = clientQueue.poll();
+    if (clientQueue.isEmpty()) {
+      waiting.remove(client);
+    } else {
+      rotation.add(client);
+    }
+    queued--;
+    return next;
+  }
+
+  // Each freed permit admits one waiter, so position p is served after about
+  // p / maxInFlight average hold times.
+  private Duration expectedWait(int position) {
+    return Duration.ofNanos((long) (averageHoldNanos * position / settings.maxInFlight()));
+  }
+
+  private static Duration retryAfter(Duration expectedWait) {
+    return expectedWait.compareTo(MIN_RETRY_AFTER) > 0 ? expectedWait : MIN_RETRY_AFTER;
+  }
+
+  private record Waiter(String client, CompletableFuture<Permit> permit) {
+  }
+
+  public final class Permit {
+
+    private final long acquiredNanos;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(long acquiredNanos) {
+      this.acquiredNanos = acquiredNanos;
+    }
+
+    // Safe to call more than once; only the first call frees the slot.
+    public void release() {
+      if (released.compareAndSet(false, true)) {
+        AdmissionQueue.this.release(nanoClock.getAsLong() - acquiredNanos);
+      }
+    }
+  }
+}
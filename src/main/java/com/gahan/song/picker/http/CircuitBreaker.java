@@ -0,0 +1,163 @@
+package com.gahan.song.picker.http;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Count-based circuit breaker for one upstream. The outcomes of the last
+ * {@code windowSize} calls are kept in a ring; once {@code minimumCalls} have
+ * been seen and either the failure rate or the slow-call rate reaches its
+ * threshold, the breaker opens and rejects calls for {@code openDuration}.
+ * After that {@code halfOpenProbes} calls are let through: if they all succeed
+ * in time the breaker closes, otherwise it opens again.
+ */
+public class CircuitBreaker {
+
+  public enum State { CLOSED, OPEN, HALF_OPEN }
+
+  public record Settings(int windowSize, int minimumCalls, double failureRateThreshold,
+                         Duration slowCallDuration, double slowCallRateThreshold,
+                         Duration openDuration, int halfOpenProbes) {
+  }
+
+  private static final byte FAILED = 1;
+  private static final byte SLOW = 2;
+
+  private final String name;
+  private final Settings settings;
+  private final LongSupplier nanoClock;
+  private final byte[] outcomes;
+
+  private State state = State.CLOSED;
+  private int recorded;
+  private int next;
+  private int failures;
+  private int slowCalls;
+  private long openedAtNanos;
+  private int probesStarted;
+  private int probesSucceeded;
+
+  public CircuitBreaker(String name, Settings settings) {
+    this(name, settings, System::nanoTime);
+  }
+
+  CircuitBreaker(String name, Settings settings, LongSupplier nanoClock) {
+    this.name = name;
+    this.settings = settings;
+    this.nanoClock = nanoClock;
+    this.outcomes = new byte[settings.windowSize()];
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+
+  // Cheap check for callers that want to skip work (e.g. a rate-limit wait) when the
+  // call would be rejected anyway. Does not use up a half-open probe.
+  public synchronized boolean allowsCalls() {
+    return switch (state) {
+      case CLOSED -> true;
+      case OPEN -> openDurationElapsed();
+      case HALF_OPEN -> probesStarted < settings.halfOpenProbes();
+    };
+  }
+
+  public <T> T execute(Supplier<T> call, Predicate<RuntimeException> isFailure) {
+    if (!tryAcquirePermission()) {
+      throw new CircuitOpenException(name);
+    }
+    long start = nanoClock.getAsLong();
+    try {
+      T result = call.get();
+      onResult(nanoClock.getAsLong() - start, false);
+      return result;
+    } catch (RuntimeException e) {
+      onResult(nanoClock.getAsLong() - start, isFailure.test(e));
+      throw e;
+    }
+  }
+
+  synchronized boolean tryAcquirePermission() {
+    if (state == State.OPEN) {
+      if (!openDurationElapsed()) {
+        return false;
+      }
+      state = State.HALF_OPEN;
+      probesStarted = 0;
+      probesSucceeded = 0;
+    }
+    if (state == State.HALF_OPEN) {
+      if (probesStarted >= settings.halfOpenProbes()) {
+        return false;
+      }
+      probesStarted++;
+    }
+    return true;
+  }
+
+  synchronized void onResult(long durationNanos, boolean failed) {
+    boolean slow = durationNanos >= settings.slowCallDuration().toNanos();
+    switch (state) {
+      case HALF_OPEN -> {
+        if (failed || slow) {
+          open();
+        } else if (++probesSucceeded >= settings.halfOpenProbes()) {
+          close();
+        }
+      }
+      case CLOSED -> {
+        record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+        if (recorded >= settings.minimumCalls()
+                && (failures >= settings.failureRateThreshold() * recorded
+                || slowCalls >= settings.slowCallRateThreshold() * recorded)) {
+          open();
+        }
+      }
+      case OPEN -> {
+        // A call that started before the breaker opened; nothing left to decide.
+      }
+    }
+  }
+
+  private void record(byte outcome) {
+    if (recorded == outcomes.length) {
+      byte evicted = outcomes[next];
+      failures -= evicted & FAILED;
+      slowCalls -= (evicted & SLOW) >> 1;
+    } else {
+      recorded++;
+    }
+    outcomes[next] = outcome;
+    failures += outcome & FAILED;
+    slowCalls += (outcome & SLOW) >> 1;
+    next = (next + 1) % outcomes.length;
+  }
+
+  private boolean openDurationElapsed() {
+    return nanoClock.getAsLong() - openedAtNanos >= settings.openDuration().toNanos();
+  }
+
+  private void open() {
+    state = State.OPEN;
+    openedAtNanos = nanoClock.getAsLong();
+    resetWindow();
+  }
+
+  private void close() {
+    state = State.CLOSED;
+    resetWindow();
+  }
+
+  private void resetWindow() {
+    recorded = 0;
+    next = 0;
+    failures = 0;
+    slowCalls = 0;
+  }
+}
@@ -0,0 +1,8 @@
+package com.gahan.song.picker.http;
+
+public class CircuitOpenException extends RuntimeException {
+
+  public CircuitOpenException(String upstream) {
+    super("Circuit open for " + upstream);
+  }
+}
@@ -0,0 +1,8 @@
+package com.gahan.song.picker.http;
+
+public class DeadlineExceededException extends RuntimeException {
+
+  public DeadlineExceededException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,139 @@
+package com.gahan.song.picker.http;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs an upstream call with at most one extra attempt: a hedge when the
+ * first attempt has not answered within {@code hedgeDelay}, or a retry when
+ * it fails with a retryable error. Extra attempts are only made while the
+ * retry budget allows, and the first successful answer wins. The caller
+ * never waits past its deadline; attempts still running then are abandoned.
+ *
+ * <p>With a rate limiter, every attempt takes its own slot before it is
+ * sent, and the hedge delay counts from when the first attempt was sent.
+ * An attempt that is only queued for a slot is not slow, so it does not
+ * trigger a hedge that would spend another slot.
+ */
+public class Hedger {
+
+  private final Executor executor;
+  private final Duration hedgeDelay;
+  private final RetryBudget budget;
+  private final RateLimiter limiter;
+
+  public Hedger(Executor executor, Duration hedgeDelay, RetryBudget budget) {
+    this(executor, hedgeDelay, budget, null);
+  }
+
+  public Hedger(Executor executor, Duration hedgeDelay, RetryBudget budget, RateLimiter limiter) {
+    this.executor = executor;
+    this.hedgeDelay = hedgeDelay;
+    this.budget = budget;
+    this.limiter = limiter;
+  }
+
+  public <T> T call(Supplier<T> attempt, Predicate<RuntimeException> retryable, long deadlineNanos) {
+    budget.onRequest();
+    Race<T> race = new Race<>(attempt, retryable, deadlineNanos);
+    race.launch(false);
+
+    if (!await(CompletableFuture.anyOf(race.sent, race.result), deadlineNanos)) {
+      throw new DeadlineExceededException("No answer before deadline");
+    }
+    long hedgeAtNanos = System.nanoTime() + hedgeDelay.toNanos();
+    if (deadlineNanos - hedgeAtNanos > 0 && !await(race.result, hedgeAtNanos)) {
+      race.launch(true);
+    }
+    if (!await(race.result, deadlineNanos)) {
+      throw new DeadlineExceededException("No answer before deadline");
+    }
+    try {
+      return race.result.get();
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for upstream call", e);
+    }
+  }
+
+  // True once the future is done, false if the deadline passed first.
+  private static boolean await(CompletableFuture<?> future, long deadlineNanos) {
+    try {
+      if (deadlineNanos == Long.MAX_VALUE) {
+        future.get();
+      } else {
+        future.get(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+      }
+      return true;
+    } catch (TimeoutException e) {
+      return false;
+    } catch (ExecutionException e) {
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for upstream call", e);
+    }
+  }
+
+  private static RuntimeException unwrap(Throwable error) {
+    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+  }
+
+  private final class Race<T> {
+
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    // Completes once the first attempt has its rate-limit slot and is being sent.
+    final CompletableFuture<Void> sent = new CompletableFuture<>();
+    private final Supplier<T> attempt;
+    private final Predicate<RuntimeException> retryable;
+    private final long deadlineNanos;
+    private int started;
+    private int finished;
+
+    Race(Supplier<T> attempt, Predicate<RuntimeException> retryable, long deadlineNanos) {
+      this.attempt = attempt;
+      this.retryable = retryable;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    synchronized boolean launch(boolean extra) {
+      if (extra && (started >= 2 || result.isDone() || !budget.tryWithdraw())) {
+        return false;
+      }
+      started++;
+      CompletableFuture.supplyAsync(this::send, executor).whenComplete(this::onComplete);
+      return true;
+    }
+
+    private T send() {
+      if (limiter != null) {
+        limiter.acquire(deadlineNanos);
+      }
+      sent.complete(null);
+      return attempt.get();
+    }
+
+    private synchronized void onComplete(T value, Throwable error) {
+      finished++;
+      if (error == null) {
+        result.complete(value);
+        return;
+      }
+      RuntimeException failure = unwrap(error);
+      boolean retried = retryable.test(failure) && launch(true);
+      if (!retried && finished == started) {
+        result.completeExceptionally(failure);
+      }
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.gahan.song.picker.http;
+
+import java.time.Duration;
+
+public class OverloadedException extends RuntimeException {
+
+  private final Duration retryAfter;
+
+  public OverloadedException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  public Duration retryAfter() {
+    return retryAfter;
+  }
+}
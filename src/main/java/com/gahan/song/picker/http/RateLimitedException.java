@@ -0,0 +1,8 @@
+package com.gahan.song.picker.http;
+
+public class RateLimitedException extends RuntimeException {
+
+  public RateLimitedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,22 @@
+package com.gahan.song.picker.http;
+
+/**
+ * Paces calls to one upstream. {@link TokenBucket} paces this process only;
+ * a shared limiter paces every node together.
+ */
+public interface RateLimiter {
+
+  // Waits for a slot; false, without consuming one, when no slot comes before the deadline.
+  boolean tryAcquire(long deadlineNanos) throws InterruptedException;
+
+  default void acquire(long deadlineNanos) {
+    try {
+      if (!tryAcquire(deadlineNanos)) {
+        throw new RateLimitedException("Rate limit slot not available before deadline");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RateLimitedException("Interrupted while waiting for rate limit slot");
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.gahan.song.picker.http;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backoff window shared by every caller of one upstream. A 429 seen by any
+ * thread pushes the window out by its Retry-After, and all callers wait for
+ * the window to pass before their next request.
+ */
+public class RetryAfterBackoff {
+
+  private volatile long resumeAtNanos = System.nanoTime();
+
+  public void awaitClearance() throws InterruptedException {
+    long waitNanos = resumeAtNanos - System.nanoTime();
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  public synchronized void onRateLimited(Duration retryAfter) {
+    long resumeAt = System.nanoTime() + retryAfter.toNanos();
+    if (resumeAt - resumeAtNanos > 0) {
+      resumeAtNanos = resumeAt;
+    }
+  }
+
+  public static Duration parseRetryAfter(String header, Duration fallback) {
+    if (header == null) {
+      return fallback;
+    }
+    try {
+      return Duration.ofSeconds(Long.parseLong(header.trim()));
+    } catch (NumberFormatException e) {
+      return fallback;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package com.gahan.song.picker.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits hedges and retries to a fraction of first attempts. Every first
+ * attempt deposits {@code ratio} of a token and every extra attempt spends a
+ * whole one; {@code minPerSecond} tokens accrue regardless so a quiet
+ * upstream can still be retried. The balance is capped at {@code maxBalance},
+ * which bounds the burst of extra attempts when an upstream turns slow.
+ */
+public class RetryBudget {
+
+  private final double ratio;
+  private final double minPerSecond;
+  private final double maxBalance;
+  private double balance;
+  private long lastRefillNanos = System.nanoTime();
+
+  public RetryBudget(double ratio, double minPerSecond, double maxBalance) {
+    this.ratio = ratio;
+    this.minPerSecond = minPerSecond;
+    this.maxBalance = maxBalance;
+    this.balance = maxBalance;
+  }
+
+  public synchronized void onRequest() {
+    refill();
+    balance = Math.min(maxBalance, balance + ratio);
+  }
+
+  public synchronized boolean tryWithdraw() {
+    refill();
+    if (balance < 1) {
+      return false;
+    }
+    balance -= 1;
+    return true;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    double seconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    balance = Math.min(maxBalance, balance + seconds * minPerSecond);
+    lastRefillNanos = now;
+  }
+}
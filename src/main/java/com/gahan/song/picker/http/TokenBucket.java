@@ -0,0 +1,39 @@
+package com.gahan.song.picker.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared rate limiter for one upstream host. Callers reserve the next free
+ * slot and sleep until it arrives; a caller whose slot would land after its
+ * deadline gets {@code false} back without consuming anything.
+ */
+public class TokenBucket implements RateLimiter {
+
+  private final long nanosPerToken;
+  private final long burstNanos;
+  private long nextFreeNanos;
+
+  public TokenBucket(double permitsPerSecond, int burst) {
+    this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    this.burstNanos = nanosPerToken * Math.max(burst - 1, 0);
+    this.nextFreeNanos = System.nanoTime();
+  }
+
+  @Override
+  public boolean tryAcquire(long deadlineNanos) throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long slot = Math.max(nextFreeNanos, now - burstNanos);
+      if (slot - deadlineNanos > 0) {
+        return false;
+      }
+      nextFreeNanos = slot + nanosPerToken;
+      waitNanos = slot - now;
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,53 @@
+package com.gahan.song.picker.json;
+
+import com.gahan.song.picker.model.LowLevelSummary;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+import static com.gahan.song.picker.json.JsonDecoder.forEachField;
+import static com.gahan.song.picker.json.JsonDecoder.text;
+
+public final class AcousticBrainzDecoders {
+
+  // A low-level document is mostly frame statistics under "lowlevel" plus large arrays in
+  // "rhythm" and "tonal"; all of it is skipped except bpm and the key.
+  public static final JsonDecoder<LowLevelSummary> LOW_LEVEL = AcousticBrainzDecoders::lowLevel;
+
+  private AcousticBrainzDecoders() {
+  }
+
+  private static LowLevelSummary lowLevel(JsonParser parser) throws IOException {
+    boolean[] sections = new boolean[2];
+    Double[] bpm = {null};
+    String[] key = new String[2];
+    forEachField(parser, field -> {
+      switch (field) {
+        case "rhythm" -> {
+          sections[0] = parser.currentToken() == JsonToken.START_OBJECT;
+          forEachField(parser, rhythmField -> {
+            if (rhythmField.equals("bpm") && parser.currentToken().isNumeric()) {
+              bpm[0] = parser.getDoubleValue();
+            } else {
+              parser.skipChildren();
+            }
+          });
+        }
+        case "tonal" -> {
+          sections[1] = parser.currentToken() == JsonToken.START_OBJECT;
+          forEachField(parser, tonalField -> {
+            switch (tonalField) {
+              case "key_key" -> key[0] = text(parser);
+              case "key_scale" -> key[1] = text(parser);
+              default -> parser.skipChildren();
+            }
+          });
+        }
+        default -> parser.skipChildren();
+      }
+    });
+    return new LowLevelSummary(sections[0], bpm[0], sections[1], key[0], key[1]);
+  }
+}
@@ -0,0 +1,70 @@
+package com.gahan.song.picker.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes one upstream response straight from the token stream. Decoders
+ * pick out the fields they need and skip every other subtree unparsed.
+ */
+@FunctionalInterface
+public interface JsonDecoder<T> {
+
+  JsonFactory FACTORY = new JsonFactory();
+
+  T decode(JsonParser parser) throws IOException;
+
+  default T decode(InputStream body) throws IOException {
+    try (JsonParser parser = FACTORY.createParser(body)) {
+      if (parser.nextToken() == null) {
+        throw new IOException("Empty response body");
+      }
+      return decode(parser);
+    }
+  }
+
+  // Positions the parser on each field value of the current object in turn.
+  static void forEachField(JsonParser parser, FieldHandler handler) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.currentName();
+      parser.nextToken();
+      handler.field(field);
+    }
+  }
+
+  static void forEachElement(JsonParser parser, ElementHandler handler) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      handler.element();
+    }
+  }
+
+  static String text(JsonParser parser) throws IOException {
+    if (parser.currentToken().isScalarValue() && parser.currentToken() != JsonToken.VALUE_NULL) {
+      return parser.getValueAsString();
+    }
+    parser.skipChildren();
+    return null;
+  }
+
+  @FunctionalInterface
+  interface FieldHandler {
+    void field(String name) throws IOException;
+  }
+
+  @FunctionalInterface
+  interface ElementHandler {
+    void element() throws IOException;
+  }
+}
@@ -0,0 +1,57 @@
+package com.gahan.song.picker.json;
+
+import com.gahan.song.picker.model.MusicBrainzRecording;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.gahan.song.picker.json.JsonDecoder.forEachElement;
+import static com.gahan.song.picker.json.JsonDecoder.forEachField;
+import static com.gahan.song.picker.json.JsonDecoder.text;
+
+public final class MusicBrainzDecoders {
+
+  // Search results carry whole release lists per recording; only id, title, score and the
+  // artist credit are kept.
+  public static final JsonDecoder<List<MusicBrainzRecording>> RECORDINGS = MusicBrainzDecoders::recordings;
+
+  private MusicBrainzDecoders() {
+  }
+
+  private static List<MusicBrainzRecording> recordings(JsonParser parser) throws IOException {
+    List<MusicBrainzRecording> recordings = new ArrayList<>();
+    forEachField(parser, field -> {
+      if (field.equals("recordings")) {
+        forEachElement(parser, () -> recordings.add(recording(parser)));
+      } else {
+        parser.skipChildren();
+      }
+    });
+    return recordings;
+  }
+
+  private static MusicBrainzRecording recording(JsonParser parser) throws IOException {
+    String[] values = new String[2];
+    int[] score = {0};
+    StringBuilder artist = new StringBuilder();
+    forEachField(parser, field -> {
+      switch (field) {
+        case "id" -> values[0] = text(parser);
+        case "title" -> values[1] = text(parser);
+        case "score" -> score[0] = parser.getValueAsInt();
+        case "artist-credit" -> forEachElement(parser, () -> forEachField(parser, creditField -> {
+          switch (creditField) {
+            case "name" -> artist.append(text(parser));
+            case "joinphrase" -> artist.append(text(parser));
+            default -> parser.skipChildren();
+          }
+        }));
+        default -> parser.skipChildren();
+      }
+    });
+    return new MusicBrainzRecording(values[0], values[1], artist.toString(), score[0]);
+  }
+}
@@ -0,0 +1,113 @@
+package com.gahan.song.picker.json;
+
+import com.gahan.song.picker.model.PlaylistPage;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.gahan.song.picker.json.JsonDecoder.forEachElement;
+import static com.gahan.song.picker.json.JsonDecoder.forEachField;
+import static com.gahan.song.picker.json.JsonDecoder.text;
+
+public final class SpotifyDecoders {
+
+  public static final JsonDecoder<PlaylistPage> PLAYLIST_PAGE = SpotifyDecoders::playlistPage;
+  public static final JsonDecoder<List<SpotifyTrack>> SEARCH_RESULTS = SpotifyDecoders::searchResults;
+  public static final JsonDecoder<String> SNAPSHOT_ID = SpotifyDecoders::snapshotId;
+
+  private SpotifyDecoders() {
+  }
+
+  private static PlaylistPage playlistPage(JsonParser parser) throws IOException {
+    int[] total = {0};
+    List<SpotifyTrack> tracks = new ArrayList<>();
+    forEachField(parser, field -> {
+      switch (field) {
+        case "total" -> total[0] = parser.getValueAsInt();
+        case "items" -> forEachElement(parser, () -> forEachField(parser, itemField -> {
+          if (itemField.equals("track")) {
+            SpotifyTrack track = track(parser);
+            if (track != null) {
+              tracks.add(track);
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }));
+        default -> parser.skipChildren();
+      }
+    });
+    return new PlaylistPage(total[0], tracks);
+  }
+
+  private static List<SpotifyTrack> searchResults(JsonParser parser) throws IOException {
+    List<SpotifyTrack> tracks = new ArrayList<>();
+    forEachField(parser, field -> {
+      if (field.equals("tracks")) {
+        forEachField(parser, tracksField -> {
+          if (tracksField.equals("items")) {
+            forEachElement(parser, () -> {
+              SpotifyTrack track = track(parser);
+              if (track != null) {
+                tracks.add(track);
+              }
+            });
+          } else {
+            parser.skipChildren();
+          }
+        });
+      } else {
+        parser.skipChildren();
+      }
+    });
+    return tracks;
+  }
+
+  private static String snapshotId(JsonParser parser) throws IOException {
+    String[] snapshotId = {null};
+    forEachField(parser, field -> {
+      if (field.equals("snapshot_id")) {
+        snapshotId[0] = text(parser);
+      } else {
+        parser.skipChildren();
+      }
+    });
+    return snapshotId[0];
+  }
+
+  // Removed or unavailable playlist entries come back as "track": null.
+  private static SpotifyTrack track(JsonParser parser) throws IOException {
+    if (!parser.isExpectedStartObjectToken()) {
+      parser.skipChildren();
+      return null;
+    }
+    String[] values = new String[5];
+    forEachField(parser, field -> {
+      switch (field) {
+        case "id" -> values[0] = text(parser);
+        case "name" -> values[1] = text(parser);
+        case "preview_url" -> values[3] = text(parser);
+        case "artists" -> forEachElement(parser, () -> forEachField(parser, artistField -> {
+          if (artistField.equals("name") && values[2] == null) {
+            values[2] = text(parser);
+          } else {
+            parser.skipChildren();
+          }
+        }));
+        case "external_urls" -> forEachField(parser, urlField -> {
+          if (urlField.equals("spotify")) {
+            values[4] = text(parser);
+          } else {
+            parser.skipChildren();
+          }
+        });
+        default -> parser.skipChildren();
+      }
+    });
+    return new SpotifyTrack(values[0], values[1], values[2] != null ? values[2] : "", values[3], values[4]);
+  }
+}
@@ -0,0 +1,33 @@
+package com.gahan.song.picker.metrics;
+
+import com.gahan.song.picker.http.AdmissionQueue;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Analyses running and waiting for admission, and how many were turned away.
+ */
+@Component
+public class AdmissionMetrics implements MeterBinder {
+
+  @Autowired
+  private AdmissionQueue analyzeAdmission;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("songpicker.admission.in_flight", analyzeAdmission, AdmissionQueue::inFlight)
+            .description("Analyze requests holding a permit")
+            .register(registry);
+    Gauge.builder("songpicker.admission.queued", analyzeAdmission, AdmissionQueue::queued)
+            .description("Analyze requests waiting for a permit")
+            .register(registry);
+    FunctionCounter.builder("songpicker.admission.rejected", analyzeAdmission, AdmissionQueue::rejected)
+            .description("Analyze requests rejected with 429")
+            .register(registry);
+  }
+}
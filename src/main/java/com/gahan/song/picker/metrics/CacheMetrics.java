@@ -0,0 +1,68 @@
+package com.gahan.song.picker.metrics;
+
+import com.gahan.song.picker.cache.CacheStats;
+import com.gahan.song.picker.cache.TrackRegistry;
+import com.gahan.song.picker.service.AcousticBrainzService;
+import com.gahan.song.picker.service.OpenAIService;
+import com.gahan.song.picker.service.SpotifyService;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the same numbers as /api/cache/stats, tagged by cache name.
+ */
+@Component
+public class CacheMetrics implements MeterBinder {
+
+  @Autowired
+  private AcousticBrainzService acousticBrainzService;
+
+  @Autowired
+  private SpotifyService spotifyService;
+
+  @Autowired
+  private TrackRegistry trackRegistry;
+
+  @Autowired
+  private OpenAIService openAIService;
+
+  // Meters only hold their state weakly; this keeps the suppliers reachable.
+  private final List<Supplier<CacheStats>> sources = new ArrayList<>();
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    for (String name : acousticBrainzService.cacheStats().keySet()) {
+      bind(registry, name, () -> acousticBrainzService.cacheStats().get(name));
+    }
+    bind(registry, "playlists", spotifyService::cacheStats);
+    bind(registry, "tracks", trackRegistry::stats);
+    bind(registry, "image_analyses", openAIService::cacheStats);
+  }
+
+  private void bind(MeterRegistry registry, String name, Supplier<CacheStats> stats) {
+    sources.add(stats);
+    counter(registry, "songpicker.cache.hits", name, stats, CacheStats::hits);
+    counter(registry, "songpicker.cache.misses", name, stats, CacheStats::misses);
+    counter(registry, "songpicker.cache.evictions", name, stats, CacheStats::evictions);
+    Gauge.builder("songpicker.cache.size", stats, s -> s.get().size())
+            .tag("cache", name)
+            .register(registry);
+  }
+
+  private static void counter(MeterRegistry registry, String metric, String name, Supplier<CacheStats> stats,
+                              ToDoubleFunction<CacheStats> value) {
+    FunctionCounter.builder(metric, stats, s -> value.applyAsDouble(s.get()))
+            .tag("cache", name)
+            .register(registry);
+  }
+}
@@ -0,0 +1,41 @@
+package com.gahan.song.picker.metrics;
+
+import com.gahan.song.picker.cache.CacheBackends;
+import com.gahan.song.picker.http.CircuitBreaker;
+import com.gahan.song.picker.service.AcousticBrainzService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One gauge per breaker and state, 1 for the current state and 0 otherwise.
+ */
+@Component
+public class CircuitBreakerMetrics implements MeterBinder {
+
+  @Autowired
+  private AcousticBrainzService acousticBrainzService;
+
+  @Autowired
+  private CacheBackends cacheBackends;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    List<CircuitBreaker> breakers = new ArrayList<>(acousticBrainzService.circuitBreakers());
+    breakers.addAll(cacheBackends.circuitBreakers());
+    for (CircuitBreaker breaker : breakers) {
+      for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+        Gauge.builder("songpicker.circuit.state", breaker, b -> b.state() == state ? 1 : 0)
+                .tag("upstream", breaker.name())
+                .tag("state", state.name().toLowerCase())
+                .register(registry);
+      }
+    }
+  }
+}
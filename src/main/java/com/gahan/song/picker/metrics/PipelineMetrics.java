@@ -0,0 +1,73 @@
+package com.gahan.song.picker.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Latency of each step of the analyze pipeline, published as one histogram
+ * per stage under {@code songpicker.stage}, plus how many tracks were scored
+ * from AcousticBrainz features versus keywords alone.
+ */
+@Component
+public class PipelineMetrics {
+
+  public static final String IMAGE_ENCODE = "image_encode";
+  public static final String OPENAI_CALL = "openai_call";
+  public static final String TOKEN_FETCH = "token_fetch";
+  public static final String PLAYLIST_PAGE_FETCH = "playlist_page_fetch";
+  public static final String MBID_LOOKUP = "mbid_lookup";
+  public static final String FEATURE_FETCH = "feature_fetch";
+  public static final String SCORING = "scoring";
+
+  private static final List<String> STAGES = List.of(
+          IMAGE_ENCODE, OPENAI_CALL, TOKEN_FETCH, PLAYLIST_PAGE_FETCH, MBID_LOOKUP, FEATURE_FETCH, SCORING);
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+  private Counter acousticBrainzTracks;
+  private Counter keywordTracks;
+
+  @PostConstruct
+  void init() {
+    for (String stage : STAGES) {
+      stage(stage);
+    }
+    acousticBrainzTracks = featureSource("acousticbrainz");
+    keywordTracks = featureSource("keyword");
+  }
+
+  public Timer stage(String stage) {
+    return stageTimers.computeIfAbsent(stage, name -> Timer.builder("songpicker.stage")
+            .description("Time spent in one stage of the analyze pipeline")
+            .tag("stage", name)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+  }
+
+  public <T> T time(String stage, Supplier<T> work) {
+    return stage(stage).record(work);
+  }
+
+  public void recordFeatureSources(int acousticBrainz, int keyword) {
+    acousticBrainzTracks.increment(acousticBrainz);
+    keywordTracks.increment(keyword);
+  }
+
+  private Counter featureSource(String source) {
+    return Counter.builder("songpicker.tracks.scored")
+            .description("Playlist tracks scored, by where their features came from")
+            .tag("source", source)
+            .register(meterRegistry);
+  }
+}
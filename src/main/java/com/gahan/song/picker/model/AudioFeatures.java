@@ -0,0 +1,18 @@
+package com.gahan.song.picker.model;
+
+public record AudioFeatures(double energy, double valence, double danceability) {
+
+  public static final double NEUTRAL = 0.5;
+
+  public String encode() {
+    return energy + "," + valence + "," + danceability;
+  }
+
+  public static AudioFeatures decode(String value) {
+    String[] parts = value.split(",");
+    return new AudioFeatures(
+            Double.parseDouble(parts[0]),
+            Double.parseDouble(parts[1]),
+            Double.parseDouble(parts[2]));
+  }
+}
@@ -0,0 +1,43 @@
+package com.gahan.song.picker.model;
+
+/**
+ * The few values we read from an AcousticBrainz low-level document. Missing
+ * sections are tracked separately from missing values because the feature
+ * mapping treats them differently.
+ */
+public record LowLevelSummary(boolean hasRhythm, Double bpm, boolean hasTonal, String key, String scale) {
+
+  public AudioFeatures toAudioFeatures() {
+    Double energy = null;
+    Double valence = null;
+    Double danceability = null;
+
+    if (hasRhythm) {
+      if (bpm != null) {
+        energy = Math.min(Math.max((bpm - 60) / 120.0, 0.0), 1.0);
+      }
+
+      if (bpm != null && bpm >= 90 && bpm <= 130) {
+        danceability = 0.8; // Sweet spot for dancing
+      } else {
+        danceability = 0.4;
+      }
+    }
+
+    if (hasTonal && key != null) {
+      if (key.toLowerCase().contains("major")) {
+        valence = 0.7;
+      } else {
+        valence = 0.3;
+      }
+    }
+
+    if (energy == null && valence == null && danceability == null) {
+      return null;
+    }
+    return new AudioFeatures(
+            energy != null ? energy : AudioFeatures.NEUTRAL,
+            valence != null ? valence : AudioFeatures.NEUTRAL,
+            danceability != null ? danceability : AudioFeatures.NEUTRAL);
+  }
+}
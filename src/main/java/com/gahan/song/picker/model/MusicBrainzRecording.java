@@ -0,0 +1,4 @@
+package com.gahan.song.picker.model;
+
+public record MusicBrainzRecording(String id, String title, String artist, int score) {
+}
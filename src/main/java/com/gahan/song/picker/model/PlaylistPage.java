@@ -0,0 +1,6 @@
+package com.gahan.song.picker.model;
+
+import java.util.List;
+
+public record PlaylistPage(int total, List<SpotifyTrack> tracks) {
+}
@@ -0,0 +1,8 @@
+package com.gahan.song.picker.model;
+
+import com.gahan.song.picker.cache.TrackRegistry;
+
+// Enrichment is shared through the TrackRegistry; the refs also keep the track list itself,
+// so a snapshot stays usable after the registry has reused some of its slots.
+public record PlaylistSnapshot(String snapshotId, TrackRegistry.Refs refs) {
+}
@@ -0,0 +1,4 @@
+package com.gahan.song.picker.model;
+
+public record PreparedImage(byte[] data, String mimeType) {
+}
@@ -0,0 +1,7 @@
+package com.gahan.song.picker.model;
+
+import java.util.List;
+
+// A playlist as other app nodes see it: the tracks themselves, since registry refs are per node.
+public record SharedPlaylist(String snapshotId, List<SpotifyTrack> tracks) {
+}
@@ -0,0 +1,12 @@
+package com.gahan.song.picker.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public record SpotifyTrack(
+        @JsonIgnore String id,
+        String name,
+        String artist,
+        @JsonProperty("preview_url") String previewUrl,
+        @JsonProperty("spotify_url") String spotifyUrl) {
+}
@@ -0,0 +1,113 @@
+package com.gahan.song.picker.scoring;
+
+import com.gahan.song.picker.model.AudioFeatures;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class FeatureScorer {
+
+  // Upper bound (exclusive) of the random variety term in the keyword fallback score.
+  static final double VARIETY = 0.5;
+
+  private FeatureScorer() {
+  }
+
+  // Scores every track in place: feature distance for enriched tracks,
+  // keyword fallback (with its random variety term) for the rest.
+  public static void score(TrackColumns columns, MoodProfile mood, long analysisMask, double[] out) {
+    scoreFeatures(columns, mood, out);
+
+    int n = columns.size();
+    if (columns.enrichedCount() == n) {
+      return;
+    }
+    boolean[] enriched = columns.enriched;
+    long[] keywordMask = columns.keywordMask;
+    for (int i = 0; i < n; i++) {
+      if (!enriched[i]) {
+        out[i] = calculateImprovedScore(keywordMask[i], analysisMask);
+      }
+    }
+  }
+
+  // Variant for repeated scoring of the same request: fallback scores are drawn once up
+  // front so the random variety term does not reshuffle results between rounds.
+  public static void score(TrackColumns columns, MoodProfile mood, double[] fallbackScores, double[] out) {
+    scoreFeatures(columns, mood, out);
+
+    boolean[] enriched = columns.enriched;
+    for (int i = 0, n = columns.size(); i < n; i++) {
+      if (!enriched[i]) {
+        out[i] = fallbackScores[i];
+      }
+    }
+  }
+
+  // Scores several mood profiles against one playlist in a single pass over the columns;
+  // out[m] receives the scores for moods[m].
+  public static void scoreBatch(TrackColumns columns, MoodProfile[] moods, long[] analysisMasks, double[][] out) {
+    float[] energy = columns.energy;
+    float[] valence = columns.valence;
+    float[] danceability = columns.danceability;
+    boolean[] enriched = columns.enriched;
+    long[] keywordMask = columns.keywordMask;
+
+    for (int i = 0, n = columns.size(); i < n; i++) {
+      if (enriched[i]) {
+        float e = energy[i];
+        float v = valence[i];
+        float d = danceability[i];
+        for (int m = 0; m < moods.length; m++) {
+          MoodProfile mood = moods[m];
+          out[m][i] = 1.0 - ((Math.abs(mood.energy() - e)
+                  + Math.abs(mood.valence() - v)
+                  + Math.abs(mood.danceability() - d)) / 3.0);
+        }
+      } else {
+        for (int m = 0; m < moods.length; m++) {
+          out[m][i] = calculateImprovedScore(keywordMask[i], analysisMasks[m]);
+        }
+      }
+    }
+  }
+
+  public static double[] fallbackScores(TrackColumns columns, long analysisMask) {
+    double[] scores = new double[columns.size()];
+    long[] keywordMask = columns.keywordMask;
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = calculateImprovedScore(keywordMask[i], analysisMask);
+    }
+    return scores;
+  }
+
+  private static void scoreFeatures(TrackColumns columns, MoodProfile mood, double[] out) {
+    float[] energy = columns.energy;
+    float[] valence = columns.valence;
+    float[] danceability = columns.danceability;
+    double targetEnergy = mood.energy();
+    double targetValence = mood.valence();
+    double targetDanceability = mood.danceability();
+    int n = columns.size();
+
+    // Branch-free over the whole column so the JIT can unroll and vectorize it.
+    for (int i = 0; i < n; i++) {
+      out[i] = 1.0 - ((Math.abs(targetEnergy - energy[i])
+              + Math.abs(targetValence - valence[i])
+              + Math.abs(targetDanceability - danceability[i])) / 3.0);
+    }
+  }
+
+  // Same arithmetic as score(); features are narrowed to float as they are in the columns.
+  public static double calculateFeatureMatchScore(MoodProfile target, AudioFeatures features) {
+    double energyDiff = Math.abs(target.energy() - (float) features.energy());
+    double valenceDiff = Math.abs(target.valence() - (float) features.valence());
+    double danceabilityDiff = Math.abs(target.danceability() - (float) features.danceability());
+
+    return 1.0 - ((energyDiff + valenceDiff + danceabilityDiff) / 3.0);
+  }
+
+  public static double calculateImprovedScore(long trackMask, long analysisMask) {
+    double score = ThreadLocalRandom.current().nextDouble() * VARIETY; // Add variety
+    return score + KeywordScoring.keywordScore(analysisMask, trackMask);
+  }
+}
@@ -0,0 +1,135 @@
+package com.gahan.song.picker.scoring;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton compiled to a dense transition table. Every keyword
+ * carries a bit mask; {@link #scan} returns the OR of the masks of all
+ * keywords occurring anywhere in the text, case-insensitively, in a single
+ * pass and without allocating.
+ */
+public final class KeywordMatcher {
+
+  private static final int ASCII = 128;
+
+  private final byte[] charClass;
+  private final int alphabetSize;
+  private final int[] transitions;
+  private final long[] outputs;
+
+  private KeywordMatcher(byte[] charClass, int alphabetSize, int[] transitions, long[] outputs) {
+    this.charClass = charClass;
+    this.alphabetSize = alphabetSize;
+    this.transitions = transitions;
+    this.outputs = outputs;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public long scan(CharSequence text) {
+    if (text == null) {
+      return 0L;
+    }
+    int state = 0;
+    long mask = 0L;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char c = Character.toLowerCase(text.charAt(i));
+      int cls = c < ASCII ? charClass[c] : 0;
+      state = transitions[state * alphabetSize + cls];
+      mask |= outputs[state];
+    }
+    return mask;
+  }
+
+  public static final class Builder {
+
+    private final Map<String, Long> keywords = new LinkedHashMap<>();
+
+    public Builder add(long mask, String... words) {
+      for (String word : words) {
+        String lower = word.toLowerCase();
+        for (int i = 0; i < lower.length(); i++) {
+          if (lower.charAt(i) >= ASCII) {
+            throw new IllegalArgumentException("Keywords must be ASCII: " + word);
+          }
+        }
+        keywords.merge(lower, mask, (a, b) -> a | b);
+      }
+      return this;
+    }
+
+    public KeywordMatcher build() {
+      // Class 0 stands for every character that appears in no keyword.
+      byte[] charClass = new byte[ASCII];
+      int alphabetSize = 1;
+      for (String word : keywords.keySet()) {
+        for (int i = 0; i < word.length(); i++) {
+          char c = word.charAt(i);
+          if (charClass[c] == 0) {
+            charClass[c] = (byte) alphabetSize++;
+          }
+        }
+      }
+
+      List<Map<Integer, Integer>> trie = new ArrayList<>();
+      List<Long> output = new ArrayList<>();
+      trie.add(new HashMap<>());
+      output.add(0L);
+      for (Map.Entry<String, Long> entry : keywords.entrySet()) {
+        int state = 0;
+        for (char c : entry.getKey().toCharArray()) {
+          Integer next = trie.get(state).get((int) charClass[c]);
+          if (next == null) {
+            next = trie.size();
+            trie.get(state).put((int) charClass[c], next);
+            trie.add(new HashMap<>());
+            output.add(0L);
+          }
+          state = next;
+        }
+        output.set(state, output.get(state) | entry.getValue());
+      }
+
+      int states = trie.size();
+      int[] transitions = new int[states * alphabetSize];
+      long[] outputs = new long[states];
+      int[] fail = new int[states];
+
+      Queue<Integer> queue = new ArrayDeque<>();
+      for (int cls = 0; cls < alphabetSize; cls++) {
+        Integer next = trie.get(0).get(cls);
+        if (next != null) {
+          transitions[cls] = next;
+          queue.add(next);
+        }
+      }
+      outputs[0] = output.get(0);
+
+      // Breadth-first so every state's failure target is finished before it is used.
+      while (!queue.isEmpty()) {
+        int state = queue.remove();
+        outputs[state] = output.get(state) | outputs[fail[state]];
+        for (int cls = 0; cls < alphabetSize; cls++) {
+          Integer next = trie.get(state).get(cls);
+          if (next != null) {
+            fail[next] = transitions[fail[state] * alphabetSize + cls];
+            transitions[state * alphabetSize + cls] = next;
+            queue.add(next);
+          } else {
+            transitions[state * alphabetSize + cls] = transitions[fail[state] * alphabetSize + cls];
+          }
+        }
+      }
+
+      return new KeywordMatcher(charClass, alphabetSize, transitions, outputs);
+    }
+  }
+}
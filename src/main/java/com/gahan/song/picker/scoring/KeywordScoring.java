@@ -0,0 +1,134 @@
+package com.gahan.song.picker.scoring;
+
+/**
+ * Keyword rules behind the fallback score and the mood profile. The analysis
+ * text and each track's name/artist are scanned once into bit masks; scoring
+ * is then a sum over a precomputed weight table.
+ */
+public final class KeywordScoring {
+
+  // Mood categories found in the analysis text; the low four bits index WEIGHTS.
+  public static final long ENERGETIC = 1L;
+  public static final long PEACEFUL = 1L << 1;
+  public static final long DRAMATIC = 1L << 2;
+  public static final long ROMANTIC = 1L << 3;
+  private static final long PROFILE_ENERGETIC = 1L << 4;
+  private static final long PROFILE_CALM = 1L << 5;
+  private static final long PROFILE_DRAMATIC = 1L << 6;
+  private static final int CATEGORY_BITS = 4;
+
+  // Keyword groups found in a track's name or artist.
+  private static final int DANCE = 0;
+  private static final int GENRE_UPBEAT = 1;
+  private static final int FAST = 2;
+  private static final int ACOUSTIC = 3;
+  private static final int CHILL = 4;
+  private static final int AMBIENT = 5;
+  private static final int SLOW_BALLAD = 6;
+  private static final int EPIC = 7;
+  private static final int HEAVY = 8;
+  private static final int DARK = 9;
+  private static final int LOVE = 10;
+  private static final int TENDER = 11;
+  private static final int SOUL = 12;
+  private static final int SLOW = 13;
+  private static final int TRACK_GROUPS = 14;
+
+  private static final KeywordMatcher ANALYSIS = KeywordMatcher.builder()
+          .add(ENERGETIC, "energetic", "vibrant", "upbeat", "bright", "lively", "joyful")
+          .add(PEACEFUL, "peaceful", "calm", "serene", "tranquil", "gentle", "soft")
+          .add(DRAMATIC, "dramatic", "intense", "powerful", "bold")
+          .add(ROMANTIC, "romantic", "warm", "intimate", "sunset")
+          .add(PROFILE_ENERGETIC, "energetic", "vibrant", "upbeat")
+          .add(PROFILE_CALM, "calm", "peaceful", "serene")
+          .add(PROFILE_DRAMATIC, "dramatic", "intense", "powerful")
+          .build();
+
+  private static final KeywordMatcher TRACK = KeywordMatcher.builder()
+          .add(bit(DANCE), "dance", "party", "beat", "pump", "energy", "power")
+          .add(bit(GENRE_UPBEAT), "pop", "rock", "edm", "electronic")
+          .add(bit(FAST), "fast", "high", "up", "jump", "move")
+          .add(bit(ACOUSTIC), "acoustic", "piano", "guitar", "strings")
+          .add(bit(CHILL), "chill", "relax", "calm", "quiet", "soft", "gentle")
+          .add(bit(AMBIENT), "ambient", "meditation", "spa", "sleep")
+          .add(bit(SLOW_BALLAD), "slow", "ballad")
+          .add(bit(EPIC), "epic", "symphony", "orchestra", "cinematic")
+          .add(bit(HEAVY), "dramatic", "intense", "powerful", "heavy")
+          .add(bit(DARK), "dark", "metal", "rock")
+          .add(bit(LOVE), "love", "heart", "romance", "kiss")
+          .add(bit(TENDER), "slow", "ballad", "tender", "sweet")
+          .add(bit(SOUL), "jazz", "soul", "r&b")
+          .add(bit(SLOW), "slow")
+          .build();
+
+  private static final double[][] WEIGHTS = buildWeights();
+
+  private KeywordScoring() {
+  }
+
+  public static long analysisMask(String analysis) {
+    return ANALYSIS.scan(analysis);
+  }
+
+  public static long trackMask(String trackName, String artist) {
+    return TRACK.scan(trackName) | TRACK.scan(artist);
+  }
+
+  public static MoodProfile analyzeMoodProfile(long analysisMask) {
+    if ((analysisMask & PROFILE_ENERGETIC) != 0) {
+      return new MoodProfile(0.8, 0.7, 0.7);
+    } else if ((analysisMask & PROFILE_CALM) != 0) {
+      return new MoodProfile(0.2, 0.6, 0.3);
+    } else if ((analysisMask & PROFILE_DRAMATIC) != 0) {
+      return new MoodProfile(0.7, 0.3, 0.4);
+    }
+    return new MoodProfile(0.5, 0.5, 0.5);
+  }
+
+  // Keyword part of calculateImprovedScore, without the random variety term.
+  public static double keywordScore(long analysisMask, long trackMask) {
+    double[] weights = WEIGHTS[(int) (analysisMask & ((1 << CATEGORY_BITS) - 1))];
+    if ((trackMask & bit(SLOW)) != 0) {
+      trackMask &= ~bit(GENRE_UPBEAT);
+    }
+    double score = 0.0;
+    while (trackMask != 0) {
+      score += weights[Long.numberOfTrailingZeros(trackMask)];
+      trackMask &= trackMask - 1;
+    }
+    return score;
+  }
+
+  private static double[][] buildWeights() {
+    double[][] weights = new double[1 << CATEGORY_BITS][TRACK_GROUPS];
+    for (int categories = 0; categories < weights.length; categories++) {
+      double[] w = weights[categories];
+      if ((categories & ENERGETIC) != 0) {
+        w[DANCE] += 3.0;
+        w[GENRE_UPBEAT] += 2.0;
+        w[FAST] += 1.5;
+      }
+      if ((categories & PEACEFUL) != 0) {
+        w[ACOUSTIC] += 3.0;
+        w[CHILL] += 2.5;
+        w[AMBIENT] += 2.0;
+        w[SLOW_BALLAD] += 1.5;
+      }
+      if ((categories & DRAMATIC) != 0) {
+        w[EPIC] += 3.0;
+        w[HEAVY] += 2.5;
+        w[DARK] += 2.0;
+      }
+      if ((categories & ROMANTIC) != 0) {
+        w[LOVE] += 3.0;
+        w[TENDER] += 2.0;
+        w[SOUL] += 1.5;
+      }
+    }
+    return weights;
+  }
+
+  private static long bit(int group) {
+    return 1L << group;
+  }
+}
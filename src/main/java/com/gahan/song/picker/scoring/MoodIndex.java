@@ -0,0 +1,282 @@
+package com.gahan.song.picker.scoring;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * A k-d tree over the enriched tracks of a fully loaded playlist, answering
+ * "top K for this mood" without scoring every track. Scores use the same
+ * arithmetic as {@link FeatureScorer} and ties go to the lower track index,
+ * so the result is exactly what scoring the whole playlist and taking
+ * {@link TopK} would give. Tracks without features are grouped by keyword
+ * mask; a group is only scored when its best possible fallback score could
+ * still make the top K.
+ *
+ * <p>The tree is implicit: the enriched tracks are permuted so that each
+ * range's median on the current axis sits in the middle of the range, with
+ * the axis cycling through energy, valence and danceability by depth.
+ */
+public final class MoodIndex {
+
+  private static final int LEAF_SIZE = 8;
+
+  private final int size;
+  private final int[] order;
+  private final float[][] coordinates;
+  // Unenriched tracks sorted by keyword mask; group g is fallback[groupStarts[g]..groupStarts[g + 1]).
+  private final int[] fallback;
+  private final long[] groupMasks;
+  private final int[] groupStarts;
+
+  private MoodIndex(int size, int[] order, float[][] coordinates, int[] fallback, long[] groupMasks,
+                    int[] groupStarts) {
+    this.size = size;
+    this.order = order;
+    this.coordinates = coordinates;
+    this.fallback = fallback;
+    this.groupMasks = groupMasks;
+    this.groupStarts = groupStarts;
+  }
+
+  public static MoodIndex build(TrackColumns columns) {
+    synchronized (columns) {
+      int n = columns.size();
+      int count = columns.enrichedCount();
+      int[] order = new int[count];
+      float[][] coordinates = new float[3][count];
+      int[] unenriched = new int[n - count];
+      for (int i = 0, e = 0, f = 0; i < n; i++) {
+        if (columns.enriched[i]) {
+          order[e] = i;
+          coordinates[0][e] = columns.energy[i];
+          coordinates[1][e] = columns.valence[i];
+          coordinates[2][e] = columns.danceability[i];
+          e++;
+        } else {
+          unenriched[f++] = i;
+        }
+      }
+
+      long[] masks = columns.keywordMask;
+      int[] fallback = IntStream.of(unenriched).boxed()
+              .sorted(Comparator.comparingLong(i -> masks[i]))
+              .mapToInt(Integer::intValue)
+              .toArray();
+      long[] groupMasks = new long[fallback.length];
+      int[] groupStarts = new int[fallback.length + 1];
+      int groups = 0;
+      for (int f = 0; f < fallback.length; f++) {
+        long mask = masks[fallback[f]];
+        if (groups == 0 || groupMasks[groups - 1] != mask) {
+          groupMasks[groups] = mask;
+          groupStarts[groups++] = f;
+        }
+      }
+      groupStarts[groups] = fallback.length;
+
+      MoodIndex index = new MoodIndex(n, order, coordinates, fallback,
+              Arrays.copyOf(groupMasks, groups), Arrays.copyOf(groupStarts, groups + 1));
+      index.build(0, count, 0);
+      return index;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // Track indices of the k best scores, best first.
+  public int[] top(MoodProfile mood, long analysisMask, int k) {
+    Candidates best = new Candidates(Math.min(k, size));
+    if (best.capacity == 0) {
+      return new int[0];
+    }
+    double[] target = {mood.energy(), mood.valence(), mood.danceability()};
+    search(0, order.length, 0, target, new double[3], best);
+
+    // A fallback score is the group's keyword score plus less than VARIETY, so a group whose
+    // ceiling is below the current worst cannot place a track. The ceiling itself can be
+    // reached after rounding, and would then win a tie on a lower index.
+    for (int g = 0; g < groupMasks.length; g++) {
+      double keywordScore = KeywordScoring.keywordScore(analysisMask, groupMasks[g]);
+      if (best.full() && keywordScore + FeatureScorer.VARIETY < best.worstScore()) {
+        continue;
+      }
+      for (int f = groupStarts[g]; f < groupStarts[g + 1]; f++) {
+        best.offer(fallback[f], FeatureScorer.calculateImprovedScore(groupMasks[g], analysisMask));
+      }
+    }
+    return best.drain();
+  }
+
+  private void build(int lo, int hi, int depth) {
+    if (hi - lo <= LEAF_SIZE) {
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, depth % 3);
+    build(lo, mid, depth + 1);
+    build(mid + 1, hi, depth + 1);
+  }
+
+  // offsets[a] is a lower bound on |target[a] - x[a]| for every point in the range; it
+  // is summed in the same order as the score, so the bound never rounds above it.
+  private void search(int lo, int hi, int depth, double[] target, double[] offsets, Candidates best) {
+    if (hi - lo <= LEAF_SIZE) {
+      for (int i = lo; i < hi; i++) {
+        best.offer(order[i], score(target, i));
+      }
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    int axis = depth % 3;
+    best.offer(order[mid], score(target, mid));
+
+    double diff = target[axis] - coordinates[axis][mid];
+    boolean left = diff < 0;
+    search(left ? lo : mid + 1, left ? mid : hi, depth + 1, target, offsets, best);
+
+    double previous = offsets[axis];
+    offsets[axis] = Math.abs(diff);
+    double bound = 1.0 - ((offsets[0] + offsets[1] + offsets[2]) / 3.0);
+    if (!best.full() || bound >= best.worstScore()) {
+      search(left ? mid + 1 : lo, left ? hi : mid, depth + 1, target, offsets, best);
+    }
+    offsets[axis] = previous;
+  }
+
+  private double score(double[] target, int i) {
+    return 1.0 - ((Math.abs(target[0] - coordinates[0][i])
+            + Math.abs(target[1] - coordinates[1][i])
+            + Math.abs(target[2] - coordinates[2][i])) / 3.0);
+  }
+
+  // Quickselect on one axis: afterwards position k holds its sorted value, with nothing
+  // greater before it and nothing smaller after it.
+  private void select(int lo, int hi, int k, int axis) {
+    float[] values = coordinates[axis];
+    while (lo < hi) {
+      float pivot = values[(lo + hi) >>> 1];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (values[i] < pivot) {
+          i++;
+        }
+        while (values[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swap(int a, int b) {
+    int track = order[a];
+    order[a] = order[b];
+    order[b] = track;
+    for (float[] axis : coordinates) {
+      float value = axis[a];
+      axis[a] = axis[b];
+      axis[b] = value;
+    }
+  }
+
+  // Fixed-size min-heap of the best candidates so far, ordered like TopK: a higher score
+  // wins, and on equal scores the lower track index wins.
+  private static final class Candidates {
+
+    final int capacity;
+    final int[] tracks;
+    final double[] scores;
+    int size;
+
+    Candidates(int capacity) {
+      this.capacity = capacity;
+      this.tracks = new int[capacity];
+      this.scores = new double[capacity];
+    }
+
+    boolean full() {
+      return size == capacity;
+    }
+
+    double worstScore() {
+      return scores[0];
+    }
+
+    void offer(int track, double score) {
+      if (size < capacity) {
+        tracks[size] = track;
+        scores[size] = score;
+        siftUp(size++);
+      } else if (better(track, score, tracks[0], scores[0])) {
+        tracks[0] = track;
+        scores[0] = score;
+        siftDown(0, size);
+      }
+    }
+
+    int[] drain() {
+      int[] result = new int[size];
+      for (int end = size - 1; end >= 0; end--) {
+        result[end] = tracks[0];
+        tracks[0] = tracks[end];
+        scores[0] = scores[end];
+        siftDown(0, end);
+      }
+      return result;
+    }
+
+    private static boolean better(int trackA, double scoreA, int trackB, double scoreB) {
+      return scoreA > scoreB || (scoreA == scoreB && trackA < trackB);
+    }
+
+    private void siftUp(int pos) {
+      while (pos > 0) {
+        int parent = (pos - 1) >>> 1;
+        if (!better(tracks[parent], scores[parent], tracks[pos], scores[pos])) {
+          break;
+        }
+        swap(pos, parent);
+        pos = parent;
+      }
+    }
+
+    private void siftDown(int pos, int end) {
+      while (true) {
+        int child = 2 * pos + 1;
+        if (child >= end) {
+          break;
+        }
+        if (child + 1 < end && better(tracks[child], scores[child], tracks[child + 1], scores[child + 1])) {
+          child++;
+        }
+        if (!better(tracks[pos], scores[pos], tracks[child], scores[child])) {
+          break;
+        }
+        swap(pos, child);
+        pos = child;
+      }
+    }
+
+    private void swap(int a, int b) {
+      int track = tracks[a];
+      tracks[a] = tracks[b];
+      tracks[b] = track;
+      double score = scores[a];
+      scores[a] = scores[b];
+      scores[b] = score;
+    }
+  }
+}
@@ -0,0 +1,4 @@
+package com.gahan.song.picker.scoring;
+
+public record MoodProfile(double energy, double valence, double danceability) {
+}
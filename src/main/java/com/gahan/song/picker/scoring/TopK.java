@@ -0,0 +1,73 @@
+package com.gahan.song.picker.scoring;
+
+/**
+ * Selects the indices of the {@code k} highest scores with a fixed-size
+ * min-heap in O(n log k). Ties go to the lower index, which matches a stable
+ * descending sort followed by {@code limit(k)}.
+ */
+public final class TopK {
+
+  private TopK() {
+  }
+
+  public static int[] select(double[] scores, int n, int k) {
+    int size = Math.min(k, n);
+    int[] heap = new int[size];
+    int filled = 0;
+
+    for (int i = 0; i < n; i++) {
+      if (filled < size) {
+        heap[filled] = i;
+        siftUp(heap, filled++, scores);
+      } else if (size > 0 && better(scores, i, heap[0])) {
+        heap[0] = i;
+        siftDown(heap, 0, size, scores);
+      }
+    }
+
+    // Pop the worst to the back until the heap is empty: best ends up first.
+    for (int end = size - 1; end > 0; end--) {
+      int worst = heap[0];
+      heap[0] = heap[end];
+      heap[end] = worst;
+      siftDown(heap, 0, end, scores);
+    }
+    return heap;
+  }
+
+  static boolean better(double[] scores, int a, int b) {
+    return scores[a] > scores[b] || (scores[a] == scores[b] && a < b);
+  }
+
+  private static void siftUp(int[] heap, int pos, double[] scores) {
+    int item = heap[pos];
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      if (!better(scores, heap[parent], item)) {
+        break;
+      }
+      heap[pos] = heap[parent];
+      pos = parent;
+    }
+    heap[pos] = item;
+  }
+
+  private static void siftDown(int[] heap, int pos, int size, double[] scores) {
+    int item = heap[pos];
+    while (true) {
+      int child = 2 * pos + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && better(scores, heap[child], heap[child + 1])) {
+        child++;
+      }
+      if (!better(scores, item, heap[child])) {
+        break;
+      }
+      heap[pos] = heap[child];
+      pos = child;
+    }
+    heap[pos] = item;
+  }
+}
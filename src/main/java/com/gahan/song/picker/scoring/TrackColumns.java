@@ -0,0 +1,78 @@
+package com.gahan.song.picker.scoring;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import java.util.List;
+
+/**
+ * A playlist laid out as parallel primitive columns. Index {@code i} in every
+ * column refers to {@code tracks.get(i)}; tracks without audio features keep
+ * their keyword mask for the fallback score.
+ */
+public final class TrackColumns {
+
+  private final List<SpotifyTrack> tracks;
+  final float[] energy;
+  final float[] valence;
+  final float[] danceability;
+  final boolean[] enriched;
+  final long[] keywordMask;
+  private int enrichedCount;
+  private volatile MoodIndex moodIndex;
+
+  private TrackColumns(List<SpotifyTrack> tracks) {
+    int size = tracks.size();
+    this.tracks = tracks;
+    this.energy = new float[size];
+    this.valence = new float[size];
+    this.danceability = new float[size];
+    this.enriched = new boolean[size];
+    this.keywordMask = new long[size];
+  }
+
+  public static TrackColumns of(List<SpotifyTrack> tracks) {
+    TrackColumns columns = new TrackColumns(tracks);
+    for (int i = 0; i < tracks.size(); i++) {
+      SpotifyTrack track = tracks.get(i);
+      columns.keywordMask[i] = KeywordScoring.trackMask(track.name(), track.artist());
+    }
+    return columns;
+  }
+
+  // Lookups complete on different threads; the lock keeps enrichedCount exact.
+  public synchronized void setFeatures(int index, AudioFeatures features) {
+    energy[index] = (float) features.energy();
+    valence[index] = (float) features.valence();
+    danceability[index] = (float) features.danceability();
+    if (!enriched[index]) {
+      enriched[index] = true;
+      enrichedCount++;
+    }
+  }
+
+  public int size() {
+    return keywordMask.length;
+  }
+
+  public synchronized int enrichedCount() {
+    return enrichedCount;
+  }
+
+  public boolean isEnriched(int index) {
+    return enriched[index];
+  }
+
+  // Set once enrichment has finished, for playlists large enough to be worth indexing.
+  public MoodIndex moodIndex() {
+    return moodIndex;
+  }
+
+  public void setMoodIndex(MoodIndex moodIndex) {
+    this.moodIndex = moodIndex;
+  }
+
+  public SpotifyTrack track(int index) {
+    return tracks.get(index);
+  }
+}
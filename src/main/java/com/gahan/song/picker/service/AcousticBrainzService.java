@@ -1,112 +1,524 @@
 package com.gahan.song.picker.service;
 
+import com.gahan.song.picker.cache.AppendOnlyStore;
+import com.gahan.song.picker.cache.CacheBackend;
+import com.gahan.song.picker.cache.CacheBackends;
+import com.gahan.song.picker.cache.CacheCodecs;
+import com.gahan.song.picker.cache.CacheStats;
+import com.gahan.song.picker.config.ResilienceProperties;
+import com.gahan.song.picker.http.CircuitBreaker;
+import com.gahan.song.picker.http.CircuitOpenException;
+import com.gahan.song.picker.http.DeadlineExceededException;
+import com.gahan.song.picker.http.Hedger;
+import com.gahan.song.picker.http.RateLimiter;
+import com.gahan.song.picker.http.RateLimitedException;
+import com.gahan.song.picker.http.RetryBudget;
+import com.gahan.song.picker.http.TokenBucket;
+import com.gahan.song.picker.json.AcousticBrainzDecoders;
+import com.gahan.song.picker.json.JsonDecoder;
+import com.gahan.song.picker.json.MusicBrainzDecoders;
+import com.gahan.song.picker.metrics.PipelineMetrics;
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.LowLevelSummary;
+import com.gahan.song.picker.model.MusicBrainzRecording;
+import com.gahan.song.picker.model.SpotifyTrack;
+import com.gahan.song.picker.store.LocalFeatureStore;
+import com.gahan.song.picker.store.RecordingIndex;
+import com.gahan.song.picker.store.RecordingMatch;
+
+import com.fasterxml.jackson.core.JsonParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.http.*;
 
-import java.util.*;
-import java.net.URLEncoder;
+import java.io.IOException;
+import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class AcousticBrainzService {
 
-  private final RestTemplate restTemplate = new RestTemplate();
+  private static final Logger log = LoggerFactory.getLogger(AcousticBrainzService.class);
 
-  public Map<String, Double> getAudioFeatures(String trackName, String artist) {
-    try {
+  // How long to wait before looking for the answers to a batch another node is searching.
+  private static final Duration FOLLOW_INTERVAL = Duration.ofSeconds(1);
+
+  @Autowired
+  private RestTemplate restTemplate;
+
+  @Autowired
+  private PipelineMetrics metrics;
+
+  @Autowired
+  private ResilienceProperties resilience;
+
+  @Autowired
+  private ExecutorService hedgeExecutor;
+
+  @Autowired
+  private ExecutorService enrichmentExecutor;
+
+  @Autowired
+  private CacheBackends cacheBackends;
+
+  @Value("${songpicker.cache.dir:${user.home}/.song-picker/cache}")
+  private String cacheDir;
+
+  @Value("${songpicker.cache.max-entries:50000}")
+  private int maxEntries;
+
+  @Value("${songpicker.cache.ttl:PT24H}")
+  private Duration ttl;
+
+  // Negative answers on disk count as misses after this long, so they are looked up again.
+  @Value("${songpicker.cache.disk.negative-ttl:P7D}")
+  private Duration negativeTtl;
 
-      String mbid = getMusicBrainzId(trackName, artist);
-      if (mbid == null) {
-        return null;
+  @Value("${songpicker.musicbrainz.base-url:https://musicbrainz.org}")
+  private String musicBrainzUrl;
+
+  @Value("${songpicker.acousticbrainz.base-url:https://acousticbrainz.org}")
+  private String acousticBrainzUrl;
+
+  // Feature file built by FeatureDumpIngester; when set, features are read from it
+  // and AcousticBrainz is not called.
+  @Value("${songpicker.acousticbrainz.local-store:}")
+  private String localStorePath;
+
+  // Index built by RecordingIndexBuilder; when set, MBIDs are resolved from it and
+  // MusicBrainz is not called. Matches below min-confidence are treated as misses.
+  @Value("${songpicker.musicbrainz.local-index:}")
+  private String localIndexPath;
+
+  @Value("${songpicker.musicbrainz.min-confidence:0.8}")
+  private double minConfidence;
+
+  // Tracks per combined MusicBrainz search when resolving a whole playlist.
+  @Value("${songpicker.musicbrainz.batch-size:25}")
+  private int batchSize;
+
+  @Value("${songpicker.musicbrainz.requests-per-second:1}")
+  private double musicBrainzRate;
+
+  @Value("${songpicker.acousticbrainz.requests-per-second:10}")
+  private double acousticBrainzRate;
+
+  private Upstream musicBrainz;
+  private Upstream acousticBrainz;
+
+  private CacheBackend<String, String> mbidCache;
+  private CacheBackend<String, AudioFeatures> featureCache;
+  private AppendOnlyStore<String> mbidStore;
+  private AppendOnlyStore<AudioFeatures> featureStore;
+  private LocalFeatureStore localFeatures;
+  private RecordingIndex localRecordings;
+
+  @PostConstruct
+  void init() throws IOException {
+    // With shared caches the rate limits are shared too, so N nodes stay within one budget.
+    musicBrainz = upstream("musicbrainz", cacheBackends.rateLimiter("musicbrainz", musicBrainzRate,
+            new TokenBucket(musicBrainzRate, 1)), PipelineMetrics.MBID_LOOKUP);
+    acousticBrainz = upstream("acousticbrainz", cacheBackends.rateLimiter("acousticbrainz", acousticBrainzRate,
+            new TokenBucket(acousticBrainzRate, (int) Math.ceil(acousticBrainzRate))), PipelineMetrics.FEATURE_FETCH);
+    mbidCache = cacheBackends.create("mbid", CacheCodecs.STRING, maxEntries, ttl);
+    featureCache = cacheBackends.create("features", CacheCodecs.AUDIO_FEATURES, maxEntries, ttl);
+    mbidStore = new AppendOnlyStore<>(Path.of(cacheDir, "mbid.log"), mbid -> mbid, mbid -> mbid, negativeTtl);
+    featureStore = new AppendOnlyStore<>(Path.of(cacheDir, "features.log"),
+            AudioFeatures::encode, AudioFeatures::decode, negativeTtl);
+    if (!localStorePath.isBlank()) {
+      Path file = Path.of(localStorePath);
+      if (Files.isRegularFile(file)) {
+        localFeatures = LocalFeatureStore.open(file);
+        log.info("Serving audio features for {} recordings from {}", localFeatures.size(), file);
+      } else {
+        log.warn("Local feature store {} not found, using AcousticBrainz", file);
       }
+    }
+    if (!localIndexPath.isBlank()) {
+      Path file = Path.of(localIndexPath);
+      if (Files.isRegularFile(file)) {
+        localRecordings = RecordingIndex.open(file);
+        log.info("Resolving MBIDs for {} recordings from {}", localRecordings.size(), file);
+      } else {
+        log.warn("Local recording index {} not found, using MusicBrainz", file);
+      }
+    }
+  }
 
-      String url = "https://acousticbrainz.org/api/v1/" + mbid + "/low-level";
+  @PreDestroy
+  void closeStores() throws Exception {
+    mbidStore.close();
+    featureStore.close();
+  }
 
-      ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
+  public AudioFeatures getAudioFeatures(String trackName, String artist) {
+    return getAudioFeatures(trackName, artist, Long.MAX_VALUE);
+  }
 
-      return parseAudioFeatures(response.getBody());
+  // Network calls that cannot get a rate-limit slot or an answer before the deadline are
+  // skipped, as are calls to an upstream whose circuit is open; cache hits are always served.
+  public AudioFeatures getAudioFeatures(String trackName, String artist, long deadlineNanos) {
+    try {
+      String mbid = localRecordings != null ? resolveLocally(trackName, artist)
+              : mbidCache.get(mbidKey(trackName, artist),
+                      key -> mbidStore.get(key, k -> getMusicBrainzId(trackName, artist, deadlineNanos)));
+      return mbid != null ? getRecordingFeatures(mbid, deadlineNanos) : null;
 
+    } catch (RateLimitedException | CircuitOpenException | DeadlineExceededException e) {
+      return null;
     } catch (Exception e) {
-      System.out.println("AcousticBrainz lookup failed for " + trackName + ": " + e.getMessage());
+      log.debug("MusicBrainz lookup failed for {}: {}", trackName, e.getMessage());
       return null;
     }
   }
 
-  private String getMusicBrainzId(String trackName, String artist) {
+  public AudioFeatures getRecordingFeatures(String mbid, long deadlineNanos) {
+    if (localFeatures != null) {
+      return localFeatures.features(mbid);
+    }
     try {
-      String encodedTrack = URLEncoder.encode(trackName, StandardCharsets.UTF_8);
-      String encodedArtist = URLEncoder.encode(artist, StandardCharsets.UTF_8);
-      String url = "https://musicbrainz.org/ws/2/recording/?query=recording:" +
-              encodedTrack + "%20AND%20artist:" + encodedArtist +
-              "&fmt=json&limit=1";
+      return featureCache.get(mbid,
+              key -> featureStore.get(key, k -> fetchAudioFeatures(k, deadlineNanos)));
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("User-Agent", "SongPickerApp/1.0");
-      HttpEntity<String> entity = new HttpEntity<>(headers);
+    } catch (RateLimitedException | CircuitOpenException | DeadlineExceededException e) {
+      return null;
+    } catch (Exception e) {
+      log.debug("AcousticBrainz lookup failed for {}: {}", mbid, e.getMessage());
+      return null;
+    }
+  }
 
-      ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
+  // True when the caches hold a definite "no features" answer for every track, so looking
+  // them up again would change nothing until those answers expire. A track whose last
+  // lookup failed or ran out of time has no such answer.
+  public boolean knownWithoutFeatures(List<SpotifyTrack> tracks) {
+    List<String> keys = tracks.stream().map(track -> mbidKey(track.name(), track.artist())).toList();
+    Set<String> absent = localRecordings == null ? mbidCache.preload(keys) : Set.of();
+    List<String> mbids = new ArrayList<>();
+    for (int i = 0; i < tracks.size(); i++) {
+      String mbid;
+      if (localRecordings != null) {
+        mbid = resolveLocally(tracks.get(i).name(), tracks.get(i).artist());
+      } else {
+        CacheBackend.Hit<String> cached = absent.contains(keys.get(i)) ? null : mbidCache.peek(keys.get(i));
+        if (cached == null) {
+          cached = mbidStore.peek(keys.get(i));
+        }
+        if (cached == null) {
+          return false;
+        }
+        mbid = cached.value();
+      }
+      if (mbid != null) {
+        mbids.add(mbid);
+      }
+    }
 
-      List<Map<String, Object>> recordings = (List<Map<String, Object>>) response.getBody().get("recordings");
-      if (recordings != null && !recordings.isEmpty()) {
-        return (String) recordings.get(0).get("id");
+    Set<String> absentFeatures = localFeatures == null ? featureCache.preload(mbids) : Set.of();
+    for (String mbid : mbids) {
+      if (localFeatures != null) {
+        if (localFeatures.features(mbid) != null) {
+          return false;
+        }
+        continue;
       }
+      CacheBackend.Hit<AudioFeatures> cached = absentFeatures.contains(mbid) ? null : featureCache.peek(mbid);
+      if (cached == null) {
+        cached = featureStore.peek(mbid);
+      }
+      if (cached == null || cached.value() != null) {
+        return false;
+      }
+    }
+    return true;
+  }
 
-    } catch (Exception e) {
-      System.out.println("MusicBrainz lookup failed: " + e.getMessage());
+  // MBIDs for a whole playlist, one future per track. Cached tracks complete straight away;
+  // the rest are resolved batch-size tracks per search on the enrichment executor, and each
+  // future completes as soon as its batch is matched. Futures never fail: tracks that are not
+  // found, or not reached before the deadline, complete with null.
+  public List<CompletableFuture<String>> resolveMusicBrainzIds(List<SpotifyTrack> tracks, long deadlineNanos) {
+    List<CompletableFuture<String>> results = new ArrayList<>(tracks.size());
+    Map<String, PendingLookup> pending = new LinkedHashMap<>();
+    // Keys the shared cache reported missing in the preload are not asked for again one by one.
+    Set<String> absent = localRecordings == null
+            ? mbidCache.preload(tracks.stream().map(track -> mbidKey(track.name(), track.artist())).toList())
+            : Set.of();
+    for (SpotifyTrack track : tracks) {
+      if (localRecordings != null) {
+        results.add(CompletableFuture.completedFuture(resolveLocally(track.name(), track.artist())));
+        continue;
+      }
+      // One lookup per tier, so an entry expiring in between never turns into a blocking
+      // single-track search here; true misses all go to the batched searches.
+      String key = mbidKey(track.name(), track.artist());
+      CacheBackend.Hit<String> cached = absent.contains(key) ? null : mbidCache.peek(key);
+      if (cached == null) {
+        cached = mbidStore.peek(key);
+        if (cached != null) {
+          mbidCache.put(key, cached.value());
+        }
+      }
+      if (cached != null) {
+        results.add(CompletableFuture.completedFuture(cached.value()));
+        continue;
+      }
+      // Repeats of a track within the playlist share one lookup.
+      results.add(pending.computeIfAbsent(key, k -> new PendingLookup(k,
+              new BatchedRecordingSearch.Track(track.name(), track.artist()), new CompletableFuture<>())).result());
     }
-    return null;
+
+    if (!pending.isEmpty()) {
+      List<PendingLookup> lookups = List.copyOf(pending.values());
+      enrichmentExecutor.execute(() -> {
+        try {
+          resolveBatches(lookups, deadlineNanos);
+        } finally {
+          lookups.forEach(lookup -> lookup.result().complete(null));
+        }
+      });
+    }
+    return results;
   }
 
-  private Map<String, Double> parseAudioFeatures(Map<String, Object> data) {
-    Map<String, Double> features = new HashMap<>();
+  public Map<String, CacheStats> cacheStats() {
+    Map<String, CacheStats> stats = new LinkedHashMap<>();
+    stats.put("mbid", mbidCache.stats());
+    stats.put("mbid_disk", mbidStore.stats());
+    stats.put("features", featureCache.stats());
+    stats.put("features_disk", featureStore.stats());
+    return stats;
+  }
+
+  public List<CircuitBreaker> circuitBreakers() {
+    return List.of(musicBrainz.breaker(), acousticBrainz.breaker());
+  }
 
+  private AudioFeatures fetchAudioFeatures(String mbid, long deadlineNanos) {
+    URI uri = UriComponentsBuilder.fromUriString(acousticBrainzUrl + "/api/v1/{mbid}/low-level")
+            .encode()
+            .buildAndExpand(mbid)
+            .toUri();
     try {
-      Map<String, Object> rhythm = (Map<String, Object>) data.get("rhythm");
-      Map<String, Object> tonal = (Map<String, Object>) data.get("tonal");
+      return call(acousticBrainz, uri, AcousticBrainzService::parseAudioFeatures, deadlineNanos);
+    } catch (HttpClientErrorException.NotFound e) {
+      return null;
+    }
+  }
 
-      if (rhythm != null) {
-        Double bpm = getDouble(rhythm, "bpm");
-        if (bpm != null) {
+  // A search that comes back full may have crowded some tracks out, so those are searched
+  // again in batches half the size, down to one track per search. Only a miss from a search
+  // that was not full is recorded as not found; a lone track missing from a full page is
+  // left unresolved and searched again next time.
+  //
+  // With shared caches a node takes a lease on a batch before searching it. A batch another
+  // node holds is set aside and its answers read from the shared cache a little later; the
+  // tracks still missing then go back in the queue, and are searched here once the other
+  // node's lease has expired.
+  private void resolveBatches(List<PendingLookup> lookups, long deadlineNanos) {
+    Deque<List<PendingLookup>> batches = new ArrayDeque<>();
+    Deque<FollowedBatch> followed = new ArrayDeque<>();
+    addBatches(batches, lookups, batchSize);
 
-          features.put("energy", Math.min(Math.max((bpm - 60) / 120.0, 0.0), 1.0));
+    while (!batches.isEmpty() || !followed.isEmpty()) {
+      FollowedBatch due = followed.peek();
+      if (due != null && (batches.isEmpty() || due.checkAtNanos() - System.nanoTime() <= 0)) {
+        followed.poll();
+        if (!sleepUntil(due.checkAtNanos(), deadlineNanos)) {
+          return;
         }
-
-        if (bpm != null && bpm >= 90 && bpm <= 130) {
-          features.put("danceability", 0.8); // Sweet spot for dancing
-        } else {
-          features.put("danceability", 0.4);
+        List<PendingLookup> missing = takeShared(due.batch());
+        if (!missing.isEmpty()) {
+          batches.add(missing);
         }
+        continue;
+      }
+
+      List<PendingLookup> batch = batches.poll();
+      if (deadlineNanos - System.nanoTime() <= 0) {
+        return;
+      }
+      if (!cacheBackends.tryLease("mbid", leaseKey(batch))) {
+        followed.add(new FollowedBatch(batch, System.nanoTime() + FOLLOW_INTERVAL.toNanos()));
+        continue;
+      }
+      List<BatchedRecordingSearch.Track> tracks = batch.stream().map(PendingLookup::track).toList();
+      List<MusicBrainzRecording> recordings;
+      try {
+        recordings = call(musicBrainz, searchUri(BatchedRecordingSearch.query(tracks),
+                BatchedRecordingSearch.RESULT_LIMIT), MusicBrainzDecoders.RECORDINGS, deadlineNanos);
+      } catch (RateLimitedException | CircuitOpenException | DeadlineExceededException e) {
+        batch.forEach(lookup -> lookup.result().complete(null));
+        continue;
+      } catch (Exception e) {
+        log.debug("MusicBrainz batch search for {} tracks failed: {}", batch.size(), e.getMessage());
+        batch.forEach(lookup -> lookup.result().complete(null));
+        continue;
       }
 
-      if (tonal != null) {
-        String key = getString(tonal, "key_key");
-        if (key != null) {
-          if (key.toLowerCase().contains("major")) {
-            features.put("valence", 0.7);
+      String[] mbids = BatchedRecordingSearch.match(tracks, recordings);
+      boolean full = recordings.size() >= BatchedRecordingSearch.RESULT_LIMIT;
+      List<PendingLookup> leftovers = new ArrayList<>();
+      for (int i = 0; i < batch.size(); i++) {
+        PendingLookup lookup = batch.get(i);
+        if (mbids[i] == null && full) {
+          if (batch.size() > 1) {
+            leftovers.add(lookup);
           } else {
-            features.put("valence", 0.3);
+            lookup.result().complete(null);
           }
+          continue;
         }
+        mbidCache.put(lookup.key(), mbids[i]);
+        mbidStore.put(lookup.key(), mbids[i]);
+        lookup.result().complete(mbids[i]);
       }
+      addBatches(batches, leftovers, Math.max(1, batch.size() / 2));
+      log.debug("Matched {} of {} tracks in one MusicBrainz search, {} to retry",
+              Arrays.stream(mbids).filter(Objects::nonNull).count(), batch.size(), leftovers.size());
+    }
+  }
 
-    } catch (Exception e) {
-      System.out.println("Error parsing AcousticBrainz data: " + e.getMessage());
+  // Completes the lookups another node has answered and returns the rest.
+  private List<PendingLookup> takeShared(List<PendingLookup> batch) {
+    Set<String> absent = mbidCache.preload(batch.stream().map(PendingLookup::key).toList());
+    List<PendingLookup> missing = new ArrayList<>();
+    for (PendingLookup lookup : batch) {
+      CacheBackend.Hit<String> shared = absent.contains(lookup.key()) ? null : mbidCache.peek(lookup.key());
+      if (shared == null) {
+        missing.add(lookup);
+        continue;
+      }
+      mbidStore.put(lookup.key(), shared.value());
+      lookup.result().complete(shared.value());
+    }
+    return missing;
+  }
+
+  private static String leaseKey(List<PendingLookup> batch) {
+    String keys = String.join("\n", batch.stream().map(PendingLookup::key).toList());
+    return UUID.nameUUIDFromBytes(keys.getBytes(StandardCharsets.UTF_8)).toString();
+  }
+
+  // False when the time comes after the deadline.
+  private static boolean sleepUntil(long atNanos, long deadlineNanos) {
+    if (atNanos - deadlineNanos > 0) {
+      return false;
+    }
+    long waitNanos = atNanos - System.nanoTime();
+    if (waitNanos > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
     }
+    return true;
+  }
 
-    return features.isEmpty() ? null : features;
+  private static void addBatches(Deque<List<PendingLookup>> batches, List<PendingLookup> lookups, int size) {
+    for (int start = 0; start < lookups.size(); start += size) {
+      batches.add(lookups.subList(start, Math.min(start + size, lookups.size())));
+    }
   }
 
-  private Double getDouble(Map<String, Object> map, String key) {
-    Object value = map.get(key);
-    if (value instanceof Number) {
-      return ((Number) value).doubleValue();
+  private String resolveLocally(String trackName, String artist) {
+    RecordingMatch match = metrics.time(PipelineMetrics.MBID_LOOKUP, () -> localRecordings.resolve(trackName, artist));
+    if (match == null || match.confidence() < minConfidence) {
+      log.debug("No confident local match for {} by {}: {}", trackName, artist, match);
+      return null;
+    }
+    return match.mbid();
+  }
+
+  private String getMusicBrainzId(String trackName, String artist, long deadlineNanos) {
+    URI uri = searchUri("recording:" + trackName + " AND artist:" + artist, 1);
+    List<MusicBrainzRecording> recordings = call(musicBrainz, uri, MusicBrainzDecoders.RECORDINGS, deadlineNanos);
+
+    if (!recordings.isEmpty()) {
+      return recordings.get(0).id();
     }
     return null;
   }
 
-  private String getString(Map<String, Object> map, String key) {
-    Object value = map.get(key);
-    return value != null ? value.toString() : null;
+  private URI searchUri(String query, int limit) {
+    return UriComponentsBuilder.fromUriString(musicBrainzUrl + "/ws/2/recording/")
+            .queryParam("query", "{query}")
+            .queryParam("fmt", "json")
+            .queryParam("limit", limit)
+            .encode()
+            .buildAndExpand(query)
+            .toUri();
+  }
+
+  private static String mbidKey(String trackName, String artist) {
+    return trackName + '\u001f' + artist;
+  }
+
+  public static AudioFeatures parseAudioFeatures(JsonParser parser) throws IOException {
+    LowLevelSummary summary = AcousticBrainzDecoders.LOW_LEVEL.decode(parser);
+    return summary.toAudioFeatures();
+  }
+
+  // Each attempt, including a hedge, takes its own rate-limit slot in the hedger and is
+  // counted by the breaker. An open breaker fails the lookup before it waits for a slot.
+  private <T> T call(Upstream upstream, URI uri, JsonDecoder<T> decoder, long deadlineNanos) {
+    if (!upstream.breaker().allowsCalls()) {
+      throw new CircuitOpenException(upstream.breaker().name());
+    }
+    return upstream.hedger().call(
+            () -> upstream.breaker().execute(() -> metrics.time(upstream.stage(), () -> get(uri, decoder)),
+                    AcousticBrainzService::isUpstreamFailure),
+            AcousticBrainzService::isUpstreamFailure, deadlineNanos);
+  }
+
+  // 404s and other client errors are answers, not signs of an unhealthy upstream.
+  private static boolean isUpstreamFailure(RuntimeException e) {
+    return e instanceof ResourceAccessException
+            || e instanceof HttpServerErrorException
+            || e instanceof HttpClientErrorException.TooManyRequests;
+  }
+
+  private Upstream upstream(String name, RateLimiter limiter, String stage) {
+    RetryBudget budget = new RetryBudget(resilience.getRetryRatio(), resilience.getRetryMinPerSecond(),
+            resilience.getRetryMaxBalance());
+    return new Upstream(new CircuitBreaker(name, resilience.circuitBreakerSettings()),
+            new Hedger(hedgeExecutor, resilience.getHedgeDelay(), budget, limiter), stage);
+  }
+
+  private <T> T get(URI uri, JsonDecoder<T> decoder) {
+    return restTemplate.execute(uri, HttpMethod.GET,
+            request -> {
+              request.getHeaders().set(HttpHeaders.USER_AGENT, "SongPickerApp/1.0");
+              request.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+            },
+            response -> decoder.decode(response.getBody()));
+  }
+
+  private record PendingLookup(String key, BatchedRecordingSearch.Track track, CompletableFuture<String> result) {
+  }
+
+  private record FollowedBatch(List<PendingLookup> batch, long checkAtNanos) {
+  }
+
+  private record Upstream(CircuitBreaker breaker, Hedger hedger, String stage) {
   }
-}
\ No newline at end of file
+}
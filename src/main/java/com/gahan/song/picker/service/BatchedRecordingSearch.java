@@ -0,0 +1,76 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.model.MusicBrainzRecording;
+import com.gahan.song.picker.store.Names;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Query building and result matching for resolving many tracks with one
+ * MusicBrainz recording search. Each track becomes a quoted
+ * {@code (recording:"..." AND artist:"...")} clause and the clauses are ORed;
+ * results are matched back to the tracks by normalized title and artist.
+ */
+final class BatchedRecordingSearch {
+
+  // The most results MusicBrainz returns for one search.
+  static final int RESULT_LIMIT = 100;
+
+  private BatchedRecordingSearch() {
+  }
+
+  record Track(String title, String artist) {
+  }
+
+  static String query(List<Track> tracks) {
+    StringJoiner query = new StringJoiner(" OR ");
+    for (Track track : tracks) {
+      query.add("(recording:\"" + escapePhrase(Names.baseTitle(track.title()))
+              + "\" AND artist:\"" + escapePhrase(Names.baseArtist(track.artist())) + "\")");
+    }
+    return query.toString();
+  }
+
+  // Inside a quoted Lucene phrase only the quote and the escape character are special.
+  static String escapePhrase(String text) {
+    return text.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+
+  // The MBID of the best-scored result for each track, or null where none matched. Results
+  // arrive in score order, so the first match for a track is kept.
+  static String[] match(List<Track> tracks, List<MusicBrainzRecording> results) {
+    Map<String, List<Integer>> byTitle = new HashMap<>();
+    String[] artists = new String[tracks.size()];
+    for (int i = 0; i < tracks.size(); i++) {
+      byTitle.computeIfAbsent(Names.title(tracks.get(i).title()), title -> new ArrayList<>()).add(i);
+      artists[i] = Names.artist(tracks.get(i).artist());
+    }
+
+    String[] mbids = new String[tracks.size()];
+    for (MusicBrainzRecording result : results) {
+      if (result.id() == null || result.title() == null) {
+        continue;
+      }
+      List<Integer> candidates = byTitle.get(Names.title(result.title()));
+      if (candidates == null) {
+        continue;
+      }
+      String credit = Names.artist(result.artist());
+      for (int i : candidates) {
+        if (mbids[i] == null && credits(credit, artists[i])) {
+          mbids[i] = result.id();
+        }
+      }
+    }
+    return mbids;
+  }
+
+  // Spotify passes the first artist only, so "Jay-Z & Linkin Park" still credits "Jay-Z".
+  private static boolean credits(String credit, String artist) {
+    return !artist.isEmpty() && (credit.equals(artist) || credit.startsWith(artist + " "));
+  }
+}
@@ -0,0 +1,140 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.model.PreparedImage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Shrinks uploads to the resolution the vision model works at (fit within
+ * the long-side limit, then the short-side limit) and re-encodes them as
+ * JPEG. Images that are already small enough and in a format OpenAI accepts
+ * are passed through untouched with their own MIME type.
+ */
+@Component
+public class ImagePreprocessor {
+
+  private static final Logger log = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+  private static final Set<String> ACCEPTED_TYPES = Set.of("image/jpeg", "image/png", "image/webp", "image/gif");
+
+  @Value("${songpicker.image.max-long-side:2048}")
+  private int maxLongSide;
+
+  @Value("${songpicker.image.max-short-side:768}")
+  private int maxShortSide;
+
+  @Value("${songpicker.image.jpeg-quality:0.85}")
+  private float jpegQuality;
+
+  public PreparedImage prepare(byte[] original, String contentType) {
+    String declaredType = normalizeType(contentType);
+
+    try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        return new PreparedImage(original, declaredType);
+      }
+
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        double scale = targetScale(width, height);
+        String readerType = "image/" + reader.getFormatName().toLowerCase().replace("jpg", "jpeg");
+
+        if (scale >= 1.0 && ACCEPTED_TYPES.contains(readerType)) {
+          return new PreparedImage(original, readerType);
+        }
+
+        // Subsample while decoding so a 12MP photo never exists as a full-size raster.
+        ImageReadParam param = reader.getDefaultReadParam();
+        int subsampling = Math.max(1, (int) Math.floor(1.0 / scale));
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        BufferedImage decoded = reader.read(0, param);
+
+        int targetWidth = Math.max(1, (int) Math.round(width * Math.min(scale, 1.0)));
+        int targetHeight = Math.max(1, (int) Math.round(height * Math.min(scale, 1.0)));
+        byte[] jpeg = encodeJpeg(resize(decoded, targetWidth, targetHeight));
+        log.debug("Image downscaled {}x{} -> {}x{}, {} -> {} bytes",
+                width, height, targetWidth, targetHeight, original.length, jpeg.length);
+        return new PreparedImage(jpeg, "image/jpeg");
+      } finally {
+        reader.dispose();
+      }
+
+    } catch (IOException | RuntimeException e) {
+      log.warn("Image preprocessing failed, sending original: {}", e.getMessage());
+      return new PreparedImage(original, declaredType);
+    }
+  }
+
+  private double targetScale(int width, int height) {
+    double longSide = (double) maxLongSide / Math.max(width, height);
+    double shortSide = (double) maxShortSide / Math.min(width, height);
+    return Math.min(1.0, Math.min(longSide, shortSide));
+  }
+
+  private static BufferedImage resize(BufferedImage source, int width, int height) {
+    // Drawing onto an RGB canvas also flattens any alpha channel, which JPEG cannot hold.
+    BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = target.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+    } finally {
+      g.dispose();
+    }
+    return target;
+  }
+
+  private byte[] encodeJpeg(BufferedImage image) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+      writer.setOutput(output);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(jpegQuality);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return out.toByteArray();
+  }
+
+  private static String normalizeType(String contentType) {
+    if (contentType != null) {
+      String type = contentType.toLowerCase().split(";")[0].trim();
+      if (type.equals("image/jpg")) {
+        return "image/jpeg";
+      }
+      if (ACCEPTED_TYPES.contains(type)) {
+        return type;
+      }
+    }
+    return "image/jpeg";
+  }
+}
@@ -1,84 +1,201 @@
 package com.gahan.song.picker.service;
 
+import com.gahan.song.picker.cache.CacheStats;
+import com.gahan.song.picker.cache.CacheBackend;
+import com.gahan.song.picker.cache.CacheBackends;
+import com.gahan.song.picker.cache.CacheCodecs;
+import com.gahan.song.picker.metrics.PipelineMetrics;
+import com.gahan.song.picker.model.PreparedImage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.*;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RequestCallback;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
 @Service
 public class OpenAIService {
 
+  private static final Logger log = LoggerFactory.getLogger(OpenAIService.class);
+
   @Value("${openai.api.key}")
   private String apiKey;
 
-  private final RestTemplate restTemplate = new RestTemplate();
-  private final String OPENAI_API_URL = "https://api.openai.com/v1/chat/completions";
+  @Value("${songpicker.openai.base-url:https://api.openai.com}")
+  private String baseUrl;
+
+  @Value("${songpicker.analysis-cache.max-entries:1000}")
+  private int analysisCacheSize;
+
+  @Value("${songpicker.analysis-cache.ttl:PT6H}")
+  private Duration analysisCacheTtl;
+
+  @Autowired
+  private RestTemplate restTemplate;
+
+  private static final String CHAT_COMPLETIONS_PATH = "/v1/chat/completions";
+  private static final String IMAGE_URL_PLACEHOLDER = "__IMAGE_URL__";
+  private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+  private CacheBackend<String, String> analysisCache;
+
+  @Autowired
+  private ImagePreprocessor imagePreprocessor;
+
+  @Autowired
+  private CacheBackends cacheBackends;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private ExecutorService visionExecutor;
+
+  @Autowired
+  private PipelineMetrics metrics;
+
+  private byte[] requestPrefix;
+  private byte[] requestSuffix;
+
+  @PostConstruct
+  void init() throws Exception {
+    analysisCache = cacheBackends.create("analysis", CacheCodecs.STRING, analysisCacheSize, analysisCacheTtl);
+
+    String template = objectMapper.writeValueAsString(createRequestBody(IMAGE_URL_PLACEHOLDER));
+    int split = template.indexOf(IMAGE_URL_PLACEHOLDER);
+    requestPrefix = template.substring(0, split).getBytes(StandardCharsets.UTF_8);
+    requestSuffix = template.substring(split + IMAGE_URL_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8);
+  }
 
   public String analyzeImage(MultipartFile file) throws Exception {
-    System.out.println("=== OPENAI DEBUG START ===");
-    System.out.println("Filename: " + file.getOriginalFilename());
-    System.out.println("File size: " + file.getSize() + " bytes");
-    System.out.println("Content type: " + file.getContentType());
-    System.out.println("API Key exists: " + (apiKey != null));
-    System.out.println("API Key starts with: " + (apiKey != null ? apiKey.substring(0, Math.min(10, apiKey.length())) + "..." : "NULL"));
-    System.out.println("API URL: " + OPENAI_API_URL);
+    return analyzeImageAsync(file).join();
+  }
 
-    try {
-      // Convert image to base64
-      System.out.println("Converting image to base64...");
-      String base64Image = encodeImageToBase64(file);
-      System.out.println("Base64 conversion successful, length: " + base64Image.length());
-
-      // Create the request payload
-      System.out.println("Creating request body...");
-      Map<String, Object> requestBody = createRequestBody(base64Image);
-      System.out.println("Request body created");
-
-      // Set headers
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      headers.setBearerAuth(apiKey);
-      System.out.println("Headers set with Bearer token");
+  // The upload is read on the calling thread; the OpenAI call itself runs on the vision
+  // executor. The returned future never fails: errors resolve to the mock analysis.
+  public CompletableFuture<String> analyzeImageAsync(MultipartFile file) throws IOException {
+    log.debug("Analyzing {} ({} bytes, {})", file.getOriginalFilename(), file.getSize(), file.getContentType());
 
-      // Make the API call
-      HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-      System.out.println("Making API call to OpenAI...");
+    String filename = file.getOriginalFilename();
+    String contentType = file.getContentType();
+    byte[] imageBytes = file.getBytes();
+    String contentHash = sha256Hex(imageBytes);
 
-      ResponseEntity<Map> response = restTemplate.postForEntity(OPENAI_API_URL, entity, Map.class);
-      System.out.println("Response status: " + response.getStatusCode());
-      System.out.println("Response body: " + response.getBody());
+    String cached = analysisCache.getIfPresent(contentHash);
+    if (cached != null) {
+      log.debug("Image analysis cache hit for {}", contentHash.substring(0, 12));
+      return CompletableFuture.completedFuture(cached);
+    }
 
-      String analysis = extractAnalysisFromResponse(response.getBody());
-      System.out.println("Analysis extracted successfully");
-      System.out.println("Analysis preview: " + analysis.substring(0, Math.min(100, analysis.length())) + "...");
-      System.out.println("=== OPENAI DEBUG END (SUCCESS) ===");
+    // Identical uploads that arrive while a call is running share that call instead of
+    // starting their own.
+    CompletableFuture<String> call = new CompletableFuture<>();
+    CompletableFuture<String> existing = inFlight.putIfAbsent(contentHash, call);
+    if (existing != null) {
+      log.debug("Joining in-flight analysis for identical image {}", contentHash.substring(0, 12));
+    } else {
+      submit(contentHash, call, () -> {
+        try {
+          String analysis = requestAnalysis(contentType, imageBytes);
+          analysisCache.put(contentHash, analysis);
+          call.complete(analysis);
+        } catch (Exception e) {
+          log.warn("OpenAI analysis failed, falling back to mock", e);
+          call.completeExceptionally(e);
+        } finally {
+          inFlight.remove(contentHash, call);
+        }
+      });
+    }
 
-      return analysis;
+    // Fall back to mock if API fails
+    return (existing != null ? existing : call).exceptionally(e -> generateMockAnalysis(filename));
+  }
 
-    } catch (Exception e) {
-      System.out.println("=== OPENAI ERROR ===");
-      System.out.println("Error type: " + e.getClass().getName());
-      System.out.println("Error message: " + e.getMessage());
-      System.out.println("Full stack trace:");
-      e.printStackTrace();
-      System.out.println("=== FALLING BACK TO MOCK ===");
-
-      // Fall back to mock if API fails
-      return generateMockAnalysis(file.getOriginalFilename());
+  public CacheStats cacheStats() {
+    return analysisCache.stats();
+  }
+
+  // A call the vision stage rejects is failed and forgotten, so uploads that joined it get
+  // the mock analysis instead of waiting forever; the caller sees the rejection.
+  private void submit(String contentHash, CompletableFuture<String> call, Runnable analysis) {
+    try {
+      visionExecutor.execute(analysis);
+    } catch (RuntimeException e) {
+      inFlight.remove(contentHash, call);
+      call.completeExceptionally(e);
+      throw e;
     }
   }
 
-  private String encodeImageToBase64(MultipartFile file) throws Exception {
-    byte[] imageBytes = file.getBytes();
-    return Base64.getEncoder().encodeToString(imageBytes);
+  private String requestAnalysis(String contentType, byte[] imageBytes) {
+    PreparedImage image = metrics.time(PipelineMetrics.IMAGE_ENCODE,
+            () -> imagePreprocessor.prepare(imageBytes, contentType));
+    byte[] dataUrlPrefix = ("data:" + image.mimeType() + ";base64,").getBytes(StandardCharsets.US_ASCII);
+    long base64Length = 4L * ((image.data().length + 2) / 3);
+    long contentLength = requestPrefix.length + dataUrlPrefix.length + base64Length + requestSuffix.length;
+    log.debug("Sending {} ({} bytes) to OpenAI", image.mimeType(), image.data().length);
+
+    // The JSON envelope is pre-rendered around a placeholder, so the base64 payload is
+    // written straight into the request body instead of being built up as a String.
+    RequestCallback writeBody = request -> {
+      HttpHeaders headers = request.getHeaders();
+      headers.setContentType(MediaType.APPLICATION_JSON);
+      headers.setBearerAuth(apiKey);
+      headers.setContentLength(contentLength);
+
+      StreamingHttpOutputMessage.Body body = out -> {
+        out.write(requestPrefix);
+        out.write(dataUrlPrefix);
+        try (OutputStream base64 = Base64.getEncoder().wrap(StreamUtils.nonClosing(out))) {
+          base64.write(image.data());
+        }
+        out.write(requestSuffix);
+      };
+      if (request instanceof StreamingHttpOutputMessage streaming) {
+        streaming.setBody(body);
+      } else {
+        body.writeTo(request.getBody());
+      }
+    };
+
+    Map<String, Object> response = metrics.time(PipelineMetrics.OPENAI_CALL,
+            () -> restTemplate.execute(baseUrl + CHAT_COMPLETIONS_PATH, HttpMethod.POST, writeBody,
+                    result -> objectMapper.readValue(result.getBody(), Map.class)));
+
+    return extractAnalysisFromResponse(response);
+  }
+
+  private static String sha256Hex(byte[] bytes) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
   }
 
-  private Map<String, Object> createRequestBody(String base64Image) {
+  private Map<String, Object> createRequestBody(String imageUrl) {
     return Map.of(
             "model", "gpt-4o",
             "messages", List.of(
@@ -92,7 +209,7 @@ public class OpenAIService {
                                     Map.of(
                                             "type", "image_url",
                                             "image_url", Map.of(
-                                                    "url", "data:image/jpeg;base64," + base64Image
+                                                    "url", imageUrl
                                             )
                                     )
                             )
@@ -102,20 +219,20 @@ public class OpenAIService {
     );
   }
 
+  // Throws on a malformed response so that it is neither cached nor shared with waiters.
   private String extractAnalysisFromResponse(Map<String, Object> response) {
     try {
       List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
       Map<String, Object> message = (Map<String, Object>) choices.get(0).get("message");
-      return (String) message.get("content");
+      return Objects.requireNonNull((String) message.get("content"), "content");
     } catch (Exception e) {
-      System.out.println("Error parsing OpenAI response: " + e.getMessage());
-      return "Error parsing OpenAI response: " + e.getMessage();
+      throw new IllegalStateException("Error parsing OpenAI response: " + e.getMessage(), e);
     }
   }
 
   // Fallback mock analysis if OpenAI fails
   private String generateMockAnalysis(String filename) {
-    System.out.println("Using mock analysis fallback for: " + filename);
+    log.info("Using mock analysis fallback for {}", filename);
 
     String lowerFilename = filename != null ? filename.toLowerCase() : "";
 
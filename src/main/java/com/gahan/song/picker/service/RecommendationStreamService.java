@@ -0,0 +1,201 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.model.SpotifyTrack;
+import com.gahan.song.picker.scoring.FeatureScorer;
+import com.gahan.song.picker.scoring.KeywordScoring;
+import com.gahan.song.picker.scoring.MoodProfile;
+import com.gahan.song.picker.scoring.TrackColumns;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drives the progressive variant of /analyze. Sends an "analysis" event as soon
+ * as the image analysis is back, "progress" events with the running top 5
+ * while the playlist is still enriching, and a final "complete" event.
+ *
+ * <p>The scheduler only runs the cheap checks and the sends. Ranking and the
+ * fallback search run on the request executor, and their results are handed
+ * back to the scheduler to be sent.
+ */
+@Service
+public class RecommendationStreamService {
+
+  private static final Logger log = LoggerFactory.getLogger(RecommendationStreamService.class);
+
+  @Value("${songpicker.stream.update-interval:PT0.25S}")
+  private Duration updateInterval;
+
+  @Autowired
+  private SpotifyService spotifyService;
+
+  @Autowired
+  private ScheduledExecutorService progressScheduler;
+
+  @Autowired
+  private ExecutorService requestExecutor;
+
+  public void stream(SseEmitter emitter, CompletableFuture<String> analysis, String playlistUrl) {
+    AtomicReference<TrackColumns> loaded = new AtomicReference<>();
+    CompletableFuture<TrackColumns> playlist = spotifyService.loadPlaylistAsync(playlistUrl, loaded::set);
+
+    Progress progress = new Progress(emitter, analysis, playlist, loaded);
+    // All events go out from the scheduler under the Progress lock, so they are never interleaved.
+    ScheduledFuture<?> task = progressScheduler.scheduleWithFixedDelay(progress::tick,
+            0, updateInterval.toMillis(), TimeUnit.MILLISECONDS);
+    progress.task = task;
+
+    emitter.onCompletion(() -> task.cancel(false));
+    emitter.onTimeout(() -> task.cancel(false));
+    emitter.onError(e -> task.cancel(false));
+  }
+
+  private final class Progress {
+
+    private final SseEmitter emitter;
+    private final CompletableFuture<String> analysis;
+    private final CompletableFuture<TrackColumns> playlist;
+    private final AtomicReference<TrackColumns> loaded;
+    private volatile ScheduledFuture<?> task;
+
+    private String analysisText;
+    private MoodProfile mood;
+    private long analysisMask;
+    // Computed by the first ranking; every ranking would compute the same scores.
+    private volatile double[] fallbackScores;
+    private int lastEnriched = -1;
+    private List<SpotifyTrack> lastTop;
+    private boolean ranking;
+    private boolean done;
+
+    Progress(SseEmitter emitter, CompletableFuture<String> analysis,
+             CompletableFuture<TrackColumns> playlist, AtomicReference<TrackColumns> loaded) {
+      this.emitter = emitter;
+      this.analysis = analysis;
+      this.playlist = playlist;
+      this.loaded = loaded;
+    }
+
+    synchronized void tick() {
+      if (done) {
+        return;
+      }
+      try {
+        if (analysisText == null) {
+          if (!analysis.isDone()) {
+            return;
+          }
+          analysisText = analysis.join();
+          analysisMask = KeywordScoring.analysisMask(analysisText);
+          mood = KeywordScoring.analyzeMoodProfile(analysisMask);
+          send("analysis", Map.of("analysis", analysisText));
+        }
+
+        // Completion is checked first: once the playlist future is done every lookup has
+        // been written, so the final round ranks the fully enriched columns.
+        boolean finished = playlist.isDone();
+        TrackColumns columns = finished ? playlist.join() : loaded.get();
+        boolean hasTracks = columns != null && columns.size() > 0;
+
+        if (finished) {
+          done = true;
+          stopTicking();
+          CompletableFuture.supplyAsync(() -> hasTracks
+                          ? rank(columns) : spotifyService.recommend(analysisText, null), requestExecutor)
+                  .whenComplete((tracks, error) -> progressScheduler.execute(() -> complete(tracks, error)));
+          return;
+        }
+
+        if (!ranking && hasTracks && columns.enrichedCount() != lastEnriched) {
+          lastEnriched = columns.enrichedCount();
+          ranking = true;
+          int enriched = lastEnriched;
+          CompletableFuture.supplyAsync(() -> rank(columns), requestExecutor)
+                  .whenComplete((top, error) -> progressScheduler.execute(
+                          () -> progress(enriched, columns.size(), top, error)));
+        }
+      } catch (Exception e) {
+        finish(e);
+      }
+    }
+
+    private List<SpotifyTrack> rank(TrackColumns columns) {
+      double[] scores = fallbackScores;
+      if (scores == null) {
+        scores = FeatureScorer.fallbackScores(columns, analysisMask);
+        fallbackScores = scores;
+      }
+      return spotifyService.rankPartial(columns, mood, scores);
+    }
+
+    private synchronized void progress(int enriched, int total, List<SpotifyTrack> top, Throwable error) {
+      ranking = false;
+      if (done) {
+        return;
+      }
+      try {
+        if (error != null) {
+          throw new IllegalStateException("Ranking failed", error);
+        }
+        if (!top.equals(lastTop)) {
+          lastTop = top;
+          send("progress", Map.of(
+                  "enriched", enriched,
+                  "total", total,
+                  "spotify_tracks", top));
+        }
+      } catch (Exception e) {
+        finish(e);
+      }
+    }
+
+    private synchronized void complete(List<SpotifyTrack> spotifyTracks, Throwable error) {
+      try {
+        if (error != null) {
+          throw new IllegalStateException("Ranking failed", error);
+        }
+        send("complete", Map.of("analysis", analysisText, "spotify_tracks", spotifyTracks));
+        finish(null);
+      } catch (Exception e) {
+        finish(e);
+      }
+    }
+
+    private void send(String name, Object data) throws IOException {
+      emitter.send(SseEmitter.event().name(name).data(data));
+    }
+
+    private void stopTicking() {
+      ScheduledFuture<?> current = task;
+      if (current != null) {
+        current.cancel(false);
+      }
+    }
+
+    private void finish(Exception error) {
+      done = true;
+      stopTicking();
+      if (error == null) {
+        emitter.complete();
+      } else {
+        log.warn("Streaming recommendations failed: {}", error.getMessage());
+        emitter.completeWithError(error);
+      }
+    }
+  }
+}
@@ -1,190 +1,336 @@
 package com.gahan.song.picker.service;
 
+import com.gahan.song.picker.cache.CacheBackend;
+import com.gahan.song.picker.cache.CacheBackends;
+import com.gahan.song.picker.cache.CacheCodecs;
+import com.gahan.song.picker.cache.CacheStats;
+import com.gahan.song.picker.cache.TrackRegistry;
+import com.gahan.song.picker.cache.TtlCache;
+import com.gahan.song.picker.http.RetryAfterBackoff;
+import com.gahan.song.picker.json.JsonDecoder;
+import com.gahan.song.picker.metrics.PipelineMetrics;
+import com.gahan.song.picker.json.SpotifyDecoders;
+import com.gahan.song.picker.model.PlaylistPage;
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.PlaylistSnapshot;
+import com.gahan.song.picker.model.SharedPlaylist;
+import com.gahan.song.picker.model.SpotifyTrack;
+import com.gahan.song.picker.scoring.FeatureScorer;
+import com.gahan.song.picker.scoring.KeywordScoring;
+import com.gahan.song.picker.scoring.MoodIndex;
+import com.gahan.song.picker.scoring.MoodProfile;
+import com.gahan.song.picker.scoring.TopK;
+import com.gahan.song.picker.scoring.TrackColumns;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.http.*;
 
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 public class SpotifyService {
 
-  @Value("${spotify.client.id}")
-  private String clientId;
+  private static final Logger log = LoggerFactory.getLogger(SpotifyService.class);
 
-  @Value("${spotify.client.secret}")
-  private String clientSecret;
+  private static final int PAGE_SIZE = 100;
+  private static final int MAX_ATTEMPTS = 5;
+  private static final String PLAYLIST_FIELDS =
+          "total,items(track(id,name,preview_url,external_urls(spotify),artists(name)))";
+
+  @Value("${songpicker.spotify.api-url:https://api.spotify.com}")
+  private String apiUrl;
+
+  @Value("${songpicker.enrichment.lookup-timeout:PT3S}")
+  private Duration lookupTimeout;
+
+  @Value("${songpicker.playlist-cache.max-entries:500}")
+  private int playlistCacheSize;
+
+  @Value("${songpicker.playlist-cache.ttl:PT24H}")
+  private Duration playlistCacheTtl;
+
+  // Below this size a full scan is as fast as building and searching an index.
+  @Value("${songpicker.mood-index.min-tracks:5000}")
+  private int moodIndexMinTracks;
 
   @Autowired
   private AcousticBrainzService acousticBrainzService;
 
-  private final RestTemplate restTemplate = new RestTemplate();
-  private String accessToken;
+  @Autowired
+  private SpotifyTokenManager tokenManager;
 
-  public List<Map<String, Object>> findPlaylistRecommendations(String aiAnalysis, String playlistUrl) {
-    try {
-      if (accessToken == null) {
-        getAccessToken();
-      }
+  @Autowired
+  private ExecutorService enrichmentExecutor;
 
-      String playlistId = extractPlaylistId(playlistUrl);
-      System.out.println("=== PLAYLIST DEBUG ===");
-      System.out.println("Extracted ID: " + playlistId);
+  @Autowired
+  private ExecutorService playlistPageExecutor;
 
-      if (playlistId == null) {
-        System.out.println("No valid playlist ID, using general search");
-        return findRecommendations(aiAnalysis);
-      }
+  @Autowired
+  private ExecutorService playlistExecutor;
 
-      List<Map<String, Object>> playlistTracks = getPlaylistTracks(playlistId);
-      System.out.println("Found " + playlistTracks.size() + " tracks in playlist");
+  @Autowired
+  private RestTemplate restTemplate;
 
-      if (playlistTracks.isEmpty()) {
-        return findRecommendations(aiAnalysis);
-      }
+  @Autowired
+  private PipelineMetrics metrics;
 
-      List<Map<String, Object>> matches = matchWithHybridApproach(playlistTracks, aiAnalysis);
-      System.out.println("Hybrid matching complete, returning " + matches.size() + " tracks");
+  @Autowired
+  private TrackRegistry trackRegistry;
 
-      return matches;
+  @Autowired
+  private CacheBackends cacheBackends;
 
-    } catch (Exception e) {
-      System.out.println("ERROR in playlist processing: " + e.getMessage());
-      e.printStackTrace();
-      return findRecommendations(aiAnalysis);
+  private final RetryAfterBackoff spotifyBackoff = new RetryAfterBackoff();
+  private TtlCache<String, PlaylistSnapshot> playlistCache;
+  // Playlists whose enrichment has settled, with their mood index attached, by playlist
+  // and snapshot. Nothing writes to these columns once they are here.
+  private TtlCache<String, TrackColumns> settledPlaylists;
+  // Track lists other nodes have fetched; null unless caches are shared.
+  private CacheBackend<String, SharedPlaylist> sharedPlaylists;
+
+  // Either a track list still to enrich, or settled columns to use as they are.
+  private record LoadedPlaylist(PlaylistSnapshot snapshot, TrackColumns settled) {
+
+    List<SpotifyTrack> tracks() {
+      return snapshot.refs().tracks();
     }
   }
 
-  private List<Map<String, Object>> matchWithHybridApproach(List<Map<String, Object>> tracks, String aiAnalysis) {
-    System.out.println("=== HYBRID MATCHING (AcousticBrainz + Keywords) ===");
-    List<TrackWithScore> scoredTracks = new ArrayList<>();
-    MoodProfile targetMood = analyzeMoodProfile(aiAnalysis);
-
-    int acousticBrainzSuccess = 0;
-    int keywordFallback = 0;
+  @PostConstruct
+  void initCache() {
+    playlistCache = new TtlCache<>(playlistCacheSize, playlistCacheTtl);
+    settledPlaylists = new TtlCache<>(playlistCacheSize, playlistCacheTtl);
+    sharedPlaylists = cacheBackends.createShared("playlist", CacheCodecs.PLAYLIST, playlistCacheTtl);
+  }
 
-    for (Map<String, Object> track : tracks) {
-      String trackName = (String) track.get("name");
-      String artist = (String) track.get("artist");
-      double score = 0.0;
+  public CacheStats cacheStats() {
+    return playlistCache.stats();
+  }
 
-      Map<String, Double> audioFeatures = acousticBrainzService.getAudioFeatures(trackName, artist);
+  public List<SpotifyTrack> findPlaylistRecommendations(String aiAnalysis, String playlistUrl) {
+    return recommend(aiAnalysis, loadPlaylistAsync(playlistUrl).join());
+  }
 
-      if (audioFeatures != null && !audioFeatures.isEmpty()) {
+  // Loading and enriching a playlist does not depend on the image analysis, so callers
+  // start this first and only join it when they are ready to score. Completes with null
+  // when there is no usable playlist, which makes recommend() fall back to search. The
+  // steps after enrichment run on the playlist executor, never on the lookup threads or
+  // the timer thread that completed the last lookup.
+  public CompletableFuture<TrackColumns> loadPlaylistAsync(String playlistUrl) {
+    return loadPlaylistAsync(playlistUrl, columns -> { });
+  }
 
-        score = calculateFeatureMatchScore(targetMood, audioFeatures);
-        acousticBrainzSuccess++;
-        System.out.println("✓ AcousticBrainz: " + trackName + " (score: " + String.format("%.2f", score) + ")");
-      } else {
+  // onLoaded receives the columns as soon as the track list is known, while enrichment is
+  // still filling them in.
+  public CompletableFuture<TrackColumns> loadPlaylistAsync(String playlistUrl, Consumer<TrackColumns> onLoaded) {
+    String playlistId = extractPlaylistId(playlistUrl);
+    if (playlistId == null) {
+      log.debug("No valid playlist ID in {}, using general search", playlistUrl);
+      return CompletableFuture.completedFuture(null);
+    }
 
-        score = calculateImprovedScore(track, aiAnalysis.toLowerCase());
-        keywordFallback++;
-        System.out.println("○ Keyword fallback: " + trackName + " (score: " + String.format("%.2f", score) + ")");
-      }
+    return CompletableFuture.supplyAsync(() -> getPlaylistTracks(playlistId), playlistExecutor)
+            .thenCompose(loaded -> {
+              if (loaded.settled() != null) {
+                onLoaded.accept(loaded.settled());
+                return CompletableFuture.completedFuture(loaded.settled());
+              }
+              log.debug("Found {} tracks in playlist {}", loaded.tracks().size(), playlistId);
+              return enrichAsync(loaded.tracks(), loaded.snapshot().refs(), onLoaded)
+                      .thenApplyAsync(columns -> settle(playlistId, loaded, columns), playlistExecutor);
+            })
+            .exceptionally(e -> {
+              log.warn("Loading playlist {} failed", playlistId, e);
+              return null;
+            });
+  }
 
-      scoredTracks.add(new TrackWithScore(track, score));
+  public List<SpotifyTrack> recommend(String aiAnalysis, TrackColumns playlist) {
+    if (playlist == null || playlist.size() == 0) {
+      return findRecommendations(aiAnalysis);
     }
 
-    System.out.println("Results: " + acousticBrainzSuccess + " with AcousticBrainz, " +
-            keywordFallback + " with keywords");
+    return metrics.time(PipelineMetrics.SCORING, () -> matchWithHybridApproach(playlist, aiAnalysis));
+  }
+
+  // Recommendations for several analyses against the same loaded playlist; the playlist is
+  // scored for all of them in one pass instead of once per analysis.
+  public List<List<SpotifyTrack>> recommendBatch(List<String> aiAnalyses, TrackColumns playlist) {
+    List<List<SpotifyTrack>> results = new ArrayList<>(aiAnalyses.size());
+    if (playlist == null || playlist.size() == 0) {
+      for (String aiAnalysis : aiAnalyses) {
+        results.add(findRecommendations(aiAnalysis));
+      }
+      return results;
+    }
 
-    return scoredTracks.stream()
-            .sorted((a, b) -> Double.compare(b.score, a.score))
-            .limit(5)
-            .map(tws -> tws.track)
-            .collect(Collectors.toList());
+    return metrics.time(PipelineMetrics.SCORING, () -> scoreBatch(aiAnalyses, playlist));
   }
 
-  private double calculateFeatureMatchScore(MoodProfile target, Map<String, Double> features) {
-    double energy = features.getOrDefault("energy", 0.5);
-    double valence = features.getOrDefault("valence", 0.5);
-    double danceability = features.getOrDefault("danceability", 0.5);
+  private List<List<SpotifyTrack>> scoreBatch(List<String> aiAnalyses, TrackColumns playlist) {
+    List<List<SpotifyTrack>> results = new ArrayList<>(aiAnalyses.size());
+    int count = aiAnalyses.size();
+    MoodProfile[] moods = new MoodProfile[count];
+    long[] analysisMasks = new long[count];
+    for (int m = 0; m < count; m++) {
+      analysisMasks[m] = KeywordScoring.analysisMask(aiAnalyses.get(m));
+      moods[m] = KeywordScoring.analyzeMoodProfile(analysisMasks[m]);
+    }
 
-    double energyDiff = Math.abs(target.energy - energy);
-    double valenceDiff = Math.abs(target.valence - valence);
-    double danceabilityDiff = Math.abs(target.danceability - danceability);
+    MoodIndex index = playlist.moodIndex();
+    if (index != null) {
+      for (int m = 0; m < count; m++) {
+        results.add(tracks(playlist, index.top(moods[m], analysisMasks[m], 5)));
+      }
+      return results;
+    }
 
-    return 1.0 - ((energyDiff + valenceDiff + danceabilityDiff) / 3.0);
+    double[][] scores = new double[count][playlist.size()];
+    FeatureScorer.scoreBatch(playlist, moods, analysisMasks, scores);
+    for (double[] imageScores : scores) {
+      results.add(topTracks(playlist, imageScores));
+    }
+    return results;
   }
 
-  private MoodProfile analyzeMoodProfile(String aiAnalysis) {
-    String analysis = aiAnalysis.toLowerCase();
-
-    double energy = 0.5;
-    double valence = 0.5;
-    double danceability = 0.5;
-
-    if (analysis.contains("energetic") || analysis.contains("vibrant") || analysis.contains("upbeat")) {
-      energy = 0.8;
-      valence = 0.7;
-      danceability = 0.7;
-    } else if (analysis.contains("calm") || analysis.contains("peaceful") || analysis.contains("serene")) {
-      energy = 0.2;
-      valence = 0.6;
-      danceability = 0.3;
-    } else if (analysis.contains("dramatic") || analysis.contains("intense") || analysis.contains("powerful")) {
-      energy = 0.7;
-      valence = 0.3;
-      danceability = 0.4;
+  private List<SpotifyTrack> matchWithHybridApproach(TrackColumns columns, String aiAnalysis) {
+    long analysisMask = KeywordScoring.analysisMask(aiAnalysis);
+    MoodProfile targetMood = KeywordScoring.analyzeMoodProfile(analysisMask);
+    MoodIndex index = columns.moodIndex();
+    if (index != null) {
+      return tracks(columns, index.top(targetMood, analysisMask, 5));
     }
 
-    return new MoodProfile(energy, valence, danceability);
+    double[] scores = new double[columns.size()];
+    FeatureScorer.score(columns, targetMood, analysisMask, scores);
+    return topTracks(columns, scores);
   }
 
-  private double calculateImprovedScore(Map<String, Object> track, String analysis) {
-    String trackName = ((String) track.get("name")).toLowerCase();
-    String artist = ((String) track.get("artist")).toLowerCase();
-    String combined = trackName + " " + artist;
-    double score = Math.random() * 0.5; // Add variety
+  // Ranks a playlist that may still be enriching; the lock keeps each track's features
+  // consistent with its enriched flag while scoring.
+  public List<SpotifyTrack> rankPartial(TrackColumns columns, MoodProfile mood, double[] fallbackScores) {
+    return metrics.time(PipelineMetrics.SCORING, () -> {
+      double[] scores = new double[columns.size()];
+      synchronized (columns) {
+        FeatureScorer.score(columns, mood, fallbackScores, scores);
+      }
+      return topTracks(columns, scores);
+    });
+  }
 
-    if (analysis.contains("energetic") || analysis.contains("vibrant") ||
-            analysis.contains("upbeat") || analysis.contains("bright") ||
-            analysis.contains("lively") || analysis.contains("joyful")) {
+  private List<SpotifyTrack> topTracks(TrackColumns columns, double[] scores) {
+    return tracks(columns, TopK.select(scores, columns.size(), 5));
+  }
 
-      if (combined.matches(".*(dance|party|beat|pump|energy|power).*")) score += 3.0;
-      if (combined.matches(".*(pop|rock|edm|electronic).*") && !combined.contains("slow"))
-        score += 2.0;
-      if (combined.matches(".*(fast|high|up|jump|move).*")) score += 1.5;
+  private static List<SpotifyTrack> tracks(TrackColumns columns, int[] indices) {
+    List<SpotifyTrack> matches = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      matches.add(columns.track(index));
     }
+    return matches;
+  }
 
-    if (analysis.contains("peaceful") || analysis.contains("calm") ||
-            analysis.contains("serene") || analysis.contains("tranquil") ||
-            analysis.contains("gentle") || analysis.contains("soft")) {
-
-      if (combined.matches(".*(acoustic|piano|guitar|strings).*")) score += 3.0;
-      if (combined.matches(".*(chill|relax|calm|quiet|soft|gentle).*")) score += 2.5;
-      if (combined.matches(".*(ambient|meditation|spa|sleep).*")) score += 2.0;
-      if (combined.matches(".*(slow|ballad).*")) score += 1.5;
+  // Large playlists get a mood index so each recommendation is a tree search rather than a
+  // full scan. Once every track has features, or a cached answer that it has none, the
+  // columns and their index are kept for the snapshot and later requests use them as is.
+  private TrackColumns settle(String playlistId, LoadedPlaylist loaded, TrackColumns columns) {
+    if (columns.size() >= moodIndexMinTracks) {
+      columns.setMoodIndex(MoodIndex.build(columns));
+      log.debug("Built mood index for playlist {} over {} tracks", playlistId, columns.enrichedCount());
     }
-
-    if (analysis.contains("dramatic") || analysis.contains("intense") ||
-            analysis.contains("powerful") || analysis.contains("bold")) {
-
-      if (combined.matches(".*(epic|symphony|orchestra|cinematic).*")) score += 3.0;
-      if (combined.matches(".*(dramatic|intense|powerful|heavy).*")) score += 2.5;
-      if (combined.matches(".*(dark|metal|rock).*")) score += 2.0;
+    String snapshotId = loaded.snapshot().snapshotId();
+    if (snapshotId == null) {
+      return columns;
     }
+    List<SpotifyTrack> unenriched = new ArrayList<>();
+    for (int i = 0; i < columns.size(); i++) {
+      if (!columns.isEnriched(i)) {
+        unenriched.add(loaded.tracks().get(i));
+      }
+    }
+    if (unenriched.isEmpty() || acousticBrainzService.knownWithoutFeatures(unenriched)) {
+      settledPlaylists.put(snapshotKey(playlistId, snapshotId), columns);
+    }
+    return columns;
+  }
 
-    if (analysis.contains("romantic") || analysis.contains("warm") ||
-            analysis.contains("intimate") || analysis.contains("sunset")) {
+  private static String snapshotKey(String playlistId, String snapshotId) {
+    return playlistId + '\u001f' + snapshotId;
+  }
 
-      if (combined.matches(".*(love|heart|romance|kiss).*")) score += 3.0;
-      if (combined.matches(".*(slow|ballad|tender|sweet).*")) score += 2.0;
-      if (combined.matches(".*(jazz|soul|r&b).*")) score += 1.5;
+  // Tracks already enriched through another playlist take their features from the registry.
+  // MBIDs for the rest are resolved with batched searches; each track's feature lookup
+  // starts as soon as its MBID is known. Each lookup completes with null once the timeout
+  // passes, so slow or rate-limited tracks fall back to keyword scoring instead of holding
+  // up the whole playlist.
+  private CompletableFuture<TrackColumns> enrichAsync(List<SpotifyTrack> tracks, TrackRegistry.Refs refs,
+                                                     Consumer<TrackColumns> onLoaded) {
+    long timeoutNanos = lookupTimeout.toNanos();
+    long deadline = System.nanoTime() + timeoutNanos;
+    TrackColumns columns = TrackColumns.of(tracks);
+    TrackRegistry.Enrichment known = trackRegistry.enrichment(refs);
+
+    List<Integer> pending = new ArrayList<>();
+    List<SpotifyTrack> unresolved = new ArrayList<>();
+    for (int i = 0; i < tracks.size(); i++) {
+      if (known.features()[i] != null) {
+        columns.setFeatures(i, known.features()[i]);
+      } else {
+        pending.add(i);
+        if (known.mbids()[i] == null) {
+          unresolved.add(tracks.get(i));
+        }
+      }
+    }
+    onLoaded.accept(columns);
+
+    List<CompletableFuture<String>> resolved = acousticBrainzService.resolveMusicBrainzIds(unresolved, deadline);
+    CompletableFuture<?>[] lookups = new CompletableFuture<?>[pending.size()];
+    int next = 0;
+    for (int p = 0; p < lookups.length; p++) {
+      int index = pending.get(p);
+      CompletableFuture<String> mbid = known.mbids()[index] != null
+              ? CompletableFuture.completedFuture(known.mbids()[index])
+              : resolved.get(next++).thenApply(id -> {
+                if (id != null) {
+                  trackRegistry.setMbid(refs, index, id);
+                }
+                return id;
+              });
+      lookups[p] = mbid
+              .thenApplyAsync(id -> id != null ? acousticBrainzService.getRecordingFeatures(id, deadline) : null,
+                      enrichmentExecutor)
+              .completeOnTimeout(null, timeoutNanos, TimeUnit.NANOSECONDS)
+              .thenAccept(features -> {
+                if (features != null) {
+                  columns.setFeatures(index, features);
+                  trackRegistry.setFeatures(refs, index, features);
+                }
+              });
     }
 
-    return score;
+    return CompletableFuture.allOf(lookups).thenApplyAsync(done -> {
+      int enriched = columns.enrichedCount();
+      metrics.recordFeatureSources(enriched, columns.size() - enriched);
+      log.debug("Enriched {} of {} tracks from AcousticBrainz", enriched, columns.size());
+      return columns;
+    }, playlistExecutor);
   }
 
-  public List<Map<String, Object>> findRecommendations(String aiAnalysis) {
+  public List<SpotifyTrack> findRecommendations(String aiAnalysis) {
     try {
-      if (accessToken == null) {
-        getAccessToken();
-      }
-
       String searchQuery = extractSearchTerms(aiAnalysis);
       return searchTracks(searchQuery);
 
@@ -217,89 +363,115 @@ public class SpotifyService {
   }
 
 
-  private List<Map<String, Object>> getPlaylistTracks(String playlistId) throws Exception {
-    List<Map<String, Object>> allTracks = new ArrayList<>();
-    String url = "https://api.spotify.com/v1/playlists/" + playlistId + "/tracks?limit=100";
-
-    while (url != null) {
-      HttpHeaders headers = new HttpHeaders();
-      headers.set("Authorization", "Bearer " + accessToken);
-      HttpEntity<String> entity = new HttpEntity<>(headers);
-
-      ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
-
-      allTracks.addAll(parsePlaylistResponse(response.getBody()));
+  // Spotify bumps snapshot_id on every playlist edit, so an unchanged snapshot means the
+  // cached track list is still exact and only the small metadata call is needed.
+  private LoadedPlaylist getPlaylistTracks(String playlistId) {
+    String snapshotId = getSnapshotId(playlistId);
+    TrackColumns settled = snapshotId != null
+            ? settledPlaylists.getIfPresent(snapshotKey(playlistId, snapshotId)) : null;
+    if (settled != null) {
+      log.debug("Playlist {} unchanged, reusing its {} enriched tracks", playlistId, settled.size());
+      return new LoadedPlaylist(null, settled);
+    }
 
-      url = (String) response.getBody().get("next");
+    PlaylistSnapshot cached = playlistCache.getIfPresent(playlistId);
+    if (cached != null && cached.snapshotId().equals(snapshotId)) {
+      log.debug("Playlist {} unchanged, reusing {} cached tracks", playlistId, cached.refs().tracks().size());
+      return new LoadedPlaylist(cached, null);
     }
 
-    System.out.println("Retrieved " + allTracks.size() + " total tracks from playlist");
-    return allTracks;
+    List<SpotifyTrack> fetched = fetchSharedOrRemote(playlistId, snapshotId);
+    PlaylistSnapshot snapshot = new PlaylistSnapshot(snapshotId, trackRegistry.intern(fetched));
+    if (snapshotId != null) {
+      playlistCache.put(playlistId, snapshot);
+    }
+    return new LoadedPlaylist(snapshot, null);
   }
 
-  private List<Map<String, Object>> parsePlaylistResponse(Map<String, Object> response) {
-    List<Map<String, Object>> tracks = new ArrayList<>();
-
-    List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
-
-    for (Map<String, Object> item : items) {
-      Map<String, Object> track = (Map<String, Object>) item.get("track");
-      if (track != null) {
-        Map<String, Object> trackData = new HashMap<>();
-        trackData.put("name", track.get("name"));
-        trackData.put("artist", getArtistName(track));
-        trackData.put("preview_url", track.get("preview_url"));
-        trackData.put("spotify_url", getSpotifyUrl(track));
-        tracks.add(trackData);
-      }
+  // Another node may already have fetched this snapshot; an unknown snapshot is never shared.
+  private List<SpotifyTrack> fetchSharedOrRemote(String playlistId, String snapshotId) {
+    if (sharedPlaylists == null || snapshotId == null) {
+      return fetchPlaylistTracks(playlistId);
     }
-
+    SharedPlaylist shared = sharedPlaylists.getIfPresent(playlistId);
+    if (shared != null && snapshotId.equals(shared.snapshotId())) {
+      log.debug("Playlist {} fetched by another node, reusing {} tracks", playlistId, shared.tracks().size());
+      return shared.tracks();
+    }
+    List<SpotifyTrack> tracks = fetchPlaylistTracks(playlistId);
+    sharedPlaylists.put(playlistId, new SharedPlaylist(snapshotId, tracks));
     return tracks;
   }
 
-  private void getAccessToken() throws Exception {
-    String url = "https://accounts.spotify.com/api/token";
-
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-    String auth = Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes());
-    headers.set("Authorization", "Basic " + auth);
-
-    String body = "grant_type=client_credentials";
-    HttpEntity<String> entity = new HttpEntity<>(body, headers);
-
-    ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
-    accessToken = (String) response.getBody().get("access_token");
+  private String getSnapshotId(String playlistId) {
+    String url = apiUrl + "/v1/playlists/" + playlistId + "?fields=snapshot_id";
+    return get(url, SpotifyDecoders.SNAPSHOT_ID);
   }
 
-  private List<Map<String, Object>> searchTracks(String query) throws Exception {
-    String url = "https://api.spotify.com/v1/search?q=" + query + "&type=track&limit=5";
+  // The first page tells us the total; the remaining pages are requested by offset in
+  // parallel, limited by the size of the page executor.
+  private List<SpotifyTrack> fetchPlaylistTracks(String playlistId) {
+    String url = apiUrl + "/v1/playlists/" + playlistId + "/tracks?limit=" + PAGE_SIZE +
+            "&fields=" + PLAYLIST_FIELDS + "&offset=";
 
-    HttpHeaders headers = new HttpHeaders();
-    headers.set("Authorization", "Bearer " + accessToken);
-    HttpEntity<String> entity = new HttpEntity<>(headers);
+    PlaylistPage firstPage = fetchPage(url + 0);
+    int total = firstPage.total();
 
-    ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.GET, entity, Map.class);
+    List<CompletableFuture<List<SpotifyTrack>>> pages = new ArrayList<>();
+    for (int offset = PAGE_SIZE; offset < total; offset += PAGE_SIZE) {
+      String pageUrl = url + offset;
+      pages.add(CompletableFuture.supplyAsync(() -> fetchPage(pageUrl).tracks(), playlistPageExecutor));
+    }
 
-    return parseSpotifyResponse(response.getBody());
-  }
+    List<SpotifyTrack> allTracks = new ArrayList<>(total);
+    allTracks.addAll(firstPage.tracks());
+    for (CompletableFuture<List<SpotifyTrack>> page : pages) {
+      allTracks.addAll(page.join());
+    }
 
-  private List<Map<String, Object>> parseSpotifyResponse(Map<String, Object> response) {
-    List<Map<String, Object>> tracks = new ArrayList<>();
+    log.debug("Retrieved {} tracks from playlist {} in {} pages", allTracks.size(), playlistId, pages.size() + 1);
+    return allTracks;
+  }
 
-    Map<String, Object> tracksData = (Map<String, Object>) response.get("tracks");
-    List<Map<String, Object>> items = (List<Map<String, Object>>) tracksData.get("items");
+  private PlaylistPage fetchPage(String url) {
+    return metrics.time(PipelineMetrics.PLAYLIST_PAGE_FETCH, () -> get(url, SpotifyDecoders.PLAYLIST_PAGE));
+  }
 
-    for (Map<String, Object> item : items) {
-      Map<String, Object> track = new HashMap<>();
-      track.put("name", item.get("name"));
-      track.put("artist", getArtistName(item));
-      track.put("preview_url", item.get("preview_url"));
-      track.put("spotify_url", getSpotifyUrl(item));
-      tracks.add(track);
+  // All Spotify GETs share one Retry-After window, so a 429 on one page pauses the others
+  // instead of letting them pile more requests onto the limit.
+  private <T> T get(String url, JsonDecoder<T> decoder) {
+    for (int attempt = 1; ; attempt++) {
+      String token = tokenManager.getToken();
+
+      try {
+        spotifyBackoff.awaitClearance();
+        return restTemplate.execute(url, HttpMethod.GET,
+                request -> request.getHeaders().setBearerAuth(token),
+                response -> decoder.decode(response.getBody()));
+      } catch (HttpClientErrorException.Unauthorized e) {
+        if (attempt >= MAX_ATTEMPTS) {
+          throw e;
+        }
+        tokenManager.invalidate(token);
+      } catch (HttpClientErrorException.TooManyRequests e) {
+        if (attempt >= MAX_ATTEMPTS) {
+          throw e;
+        }
+        Duration retryAfter = RetryAfterBackoff.parseRetryAfter(
+                e.getResponseHeaders() != null ? e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER) : null,
+                Duration.ofSeconds(1));
+        log.info("Spotify rate limited, backing off {}s", retryAfter.toSeconds());
+        spotifyBackoff.onRateLimited(retryAfter);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for Spotify rate limit", e);
+      }
     }
+  }
 
-    return tracks;
+  private List<SpotifyTrack> searchTracks(String query) throws Exception {
+    String url = apiUrl + "/v1/search?q=" + query + "&type=track&limit=5";
+    return get(url, SpotifyDecoders.SEARCH_RESULTS);
   }
 
   private String extractSearchTerms(String aiAnalysis) {
@@ -312,42 +484,10 @@ public class SpotifyService {
     return "chill music";
   }
 
-  private String getArtistName(Map<String, Object> item) {
-    List<Map<String, Object>> artists = (List<Map<String, Object>>) item.get("artists");
-    return (String) artists.get(0).get("name");
-  }
-
-  private String getSpotifyUrl(Map<String, Object> item) {
-    Map<String, Object> external_urls = (Map<String, Object>) item.get("external_urls");
-    return (String) external_urls.get("spotify");
-  }
-
-
-  private List<Map<String, Object>> getMockSpotifyTracks() {
+  private List<SpotifyTrack> getMockSpotifyTracks() {
     return List.of(
-            Map.of("name", "Chill Vibes", "artist", "Mock Artist", "preview_url", "", "spotify_url", ""),
-            Map.of("name", "Peaceful Mind", "artist", "Relaxation Songs", "preview_url", "", "spotify_url", "")
+            new SpotifyTrack(null, "Chill Vibes", "Mock Artist", "", ""),
+            new SpotifyTrack(null, "Peaceful Mind", "Relaxation Songs", "", "")
     );
   }
-
-
-  private static class MoodProfile {
-    double energy, valence, danceability;
-
-    MoodProfile(double energy, double valence, double danceability) {
-      this.energy = energy;
-      this.valence = valence;
-      this.danceability = danceability;
-    }
-  }
-
-  private static class TrackWithScore {
-    Map<String, Object> track;
-    double score;
-
-    TrackWithScore(Map<String, Object> track, double score) {
-      this.track = track;
-      this.score = score;
-    }
-  }
 }
\ No newline at end of file
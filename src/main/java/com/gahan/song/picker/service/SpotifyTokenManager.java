@@ -0,0 +1,184 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.metrics.PipelineMetrics;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.http.*;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Client-credentials token for the Spotify Web API. Reads are a single
+ * volatile load; a refresh is scheduled ahead of expiry, and callers that
+ * find the token missing or expired all wait on the same in-flight request.
+ * At most one background refresh is pending at a time; a failed one is
+ * retried with exponential backoff.
+ */
+@Component
+public class SpotifyTokenManager {
+
+  private static final Logger log = LoggerFactory.getLogger(SpotifyTokenManager.class);
+
+  private static final Duration EXPIRY_SKEW = Duration.ofSeconds(30);
+  private static final Duration RETRY_BASE = Duration.ofSeconds(1);
+  private static final Duration RETRY_MAX = Duration.ofMinutes(1);
+
+  @Value("${spotify.client.id}")
+  private String clientId;
+
+  @Value("${spotify.client.secret}")
+  private String clientSecret;
+
+  @Value("${songpicker.spotify.accounts-url:https://accounts.spotify.com}")
+  private String accountsUrl;
+
+  @Value("${songpicker.spotify.token-refresh-margin:PT5M}")
+  private Duration refreshMargin;
+
+  @Autowired
+  private RestTemplate restTemplate;
+
+  @Autowired
+  private PipelineMetrics metrics;
+
+  private final AtomicReference<CompletableFuture<AccessToken>> inFlight = new AtomicReference<>();
+  private final ScheduledExecutorService scheduler;
+  private volatile AccessToken current;
+
+  // Guarded by this.
+  private ScheduledFuture<?> pendingRefresh;
+  private int failedRefreshes;
+
+  public SpotifyTokenManager() {
+    this(Executors.newSingleThreadScheduledExecutor(daemonThreads()));
+  }
+
+  SpotifyTokenManager(ScheduledExecutorService scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  @PreDestroy
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  public String getToken() {
+    AccessToken token = current;
+    if (token != null && token.usableAt(System.nanoTime())) {
+      return token.value();
+    }
+    return refresh().join().value();
+  }
+
+  // Called when Spotify rejects a token; only drops it if nobody has replaced it yet.
+  public void invalidate(String rejectedToken) {
+    AccessToken token = current;
+    if (token != null && token.value().equals(rejectedToken)) {
+      current = null;
+    }
+  }
+
+  private CompletableFuture<AccessToken> refresh() {
+    while (true) {
+      CompletableFuture<AccessToken> existing = inFlight.get();
+      if (existing != null) {
+        return existing;
+      }
+      CompletableFuture<AccessToken> mine = new CompletableFuture<>();
+      if (inFlight.compareAndSet(null, mine)) {
+        // inFlight is cleared before the next refresh is scheduled, so that refresh fetches a
+        // new token rather than joining this completed one.
+        try {
+          AccessToken token = metrics.time(PipelineMetrics.TOKEN_FETCH, this::fetchToken);
+          current = token;
+          inFlight.set(null);
+          scheduleRefresh(token);
+          mine.complete(token);
+        } catch (Exception e) {
+          inFlight.set(null);
+          mine.completeExceptionally(e);
+        }
+        return mine;
+      }
+    }
+  }
+
+  private void scheduleRefresh(AccessToken token) {
+    long lifetimeNanos = token.expiresAtNanos() - System.nanoTime();
+    long delayNanos = Math.max(lifetimeNanos - refreshMargin.toNanos(), lifetimeNanos / 2);
+    synchronized (this) {
+      failedRefreshes = 0;
+      schedule(delayNanos);
+    }
+  }
+
+  // Replaces whatever refresh was pending, so on-demand refreshes after invalidate() do not
+  // start a second background chain.
+  private synchronized void schedule(long delayNanos) {
+    if (pendingRefresh != null) {
+      pendingRefresh.cancel(false);
+    }
+    pendingRefresh = scheduler.schedule(this::backgroundRefresh, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void backgroundRefresh() {
+    try {
+      refresh().join();
+    } catch (Exception e) {
+      // Leave the current token in place; callers also refresh on demand once it expires.
+      synchronized (this) {
+        long delayNanos = Math.min(RETRY_BASE.toNanos() << Math.min(failedRefreshes++, 16), RETRY_MAX.toNanos());
+        log.warn("Background Spotify token refresh failed, retrying in {} ms: {}",
+                TimeUnit.NANOSECONDS.toMillis(delayNanos), e.getMessage());
+        schedule(delayNanos);
+      }
+    }
+  }
+
+  private static CustomizableThreadFactory daemonThreads() {
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("spotify-token-");
+    threadFactory.setDaemon(true);
+    return threadFactory;
+  }
+
+  private AccessToken fetchToken() {
+    String url = accountsUrl + "/api/token";
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+    String auth = Base64.getEncoder().encodeToString((clientId + ":" + clientSecret).getBytes());
+    headers.set("Authorization", "Basic " + auth);
+
+    String body = "grant_type=client_credentials";
+    HttpEntity<String> entity = new HttpEntity<>(body, headers);
+
+    ResponseEntity<Map> response = restTemplate.postForEntity(url, entity, Map.class);
+    String accessToken = (String) response.getBody().get("access_token");
+    Number expiresIn = (Number) response.getBody().get("expires_in");
+    long lifetimeNanos = TimeUnit.SECONDS.toNanos(expiresIn != null ? expiresIn.longValue() : 3600);
+
+    return new AccessToken(accessToken, System.nanoTime() + lifetimeNanos);
+  }
+
+  private record AccessToken(String value, long expiresAtNanos) {
+
+    boolean usableAt(long nowNanos) {
+      return expiresAtNanos - EXPIRY_SKEW.toNanos() - nowNanos > 0;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package com.gahan.song.picker.store;
+
+import com.gahan.song.picker.json.AcousticBrainzDecoders;
+import com.gahan.song.picker.model.LowLevelSummary;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Builds a {@link LocalFeatureStore} file from the AcousticBrainz low-level
+ * JSON dump:
+ *
+ * <pre>
+ * zstd -dc acousticbrainz-lowlevel-json-20220623-0.tar.zst | \
+ *   java -cp song-picker.jar -Dloader.main=com.gahan.song.picker.store.FeatureDumpIngester \
+ *   org.springframework.boot.loader.launch.PropertiesLauncher features.bin -
+ * </pre>
+ *
+ * Inputs are tar streams ({@code -} for stdin), tar files or directories of
+ * extracted documents; the dump ships in several parts, so several inputs
+ * may be given. Documents are named {@code <mbid>-<submission>.json} and only
+ * the values the feature mapping reads are kept; when a recording has several
+ * submissions the lowest-numbered one wins. Records are sorted in bounded
+ * chunks that are spilled to disk and merged, so memory use does not depend on
+ * the size of the dump.
+ */
+public class FeatureDumpIngester {
+
+  private static final Logger log = LoggerFactory.getLogger(FeatureDumpIngester.class);
+
+  private static final int RUN_RECORD_BYTES = FeatureRecord.BYTES + 4;
+  private static final Comparator<Pending> ORDER = (a, b) -> {
+    int cmp = FeatureRecord.compareMbid(a.record().mbidHigh(), a.record().mbidLow(),
+            b.record().mbidHigh(), b.record().mbidLow());
+    return cmp != 0 ? cmp : Integer.compare(a.submission(), b.submission());
+  };
+
+  private final int chunkSize;
+  private final Path workDir;
+  private final List<Pending> chunk = new ArrayList<>();
+  private final List<Path> runs = new ArrayList<>();
+  private long documents;
+  private long skipped;
+
+  public FeatureDumpIngester(int chunkSize, Path workDir) {
+    this.chunkSize = chunkSize;
+    this.workDir = workDir;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: FeatureDumpIngester <output.bin> [<dump.tar> | <directory> | -]...");
+      System.exit(2);
+    }
+    Path workDir = Files.createTempDirectory("feature-ingest");
+    FeatureDumpIngester ingester = new FeatureDumpIngester(4_000_000, workDir);
+    List<String> inputs = args.length > 1 ? List.of(args).subList(1, args.length) : List.of("-");
+    for (String input : inputs) {
+      if (input.equals("-")) {
+        ingester.addTar(System.in);
+      } else if (Files.isDirectory(Path.of(input))) {
+        ingester.addDirectory(Path.of(input));
+      } else {
+        try (InputStream in = Files.newInputStream(Path.of(input))) {
+          ingester.addTar(in);
+        }
+      }
+    }
+    long written = ingester.write(Path.of(args[0]));
+    Files.deleteIfExists(workDir);
+    log.info("Wrote {} recordings to {}", written, args[0]);
+  }
+
+  public void addTar(InputStream in) throws IOException {
+    TarReader tar = new TarReader(new BufferedInputStream(in, 1 << 16));
+    for (TarReader.Entry entry = tar.next(); entry != null; entry = tar.next()) {
+      add(entry.name(), entry.content());
+    }
+  }
+
+  public void addDirectory(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+          add(file.getFileName().toString(), in);
+        }
+      }
+    }
+  }
+
+  // Returns the number of distinct recordings written.
+  public long write(Path output) throws IOException {
+    spill();
+    long count = merge(output);
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    runs.clear();
+    log.info("Ingested {} documents, skipped {}", documents, skipped);
+    return count;
+  }
+
+  private void add(String path, InputStream content) throws IOException {
+    String fileName = path.substring(path.lastIndexOf('/') + 1);
+    if (!fileName.endsWith(".json")) {
+      return;
+    }
+    String stem = fileName.substring(0, fileName.length() - ".json".length());
+    int dash = stem.lastIndexOf('-');
+
+    try {
+      UUID mbid = UUID.fromString(stem.substring(0, Math.max(dash, 0)));
+      int submission = Integer.parseInt(stem.substring(dash + 1));
+      LowLevelSummary summary = AcousticBrainzDecoders.LOW_LEVEL.decode(content);
+      chunk.add(new Pending(FeatureRecord.of(mbid, summary), submission));
+      documents++;
+    } catch (IllegalArgumentException | IOException e) {
+      skipped++;
+      log.debug("Skipping {}: {}", path, e.getMessage());
+      return;
+    }
+
+    if (chunk.size() >= chunkSize) {
+      spill();
+    }
+  }
+
+  private void spill() throws IOException {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    chunk.sort(ORDER);
+    Path run = Files.createTempFile(workDir, "run", ".bin");
+    ByteBuffer buffer = ByteBuffer.allocate(RUN_RECORD_BYTES);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+      for (Pending pending : chunk) {
+        buffer.clear();
+        pending.record().write(buffer);
+        buffer.putInt(pending.submission());
+        out.write(buffer.array());
+      }
+    }
+    runs.add(run);
+    chunk.clear();
+  }
+
+  private long merge(Path output) throws IOException {
+    PriorityQueue<RunCursor> queue = new PriorityQueue<>((a, b) -> ORDER.compare(a.current, b.current));
+    List<RunCursor> cursors = new ArrayList<>();
+    try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Path run : runs) {
+        RunCursor cursor = new RunCursor(run);
+        cursors.add(cursor);
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+
+      ByteBuffer out = ByteBuffer.allocate(FeatureRecord.BYTES * 4096);
+      channel.position(LocalFeatureStore.HEADER_BYTES);
+      long count = 0;
+      FeatureRecord last = null;
+      while (!queue.isEmpty()) {
+        RunCursor cursor = queue.poll();
+        FeatureRecord record = cursor.current.record();
+        if (last == null || FeatureRecord.compareMbid(last.mbidHigh(), last.mbidLow(),
+                record.mbidHigh(), record.mbidLow()) != 0) {
+          if (!out.hasRemaining()) {
+            flush(channel, out);
+          }
+          record.write(out);
+          last = record;
+          count++;
+        }
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+      flush(channel, out);
+
+      ByteBuffer header = ByteBuffer.allocate(LocalFeatureStore.HEADER_BYTES)
+              .putInt(LocalFeatureStore.MAGIC)
+              .putInt(LocalFeatureStore.VERSION)
+              .putLong(count)
+              .flip();
+      channel.write(header, 0);
+      return count;
+    } finally {
+      for (RunCursor cursor : cursors) {
+        cursor.close();
+      }
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private record Pending(FeatureRecord record, int submission) {
+  }
+
+  private static final class RunCursor implements AutoCloseable {
+
+    private final DataInputStream in;
+    private final byte[] bytes = new byte[RUN_RECORD_BYTES];
+    private final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    Pending current;
+
+    RunCursor(Path run) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+    }
+
+    boolean advance() throws IOException {
+      try {
+        in.readFully(bytes);
+      } catch (EOFException e) {
+        return false;
+      }
+      current = new Pending(FeatureRecord.read(buffer, 0), buffer.getInt(FeatureRecord.BYTES));
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.gahan.song.picker.store;
+
+import com.gahan.song.picker.model.LowLevelSummary;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One recording in the local feature file: the MBID and the handful of
+ * low-level values the feature mapping reads, packed into {@value #BYTES}
+ * bytes.
+ *
+ * <pre>
+ *  0  long   MBID most significant bits
+ *  8  long   MBID least significant bits
+ * 16  float  bpm, NaN when absent
+ * 20  byte   flags: 1 = has rhythm section, 2 = has tonal section
+ * 21  byte   key_key as an index into KEYS, NO_KEY when absent, OTHER_KEY when unrecognised
+ * 22  byte   key_scale: 0 absent, 1 major, 2 minor, 3 other
+ * 23  byte   reserved
+ * </pre>
+ */
+public record FeatureRecord(long mbidHigh, long mbidLow, float bpm, byte flags, byte key, byte scale) {
+
+  public static final int BYTES = 24;
+
+  private static final byte HAS_RHYTHM = 1;
+  private static final byte HAS_TONAL = 2;
+  private static final byte NO_KEY = (byte) 0xFF;
+  private static final byte OTHER_KEY = (byte) 0xFE;
+  private static final List<String> KEYS = List.of(
+          "C", "C#", "Db", "D", "D#", "Eb", "E", "F", "F#", "Gb", "G", "G#", "Ab", "A", "A#", "Bb", "B");
+  private static final List<String> SCALES = List.of("major", "minor");
+
+  public static FeatureRecord of(UUID mbid, LowLevelSummary summary) {
+    byte flags = (byte) ((summary.hasRhythm() ? HAS_RHYTHM : 0) | (summary.hasTonal() ? HAS_TONAL : 0));
+    float bpm = summary.bpm() != null ? summary.bpm().floatValue() : Float.NaN;
+    byte key = summary.key() == null ? NO_KEY
+            : KEYS.contains(summary.key()) ? (byte) KEYS.indexOf(summary.key()) : OTHER_KEY;
+    byte scale = summary.scale() == null ? 0
+            : SCALES.contains(summary.scale()) ? (byte) (SCALES.indexOf(summary.scale()) + 1) : 3;
+    return new FeatureRecord(mbid.getMostSignificantBits(), mbid.getLeastSignificantBits(), bpm, flags, key, scale);
+  }
+
+  public static FeatureRecord read(ByteBuffer buffer, int offset) {
+    return new FeatureRecord(
+            buffer.getLong(offset),
+            buffer.getLong(offset + 8),
+            buffer.getFloat(offset + 16),
+            buffer.get(offset + 20),
+            buffer.get(offset + 21),
+            buffer.get(offset + 22));
+  }
+
+  public void write(ByteBuffer buffer) {
+    buffer.putLong(mbidHigh).putLong(mbidLow).putFloat(bpm).put(flags).put(key).put(scale).put((byte) 0);
+  }
+
+  public UUID mbid() {
+    return new UUID(mbidHigh, mbidLow);
+  }
+
+  // Unrecognised keys come back as an empty string: like any real key name they do not
+  // contain "major", which is all the feature mapping looks at.
+  public LowLevelSummary toSummary() {
+    String keyName = key == NO_KEY ? null : key == OTHER_KEY ? "" : KEYS.get(key);
+    String scaleName = scale == 0 ? null : scale == 3 ? "" : SCALES.get(scale - 1);
+    return new LowLevelSummary((flags & HAS_RHYTHM) != 0, Float.isNaN(bpm) ? null : (double) bpm,
+            (flags & HAS_TONAL) != 0, keyName, scaleName);
+  }
+
+  // Unsigned order, the same order Long.compareUnsigned gives for the on-disk fields.
+  public static int compareMbid(long highA, long lowA, long highB, long lowB) {
+    int high = Long.compareUnsigned(highA, highB);
+    return high != 0 ? high : Long.compareUnsigned(lowA, lowB);
+  }
+}
@@ -0,0 +1,83 @@
+package com.gahan.song.picker.store;
+
+import com.gahan.song.picker.model.AudioFeatures;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Read-only view of a feature file written by {@link FeatureDumpIngester}.
+ * The file is memory-mapped and its records are sorted by MBID, so a lookup
+ * is a binary search over the mapping with no parsing and no allocation
+ * beyond the result. A single mapping limits the file to 2 GB, about 89
+ * million recordings; the full AcousticBrainz dump has fewer than 8 million.
+ */
+public class LocalFeatureStore {
+
+  static final int MAGIC = 0x41424653; // "ABFS"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+
+  private final ByteBuffer records;
+  private final int count;
+
+  private LocalFeatureStore(ByteBuffer records, int count) {
+    this.records = records;
+    this.count = count;
+  }
+
+  public static LocalFeatureStore open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (mapped.limit() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+        throw new IOException(file + " is not a feature file");
+      }
+      long count = mapped.getLong(8);
+      if (HEADER_BYTES + count * FeatureRecord.BYTES != mapped.limit()) {
+        throw new IOException(file + " is truncated");
+      }
+      return new LocalFeatureStore(mapped.slice(HEADER_BYTES, mapped.limit() - HEADER_BYTES), (int) count);
+    }
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public FeatureRecord find(UUID mbid) {
+    long high = mbid.getMostSignificantBits();
+    long low = mbid.getLeastSignificantBits();
+    int lo = 0;
+    int hi = count - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int offset = mid * FeatureRecord.BYTES;
+      int cmp = FeatureRecord.compareMbid(records.getLong(offset), records.getLong(offset + 8), high, low);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return FeatureRecord.read(records, offset);
+      }
+    }
+    return null;
+  }
+
+  // Null when the recording is not in the dump or has nothing usable.
+  public AudioFeatures features(String mbid) {
+    UUID id;
+    try {
+      id = UUID.fromString(mbid);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    FeatureRecord record = find(id);
+    return record != null ? record.toSummary().toAudioFeatures() : null;
+  }
+}
@@ -0,0 +1,106 @@
+package com.gahan.song.picker.store;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Name normalization and trigram similarity shared by the recording index,
+ * its builder and the MusicBrainz search matching, so every side of a lookup
+ * agrees on what a name is.
+ */
+public final class Names {
+
+  private static final Pattern BRACKETED = Pattern.compile("\\s*[(\\[][^)\\]]*[)\\]]");
+  private static final Pattern FEATURING = Pattern.compile("(?i)\\s+(feat\\.?|ft\\.|featuring)\\s.*$");
+
+  private Names() {
+  }
+
+  public static String title(String title) {
+    return normalize(baseTitle(title));
+  }
+
+  public static String artist(String artist) {
+    return normalize(baseArtist(artist));
+  }
+
+  // Spotify appends version details ("Song - Remastered 2011", "Song (feat. X)") that
+  // MusicBrainz keeps out of the recording title.
+  public static String baseTitle(String title) {
+    String stripped = BRACKETED.matcher(title).replaceAll("");
+    int dash = stripped.indexOf(" - ");
+    if (dash > 0) {
+      stripped = stripped.substring(0, dash);
+    }
+    return normalize(stripped).isEmpty() ? title : stripped;
+  }
+
+  public static String baseArtist(String artist) {
+    return FEATURING.matcher(artist).replaceAll("");
+  }
+
+  // Lower case, accents and punctuation removed, "&" spelled out, single spaces and no
+  // leading article.
+  static String normalize(String name) {
+    String decomposed = Normalizer.normalize(name.replace("&", " and "), Normalizer.Form.NFKD);
+    StringBuilder out = new StringBuilder(decomposed.length());
+    boolean pendingSpace = false;
+    for (int i = 0; i < decomposed.length(); ) {
+      int cp = decomposed.codePointAt(i);
+      i += Character.charCount(cp);
+      if (Character.getType(cp) == Character.NON_SPACING_MARK) {
+        continue;
+      }
+      if (Character.isLetterOrDigit(cp)) {
+        if (pendingSpace && out.length() > 0) {
+          out.append(' ');
+        }
+        pendingSpace = false;
+        out.appendCodePoint(Character.toLowerCase(cp));
+      } else if (cp != '\'' && cp != '’') {
+        pendingSpace = true;
+      }
+    }
+    String normalized = out.toString().toLowerCase(Locale.ROOT);
+    return normalized.startsWith("the ") ? normalized.substring(4) : normalized;
+  }
+
+  // Distinct, sorted trigram codes of a normalized name padded as " name ".
+  static int[] trigrams(String normalized) {
+    String padded = "  " + normalized + " ";
+    int[] codes = new int[padded.length() - 2];
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = (padded.charAt(i) * 31 + padded.charAt(i + 1)) * 31 + padded.charAt(i + 2);
+    }
+    Arrays.sort(codes);
+    int distinct = 0;
+    for (int i = 0; i < codes.length; i++) {
+      if (i == 0 || codes[i] != codes[i - 1]) {
+        codes[distinct++] = codes[i];
+      }
+    }
+    return Arrays.copyOf(codes, distinct);
+  }
+
+  // Dice coefficient of two sorted trigram sets.
+  static double similarity(int[] a, int[] b) {
+    if (a.length + b.length == 0) {
+      return 0;
+    }
+    int shared = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+      if (a[i] == b[j]) {
+        shared++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return 2.0 * shared / (a.length + b.length);
+  }
+}
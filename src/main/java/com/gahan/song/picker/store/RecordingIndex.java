@@ -0,0 +1,271 @@
+package com.gahan.song.picker.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Read-only recording to MBID index written by {@link RecordingIndexBuilder}.
+ * Recordings are grouped by normalized artist name and sorted by normalized
+ * title, so an exact match is two binary searches. Artists that do not match
+ * exactly are found through a trigram index over artist names, and titles
+ * that do not match exactly are scored against every recording of the
+ * candidate artists.
+ *
+ * <pre>
+ * header     magic, version, counts and pool sizes ({@value #HEADER_BYTES} bytes)
+ * recordings MBID (16 bytes) and title offset (4), sorted by artist then title
+ * titles     UTF-8 normalized titles, in recording order
+ * artists    name offset, first recording, recording count (4 bytes each), sorted by name
+ * names      UTF-8 normalized artist names, in artist order
+ * trigrams   trigram code and first posting (4 bytes each), sorted by code
+ * postings   artist ordinals (4 bytes), grouped by trigram
+ * </pre>
+ *
+ * Each section is mapped separately, so only a single section is limited
+ * to 2 GB.
+ */
+public class RecordingIndex {
+
+  static final int MAGIC = 0x4D425249; // "MBRI"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 48;
+  static final int RECORDING_BYTES = 20;
+  static final int ARTIST_BYTES = 12;
+  static final int TRIGRAM_BYTES = 8;
+
+  private static final double ARTIST_WEIGHT = 0.4;
+  private static final double TITLE_WEIGHT = 0.6;
+  private static final double MIN_ARTIST_SIMILARITY = 0.5;
+  private static final int MAX_CANDIDATE_ARTISTS = 5;
+  // Trigrams shared by this many artists (" th", "and") say little and cost a lot.
+  private static final int MAX_POSTINGS = 50_000;
+
+  private final ByteBuffer recordings;
+  private final ByteBuffer titles;
+  private final ByteBuffer artists;
+  private final ByteBuffer names;
+  private final ByteBuffer trigrams;
+  private final ByteBuffer postings;
+  private final int recordingCount;
+  private final int artistCount;
+  private final int trigramCount;
+
+  private RecordingIndex(ByteBuffer[] sections, int recordingCount, int artistCount, int trigramCount) {
+    this.recordings = sections[0];
+    this.titles = sections[1];
+    this.artists = sections[2];
+    this.names = sections[3];
+    this.trigrams = sections[4];
+    this.postings = sections[5];
+    this.recordingCount = recordingCount;
+    this.artistCount = artistCount;
+    this.trigramCount = trigramCount;
+  }
+
+  public static RecordingIndex open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES, channel.size()));
+      if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException(file + " is not a recording index");
+      }
+      int recordingCount = header.getInt(8);
+      int artistCount = header.getInt(12);
+      int trigramCount = header.getInt(16);
+      int postingCount = header.getInt(20);
+      long[] lengths = {
+              (long) recordingCount * RECORDING_BYTES, header.getLong(24),
+              (long) artistCount * ARTIST_BYTES, header.getLong(32),
+              (long) trigramCount * TRIGRAM_BYTES, (long) postingCount * 4};
+      if (HEADER_BYTES + Arrays.stream(lengths).sum() != channel.size()) {
+        throw new IOException(file + " is truncated");
+      }
+      ByteBuffer[] sections = new ByteBuffer[lengths.length];
+      long position = HEADER_BYTES;
+      for (int i = 0; i < lengths.length; i++) {
+        sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, lengths[i]);
+        position += lengths[i];
+      }
+      return new RecordingIndex(sections, recordingCount, artistCount, trigramCount);
+    }
+  }
+
+  public int size() {
+    return recordingCount;
+  }
+
+  // Null when no artist is close enough or the artist has no recordings to score.
+  public RecordingMatch resolve(String title, String artist) {
+    String normalizedTitle = Names.title(title);
+    String normalizedArtist = Names.artist(artist);
+    if (normalizedTitle.isEmpty() || normalizedArtist.isEmpty()) {
+      return null;
+    }
+
+    byte[] titleKey = normalizedTitle.getBytes(StandardCharsets.UTF_8);
+    int[] titleTrigrams = null;
+    RecordingMatch best = null;
+    for (Candidate candidate : candidateArtists(normalizedArtist)) {
+      int first = artists.getInt(candidate.artist() * ARTIST_BYTES + 4);
+      int count = artists.getInt(candidate.artist() * ARTIST_BYTES + 8);
+
+      int recording = findTitle(first, first + count - 1, titleKey);
+      double titleSimilarity = 1.0;
+      if (recording < 0) {
+        titleTrigrams = titleTrigrams != null ? titleTrigrams : Names.trigrams(normalizedTitle);
+        titleSimilarity = 0;
+        for (int i = first; i < first + count; i++) {
+          double similarity = Names.similarity(titleTrigrams, Names.trigrams(title(i)));
+          if (similarity > titleSimilarity) {
+            titleSimilarity = similarity;
+            recording = i;
+          }
+        }
+      }
+      if (recording < 0) {
+        continue;
+      }
+      double confidence = ARTIST_WEIGHT * candidate.similarity() + TITLE_WEIGHT * titleSimilarity;
+      if (best == null || confidence > best.confidence()) {
+        best = new RecordingMatch(mbid(recording), confidence);
+      }
+    }
+    return best;
+  }
+
+  private List<Candidate> candidateArtists(String normalizedArtist) {
+    byte[] key = normalizedArtist.getBytes(StandardCharsets.UTF_8);
+    int lo = 0;
+    int hi = artistCount - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compare(names, artistOffset(mid), artistEnd(mid), key);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return List.of(new Candidate(mid, 1.0));
+      }
+    }
+
+    int[] query = Names.trigrams(normalizedArtist);
+    Map<Integer, Integer> hits = new HashMap<>();
+    for (int trigram : query) {
+      int slot = findTrigram(trigram);
+      if (slot < 0) {
+        continue;
+      }
+      int start = trigrams.getInt(slot * TRIGRAM_BYTES + 4);
+      int end = slot + 1 < trigramCount ? trigrams.getInt((slot + 1) * TRIGRAM_BYTES + 4) : postings.limit() / 4;
+      if (end - start > MAX_POSTINGS) {
+        continue;
+      }
+      for (int i = start; i < end; i++) {
+        hits.merge(postings.getInt(i * 4), 1, Integer::sum);
+      }
+    }
+
+    // A Dice score of at least MIN_ARTIST_SIMILARITY needs at least this many shared trigrams.
+    int minShared = (int) Math.ceil(MIN_ARTIST_SIMILARITY * query.length / 2);
+    List<Candidate> candidates = new ArrayList<>();
+    hits.forEach((artist, shared) -> {
+      if (shared >= minShared) {
+        double similarity = Names.similarity(query, Names.trigrams(string(names, artistOffset(artist), artistEnd(artist))));
+        if (similarity >= MIN_ARTIST_SIMILARITY) {
+          candidates.add(new Candidate(artist, similarity));
+        }
+      }
+    });
+    candidates.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+    return candidates.subList(0, Math.min(MAX_CANDIDATE_ARTISTS, candidates.size()));
+  }
+
+  private int findTitle(int lo, int hi, byte[] key) {
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int cmp = compare(titles, titleOffset(mid), titleEnd(mid), key);
+      if (cmp < 0) {
+        lo = mid + 1;
+      } else if (cmp > 0) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private int findTrigram(int trigram) {
+    int lo = 0;
+    int hi = trigramCount - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int code = trigrams.getInt(mid * TRIGRAM_BYTES);
+      if (code < trigram) {
+        lo = mid + 1;
+      } else if (code > trigram) {
+        hi = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private String mbid(int recording) {
+    int offset = recording * RECORDING_BYTES;
+    return new UUID(recordings.getLong(offset), recordings.getLong(offset + 8)).toString();
+  }
+
+  private String title(int recording) {
+    return string(titles, titleOffset(recording), titleEnd(recording));
+  }
+
+  private int titleOffset(int recording) {
+    return recordings.getInt(recording * RECORDING_BYTES + 16);
+  }
+
+  private int titleEnd(int recording) {
+    return recording + 1 < recordingCount ? titleOffset(recording + 1) : titles.limit();
+  }
+
+  private int artistOffset(int artist) {
+    return artists.getInt(artist * ARTIST_BYTES);
+  }
+
+  private int artistEnd(int artist) {
+    return artist + 1 < artistCount ? artistOffset(artist + 1) : names.limit();
+  }
+
+  private static String string(ByteBuffer pool, int start, int end) {
+    byte[] bytes = new byte[end - start];
+    pool.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // Unsigned byte order, the order the builder sorts in.
+  private static int compare(ByteBuffer pool, int start, int end, byte[] key) {
+    int length = Math.min(end - start, key.length);
+    for (int i = 0; i < length; i++) {
+      int cmp = Byte.toUnsignedInt(pool.get(start + i)) - Byte.toUnsignedInt(key[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return (end - start) - key.length;
+  }
+
+  private record Candidate(int artist, double similarity) {
+  }
+}
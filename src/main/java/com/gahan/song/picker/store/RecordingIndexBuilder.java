@@ -0,0 +1,363 @@
+package com.gahan.song.picker.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Builds a {@link RecordingIndex} file from a MusicBrainz database export or
+ * from a TSV of {@code mbid<TAB>title<TAB>artist} lines:
+ *
+ * <pre>
+ * tar -xjf mbdump.tar.bz2 mbdump/recording mbdump/artist_credit
+ * java -cp song-picker.jar -Dloader.main=com.gahan.song.picker.store.RecordingIndexBuilder \
+ *   org.springframework.boot.loader.launch.PropertiesLauncher recordings.bin mbdump
+ * </pre>
+ *
+ * From an export, each recording is indexed under its artist credit name.
+ * When several recordings share a normalized title and artist, the one read
+ * first (the lowest recording id in an export) is kept. Entries are sorted in
+ * bounded chunks that are spilled to disk and merged; only the artist credit
+ * names and the distinct artist names are held in memory.
+ */
+public class RecordingIndexBuilder {
+
+  private static final Logger log = LoggerFactory.getLogger(RecordingIndexBuilder.class);
+
+  private static final Comparator<Entry> ORDER = (a, b) -> {
+    int cmp = Arrays.compareUnsigned(a.artist(), b.artist());
+    if (cmp == 0) {
+      cmp = Arrays.compareUnsigned(a.title(), b.title());
+    }
+    return cmp != 0 ? cmp : Long.compare(a.sequence(), b.sequence());
+  };
+
+  private final int chunkSize;
+  private final Path workDir;
+  private final List<Entry> chunk = new ArrayList<>();
+  private final List<Path> runs = new ArrayList<>();
+  private long sequence;
+  private long skipped;
+
+  public RecordingIndexBuilder(int chunkSize, Path workDir) {
+    this.chunkSize = chunkSize;
+    this.workDir = workDir;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: RecordingIndexBuilder <output.bin> (<mbdump directory> | <recordings.tsv>)...");
+      System.exit(2);
+    }
+    Path workDir = Files.createTempDirectory("recording-index");
+    RecordingIndexBuilder builder = new RecordingIndexBuilder(2_000_000, workDir);
+    for (String input : List.of(args).subList(1, args.length)) {
+      if (Files.isDirectory(Path.of(input))) {
+        builder.addExport(Path.of(input));
+      } else {
+        builder.addTsv(Path.of(input));
+      }
+    }
+    long written = builder.write(Path.of(args[0]));
+    Files.deleteIfExists(workDir);
+    log.info("Wrote {} recordings to {}", written, args[0]);
+  }
+
+  public void add(String mbid, String title, String artist) throws IOException {
+    String normalizedTitle = title != null ? Names.title(title) : "";
+    String normalizedArtist = artist != null ? Names.artist(artist) : "";
+    UUID id;
+    try {
+      id = UUID.fromString(mbid);
+    } catch (IllegalArgumentException e) {
+      id = null;
+    }
+    if (id == null || normalizedTitle.isEmpty() || normalizedArtist.isEmpty()) {
+      skipped++;
+      return;
+    }
+    chunk.add(new Entry(normalizedArtist.getBytes(StandardCharsets.UTF_8),
+            normalizedTitle.getBytes(StandardCharsets.UTF_8),
+            id.getMostSignificantBits(), id.getLeastSignificantBits(), sequence++));
+    if (chunk.size() >= chunkSize) {
+      spill();
+    }
+  }
+
+  public void addTsv(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file)) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length >= 3) {
+          add(fields[0], fields[1], fields[2]);
+        } else if (!line.isBlank()) {
+          skipped++;
+        }
+      }
+    }
+  }
+
+  // Reads the recording and artist_credit tables of a MusicBrainz export, given either the
+  // mbdump directory or the directory that contains it.
+  public void addExport(Path directory) throws IOException {
+    Path mbdump = Files.isDirectory(directory.resolve("mbdump")) ? directory.resolve("mbdump") : directory;
+
+    Map<String, String> credits = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(mbdump.resolve("artist_credit"))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = line.split("\t", -1);
+        credits.put(fields[0], unescape(fields[1]));
+      }
+    }
+
+    // recording: id, gid, name, artist_credit, length, comment, ...
+    try (BufferedReader reader = Files.newBufferedReader(mbdump.resolve("recording"))) {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < 4) {
+          skipped++;
+          continue;
+        }
+        add(fields[1], unescape(fields[2]), credits.get(fields[3]));
+      }
+    }
+  }
+
+  // Returns the number of distinct recordings written.
+  public long write(Path output) throws IOException {
+    spill();
+    Path recordings = Files.createTempFile(workDir, "recordings", ".bin");
+    Path titles = Files.createTempFile(workDir, "titles", ".bin");
+    Path artists = Files.createTempFile(workDir, "artists", ".bin");
+    Path names = Files.createTempFile(workDir, "names", ".bin");
+    Path trigrams = Files.createTempFile(workDir, "trigrams", ".bin");
+    Path postings = Files.createTempFile(workDir, "postings", ".bin");
+    try {
+      Counts counts = merge(recordings, titles, artists, names, trigrams, postings);
+
+      ByteBuffer header = ByteBuffer.allocate(RecordingIndex.HEADER_BYTES)
+              .putInt(RecordingIndex.MAGIC)
+              .putInt(RecordingIndex.VERSION)
+              .putInt(counts.recordings())
+              .putInt(counts.artists())
+              .putInt(counts.trigrams())
+              .putInt(counts.postings())
+              .putLong(Files.size(titles))
+              .putLong(Files.size(names))
+              .putLong(0)
+              .flip();
+      try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        while (header.hasRemaining()) {
+          out.write(header);
+        }
+        for (Path section : List.of(recordings, titles, artists, names, trigrams, postings)) {
+          try (FileChannel in = FileChannel.open(section, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < in.size()) {
+              position += in.transferTo(position, in.size() - position, out);
+            }
+          }
+        }
+      }
+      log.info("Indexed {} recordings by {} artists, skipped {}", counts.recordings(), counts.artists(), skipped);
+      return counts.recordings();
+    } finally {
+      for (Path file : List.of(recordings, titles, artists, names, trigrams, postings)) {
+        Files.deleteIfExists(file);
+      }
+      for (Path run : runs) {
+        Files.deleteIfExists(run);
+      }
+      runs.clear();
+    }
+  }
+
+  private void spill() throws IOException {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    chunk.sort(ORDER);
+    Path run = Files.createTempFile(workDir, "run", ".bin");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16))) {
+      for (Entry entry : chunk) {
+        out.writeInt(entry.artist().length);
+        out.write(entry.artist());
+        out.writeInt(entry.title().length);
+        out.write(entry.title());
+        out.writeLong(entry.mbidHigh());
+        out.writeLong(entry.mbidLow());
+        out.writeLong(entry.sequence());
+      }
+    }
+    runs.add(run);
+    chunk.clear();
+  }
+
+  private Counts merge(Path recordingFile, Path titleFile, Path artistFile, Path nameFile,
+                       Path trigramFile, Path postingFile) throws IOException {
+    PriorityQueue<RunCursor> queue = new PriorityQueue<>((a, b) -> ORDER.compare(a.current, b.current));
+    List<RunCursor> cursors = new ArrayList<>();
+    // (trigram << 32 | artist ordinal), sorted afterwards into the trigram index.
+    long[] pairs = new long[1024];
+    int pairCount = 0;
+    int recordingCount = 0;
+    int artistCount = 0;
+    try (DataOutputStream recordings = output(recordingFile);
+         DataOutputStream titles = output(titleFile);
+         DataOutputStream artists = output(artistFile);
+         DataOutputStream names = output(nameFile)) {
+      for (Path run : runs) {
+        RunCursor cursor = new RunCursor(run);
+        cursors.add(cursor);
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+
+      Entry last = null;
+      int artistStart = 0;
+      while (!queue.isEmpty()) {
+        RunCursor cursor = queue.poll();
+        Entry entry = cursor.current;
+        boolean newArtist = last == null || !Arrays.equals(last.artist(), entry.artist());
+        if (newArtist || !Arrays.equals(last.title(), entry.title())) {
+          if (newArtist) {
+            if (last != null) {
+              artists.writeInt(recordingCount - artistStart);
+            }
+            artists.writeInt(names.size());
+            artists.writeInt(recordingCount);
+            names.write(entry.artist());
+            for (int trigram : Names.trigrams(new String(entry.artist(), StandardCharsets.UTF_8))) {
+              if (pairCount == pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+              }
+              pairs[pairCount++] = (long) trigram << 32 | artistCount;
+            }
+            artistStart = recordingCount;
+            artistCount++;
+          }
+          recordings.writeLong(entry.mbidHigh());
+          recordings.writeLong(entry.mbidLow());
+          recordings.writeInt(titles.size());
+          titles.write(entry.title());
+          recordingCount++;
+          last = entry;
+        }
+        if (cursor.advance()) {
+          queue.add(cursor);
+        }
+      }
+      if (last != null) {
+        artists.writeInt(recordingCount - artistStart);
+      }
+    } finally {
+      for (RunCursor cursor : cursors) {
+        cursor.close();
+      }
+    }
+
+    Arrays.sort(pairs, 0, pairCount);
+    int trigramCount = 0;
+    try (DataOutputStream trigrams = output(trigramFile);
+         DataOutputStream postings = output(postingFile)) {
+      for (int i = 0; i < pairCount; i++) {
+        int trigram = (int) (pairs[i] >> 32);
+        if (i == 0 || trigram != (int) (pairs[i - 1] >> 32)) {
+          trigrams.writeInt(trigram);
+          trigrams.writeInt(i);
+          trigramCount++;
+        }
+        postings.writeInt((int) pairs[i]);
+      }
+    }
+    return new Counts(recordingCount, artistCount, trigramCount, pairCount);
+  }
+
+  private static DataOutputStream output(Path file) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+  }
+
+  // PostgreSQL COPY text format: backslash escapes, \N for null.
+  static String unescape(String field) {
+    if (field.equals("\\N")) {
+      return null;
+    }
+    if (field.indexOf('\\') < 0) {
+      return field;
+    }
+    StringBuilder out = new StringBuilder(field.length());
+    for (int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c == '\\' && i + 1 < field.length()) {
+        char next = field.charAt(++i);
+        out.append(switch (next) {
+          case 't' -> '\t';
+          case 'n' -> '\n';
+          case 'r' -> '\r';
+          default -> next;
+        });
+      } else {
+        out.append(c);
+      }
+    }
+    return out.toString();
+  }
+
+  private record Entry(byte[] artist, byte[] title, long mbidHigh, long mbidLow, long sequence) {
+  }
+
+  private record Counts(int recordings, int artists, int trigrams, int postings) {
+  }
+
+  private static final class RunCursor implements AutoCloseable {
+
+    private final DataInputStream in;
+    Entry current;
+
+    RunCursor(Path run) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+    }
+
+    boolean advance() throws IOException {
+      byte[] artist;
+      try {
+        artist = new byte[in.readInt()];
+      } catch (EOFException e) {
+        return false;
+      }
+      in.readFully(artist);
+      byte[] title = new byte[in.readInt()];
+      in.readFully(title);
+      current = new Entry(artist, title, in.readLong(), in.readLong(), in.readLong());
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
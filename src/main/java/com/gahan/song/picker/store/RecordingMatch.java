@@ -0,0 +1,8 @@
+package com.gahan.song.picker.store;
+
+/**
+ * Best local match for a track: the recording MBID and a confidence between
+ * 0 and 1, where 1 means both the normalized title and artist matched exactly.
+ */
+public record RecordingMatch(String mbid, double confidence) {
+}
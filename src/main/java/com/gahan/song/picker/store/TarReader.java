@@ -0,0 +1,184 @@
+package com.gahan.song.picker.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal streaming reader for tar archives, enough for the AcousticBrainz
+ * dumps: regular files named by the ustar header, a GNU long name or a pax
+ * path record. Other entry types (directories, links) are skipped.
+ */
+class TarReader {
+
+  private static final int BLOCK = 512;
+
+  private final InputStream in;
+  private final byte[] header = new byte[BLOCK];
+  private long remaining;
+  private long padding;
+
+  TarReader(InputStream in) {
+    this.in = in;
+  }
+
+  record Entry(String name, long size, InputStream content) {
+  }
+
+  // The content stream of the previous entry is invalid once this is called.
+  Entry next() throws IOException {
+    String longName = null;
+    while (true) {
+      skipFully(remaining + padding);
+      remaining = 0;
+      padding = 0;
+
+      if (!readBlock()) {
+        return null;
+      }
+      if (isZeroBlock()) {
+        return null;
+      }
+
+      long size = parseOctal(124, 12);
+      byte type = header[156];
+      remaining = size;
+      padding = (BLOCK - size % BLOCK) % BLOCK;
+
+      if (type == 'L' || type == 'x') {
+        byte[] data = new byte[(int) size];
+        readFully(data);
+        remaining = 0;
+        String name = type == 'L' ? cString(data, 0, data.length) : paxPath(data);
+        longName = name != null ? name : longName;
+        continue;
+      }
+      if (type != '0' && type != 0) {
+        longName = null;
+        continue;
+      }
+
+      String name = longName != null ? longName : ustarName();
+      return new Entry(name, size, new EntryStream());
+    }
+  }
+
+  private String ustarName() {
+    String name = cString(header, 0, 100);
+    String magic = cString(header, 257, 6);
+    if (magic.startsWith("ustar")) {
+      String prefix = cString(header, 345, 155);
+      if (!prefix.isEmpty()) {
+        return prefix + "/" + name;
+      }
+    }
+    return name;
+  }
+
+  // Pax extended headers are "<length> <key>=<value>\n" records.
+  private static String paxPath(byte[] data) {
+    String records = new String(data, StandardCharsets.UTF_8);
+    int pos = 0;
+    while (pos < records.length()) {
+      int space = records.indexOf(' ', pos);
+      if (space < 0) {
+        break;
+      }
+      int length = Integer.parseInt(records.substring(pos, space));
+      String record = records.substring(space + 1, pos + length - 1);
+      if (record.startsWith("path=")) {
+        return record.substring("path=".length());
+      }
+      pos += length;
+    }
+    return null;
+  }
+
+  private boolean readBlock() throws IOException {
+    int read = in.readNBytes(header, 0, BLOCK);
+    if (read == 0) {
+      return false;
+    }
+    if (read < BLOCK) {
+      throw new EOFException("Truncated tar header");
+    }
+    return true;
+  }
+
+  private boolean isZeroBlock() {
+    for (byte b : header) {
+      if (b != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long parseOctal(int offset, int length) {
+    long value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      byte b = header[i];
+      if (b == 0 || b == ' ') {
+        if (value > 0) {
+          break;
+        }
+        continue;
+      }
+      value = value * 8 + (b - '0');
+    }
+    return value;
+  }
+
+  private void readFully(byte[] buffer) throws IOException {
+    if (in.readNBytes(buffer, 0, buffer.length) < buffer.length) {
+      throw new EOFException("Truncated tar entry");
+    }
+  }
+
+  private void skipFully(long bytes) throws IOException {
+    in.skipNBytes(bytes);
+  }
+
+  private static String cString(byte[] bytes, int offset, int length) {
+    int end = offset;
+    while (end < offset + length && bytes[end] != 0) {
+      end++;
+    }
+    return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+  }
+
+  // Bounded to the current entry; closing it leaves the archive open.
+  private final class EntryStream extends InputStream {
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException("Truncated tar entry");
+      }
+      remaining--;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+      if (read < 0) {
+        throw new EOFException("Truncated tar entry");
+      }
+      remaining -= read;
+      return read;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.gahan.song.picker.benchmark;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.scoring.KeywordScoring;
+import com.gahan.song.picker.scoring.MoodProfile;
+import com.gahan.song.picker.service.AcousticBrainzService;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request work that does not depend on playlist size: turning the image
+ * analysis into a mood profile, and reading one AcousticBrainz low-level
+ * document into features.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisBenchmark {
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private byte[] lowLevelDocument;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    lowLevelDocument = lowLevelDocument(new Random(3));
+  }
+
+  @Benchmark
+  public MoodProfile analyzeMoodProfile() {
+    String analysis = SyntheticPlaylist.ANALYSES[next++ % SyntheticPlaylist.ANALYSES.length];
+    return KeywordScoring.analyzeMoodProfile(KeywordScoring.analysisMask(analysis));
+  }
+
+  @Benchmark
+  public AudioFeatures parseAudioFeatures() throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(lowLevelDocument)) {
+      return AcousticBrainzService.parseAudioFeatures(parser);
+    }
+  }
+
+  // Shaped like a real low-level document: large frame statistics ahead of the
+  // handful of rhythm and tonal values that are actually read.
+  private static byte[] lowLevelDocument(Random random) {
+    StringBuilder json = new StringBuilder("{\"lowlevel\": {");
+    String[] descriptors = {"mfcc", "barkbands", "melbands", "erbbands", "gfcc", "spectral_contrast_coeffs"};
+    for (int d = 0; d < descriptors.length; d++) {
+      json.append(d > 0 ? ", " : "").append('"').append(descriptors[d]).append("\": {\"mean\": ");
+      appendArray(json, random, 40);
+      json.append(", \"cov\": [");
+      for (int row = 0; row < 13; row++) {
+        json.append(row > 0 ? ", " : "");
+        appendArray(json, random, 13);
+      }
+      json.append("]}");
+    }
+    json.append("}, \"rhythm\": {\"beats_position\": ");
+    appendArray(json, random, 400);
+    json.append(", \"bpm\": 118.4, \"danceability\": 1.21}, \"tonal\": {\"hpcp\": {\"mean\": ");
+    appendArray(json, random, 36);
+    json.append("}, \"key_key\": \"A\", \"key_scale\": \"minor\", \"key_strength\": 0.61}, ")
+            .append("\"metadata\": {\"version\": {\"essentia\": \"2.1-beta2\"}}}");
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void appendArray(StringBuilder json, Random random, int length) {
+    json.append('[');
+    for (int i = 0; i < length; i++) {
+      json.append(i > 0 ? ", " : "").append(random.nextDouble() * 100);
+    }
+    json.append(']');
+  }
+}
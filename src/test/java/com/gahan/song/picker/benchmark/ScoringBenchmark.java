@@ -0,0 +1,112 @@
+package com.gahan.song.picker.benchmark;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.scoring.FeatureScorer;
+import com.gahan.song.picker.scoring.KeywordScoring;
+import com.gahan.song.picker.scoring.MoodIndex;
+import com.gahan.song.picker.scoring.MoodProfile;
+import com.gahan.song.picker.scoring.TopK;
+import com.gahan.song.picker.scoring.TrackColumns;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Per-playlist scoring cost at three playlist sizes. Each invocation scores
+ * or ranks the whole playlist once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+  @Param({"100", "10000", "1000000"})
+  int size;
+
+  TrackColumns columns;
+  long[] trackMasks;
+  AudioFeatures[] features;
+  long analysisMask;
+  MoodProfile mood;
+  MoodIndex moodIndex;
+  double[] scores;
+  double[] out;
+
+  @Setup
+  public void setUp() {
+    columns = SyntheticPlaylist.columns(size, 42);
+    analysisMask = KeywordScoring.analysisMask(SyntheticPlaylist.ANALYSES[0]);
+    mood = KeywordScoring.analyzeMoodProfile(analysisMask);
+
+    Random random = new Random(7);
+    trackMasks = new long[size];
+    features = new AudioFeatures[size];
+    for (int i = 0; i < size; i++) {
+      trackMasks[i] = KeywordScoring.trackMask(columns.track(i).name(), columns.track(i).artist());
+      features[i] = SyntheticPlaylist.features(random);
+    }
+
+    out = new double[size];
+    scores = new double[size];
+    FeatureScorer.score(columns, mood, analysisMask, scores);
+    moodIndex = MoodIndex.build(columns);
+  }
+
+  @Benchmark
+  public double[] scorePlaylist() {
+    FeatureScorer.score(columns, mood, analysisMask, out);
+    return out;
+  }
+
+  @Benchmark
+  public double calculateImprovedScore() {
+    double sum = 0;
+    for (long trackMask : trackMasks) {
+      sum += FeatureScorer.calculateImprovedScore(trackMask, analysisMask);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double calculateFeatureMatchScore() {
+    double sum = 0;
+    for (AudioFeatures track : features) {
+      sum += FeatureScorer.calculateFeatureMatchScore(mood, track);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int[] topK() {
+    return TopK.select(scores, size, 5);
+  }
+
+  // Full scan plus selection, as recommend() does for playlists without a mood index.
+  @Benchmark
+  public int[] scanTop5() {
+    FeatureScorer.score(columns, mood, analysisMask, out);
+    return TopK.select(out, size, 5);
+  }
+
+  @Benchmark
+  public int[] moodIndexTop5() {
+    return moodIndex.top(mood, analysisMask, 5);
+  }
+
+  // The sort-then-limit step TopK replaced, kept as a reference point.
+  @Benchmark
+  public void sortAndLimit(Blackhole blackhole) {
+    IntStream.range(0, size).boxed()
+            .sorted(Comparator.comparingDouble((Integer i) -> scores[i]).reversed())
+            .limit(5)
+            .forEach(blackhole::consume);
+  }
+}
@@ -0,0 +1,64 @@
+package com.gahan.song.picker.benchmark;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SpotifyTrack;
+import com.gahan.song.picker.scoring.TrackColumns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic playlists for the benchmarks: titles mix mood keywords with
+ * filler words, and about half of the tracks carry audio features, which is
+ * roughly what enrichment achieves against AcousticBrainz.
+ */
+final class SyntheticPlaylist {
+
+  private static final String[] WORDS = {
+          "love", "night", "dance", "slow", "heart", "city", "rock", "dream", "piano", "summer",
+          "chill", "fire", "blue", "epic", "road", "party", "soft", "gold", "dark", "sweet"
+  };
+
+  private static final String[] ARTISTS = {
+          "The Lights", "Nova", "Jazz Collective", "Metal Union", "Ambient Works", "Pop Stars", "Luna"
+  };
+
+  static final String[] ANALYSES = {
+          "This image captures a warm, golden hour scene with soft, romantic lighting. The atmosphere is "
+                  + "peaceful and contemplative, suggesting gentle melodies and acoustic elements.",
+          "This image shows a vibrant, high-energy scene full of movement and excitement. The mood is "
+                  + "energetic and celebratory, perfect for upbeat tracks with strong rhythms.",
+          "This image has a dramatic, moody atmosphere with deep contrasts and mysterious elements. The "
+                  + "scene calls for intense, atmospheric music with darker undertones."
+  };
+
+  private SyntheticPlaylist() {
+  }
+
+  static List<SpotifyTrack> tracks(int size, long seed) {
+    Random random = new Random(seed);
+    List<SpotifyTrack> tracks = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)];
+      String artist = ARTISTS[random.nextInt(ARTISTS.length)];
+      tracks.add(new SpotifyTrack("id" + i, name, artist, null, null));
+    }
+    return tracks;
+  }
+
+  static TrackColumns columns(int size, long seed) {
+    TrackColumns columns = TrackColumns.of(tracks(size, seed));
+    Random random = new Random(seed + 1);
+    for (int i = 0; i < size; i++) {
+      if (random.nextBoolean()) {
+        columns.setFeatures(i, features(random));
+      }
+    }
+    return columns;
+  }
+
+  static AudioFeatures features(Random random) {
+    return new AudioFeatures(random.nextDouble(), random.nextDouble(), random.nextDouble());
+  }
+}
@@ -0,0 +1,131 @@
+package com.gahan.song.picker.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppendOnlyStoreTests {
+
+  @TempDir
+  Path dir;
+
+  private final AtomicLong now = new AtomicLong(1_000_000);
+
+  @Test
+  void entriesSurviveReopening() throws IOException {
+    try (AppendOnlyStore<String> store = open()) {
+      store.put("yesterday\u001fThe Beatles", "mbid-1");
+      store.put("unknown\u001fNobody", null);
+      store.put("halo\u001fBeyoncé", "mbid-2");
+    }
+
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(store.peek("yesterday\u001fThe Beatles")).isEqualTo(new CacheBackend.Hit<>("mbid-1"));
+      assertThat(store.peek("unknown\u001fNobody")).isEqualTo(new CacheBackend.Hit<>(null));
+      assertThat(store.peek("halo\u001fBeyoncé")).isEqualTo(new CacheBackend.Hit<>("mbid-2"));
+      assertThat(store.peek("never stored")).isNull();
+      assertThat(store.stats().size()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void negativeAnswersExpire() throws IOException {
+    try (AppendOnlyStore<String> store = open()) {
+      store.put("unknown", null);
+      now.addAndGet(Duration.ofHours(1).toMillis() - 1);
+      assertThat(store.peek("unknown")).isEqualTo(new CacheBackend.Hit<>(null));
+
+      now.incrementAndGet();
+      assertThat(store.peek("unknown")).isNull();
+      assertThat(store.get("unknown", key -> "found later")).isEqualTo("found later");
+      assertThat(store.peek("unknown")).isEqualTo(new CacheBackend.Hit<>("found later"));
+    }
+  }
+
+  @Test
+  void reopeningCompactsOverwrittenAndExpiredEntries() throws IOException {
+    Path file = dir.resolve("mbid.log");
+    try (AppendOnlyStore<String> store = open()) {
+      for (int i = 0; i < 10; i++) {
+        store.put("song", "mbid-" + i);
+      }
+      store.put("unknown", null);
+      store.put("halo", "mbid-halo");
+    }
+    long before = Files.size(file);
+    now.addAndGet(Duration.ofHours(2).toMillis());
+
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(Files.size(file)).isLessThan(before);
+      assertThat(store.peek("song")).isEqualTo(new CacheBackend.Hit<>("mbid-9"));
+      assertThat(store.peek("halo")).isEqualTo(new CacheBackend.Hit<>("mbid-halo"));
+      assertThat(store.peek("unknown")).isNull();
+      assertThat(store.stats().size()).isEqualTo(2);
+      assertThat(store.stats().evictions()).isEqualTo(1);
+      store.put("new", "mbid-new");
+    }
+
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(store.peek("song")).isEqualTo(new CacheBackend.Hit<>("mbid-9"));
+      assertThat(store.peek("new")).isEqualTo(new CacheBackend.Hit<>("mbid-new"));
+    }
+  }
+
+  @Test
+  void tornRecordIsCutOff() throws IOException {
+    Path file = dir.resolve("mbid.log");
+    try (AppendOnlyStore<String> store = open()) {
+      store.put("song", "mbid-1");
+    }
+    Files.write(file, new byte[] {0, 0, 0, 9, 0, 0}, StandardOpenOption.APPEND);
+
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(store.peek("song")).isEqualTo(new CacheBackend.Hit<>("mbid-1"));
+      store.put("halo", "mbid-2");
+    }
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(store.peek("song")).isEqualTo(new CacheBackend.Hit<>("mbid-1"));
+      assertThat(store.peek("halo")).isEqualTo(new CacheBackend.Hit<>("mbid-2"));
+    }
+  }
+
+  @Test
+  void indexGrowsPastItsInitialSize() throws IOException {
+    try (AppendOnlyStore<String> store = open()) {
+      for (int i = 0; i < 5000; i++) {
+        store.put("track-" + i, "mbid-" + i);
+      }
+      for (int i = 0; i < 5000; i++) {
+        assertThat(store.peek("track-" + i)).isEqualTo(new CacheBackend.Hit<>("mbid-" + i));
+      }
+    }
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(store.stats().size()).isEqualTo(5000);
+      assertThat(store.peek("track-4999")).isEqualTo(new CacheBackend.Hit<>("mbid-4999"));
+    }
+  }
+
+  @Test
+  void startsEmptyOverALogInAnOlderFormat() throws IOException {
+    Files.writeString(dir.resolve("mbid.log"), "song\tmbid-1\n");
+
+    try (AppendOnlyStore<String> store = open()) {
+      assertThat(store.peek("song")).isNull();
+      store.put("song", "mbid-2");
+      assertThat(store.peek("song")).isEqualTo(new CacheBackend.Hit<>("mbid-2"));
+    }
+  }
+
+  private AppendOnlyStore<String> open() {
+    return new AppendOnlyStore<>(dir.resolve("mbid.log"), value -> value, value -> value, Duration.ofHours(1),
+            now::get);
+  }
+}
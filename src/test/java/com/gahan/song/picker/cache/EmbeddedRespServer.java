@@ -0,0 +1,233 @@
+package com.gahan.song.picker.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A loopback stand-in for Redis that speaks enough RESP2 for
+ * {@link RespClient}: PING, GET, MGET, SET with EX/PX/NX, INCR, PEXPIRE,
+ * DEL, DBSIZE and FLUSHALL. One thread per connection; expired keys are dropped on read.
+ */
+public final class EmbeddedRespServer implements AutoCloseable {
+
+  private final ServerSocket server;
+  private final Map<String, Entry> data = new ConcurrentHashMap<>();
+  private final List<Socket> clients = new ArrayList<>();
+
+  public EmbeddedRespServer() throws IOException {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::accept, "resp-accept");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  public int port() {
+    return server.getLocalPort();
+  }
+
+  public int size() {
+    data.values().removeIf(Entry::expired);
+    return data.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    synchronized (clients) {
+      for (Socket client : clients) {
+        client.close();
+      }
+    }
+  }
+
+  private void accept() {
+    while (!server.isClosed()) {
+      try {
+        Socket client = server.accept();
+        synchronized (clients) {
+          clients.add(client);
+        }
+        Thread worker = new Thread(() -> serve(client), "resp-client");
+        worker.setDaemon(true);
+        worker.start();
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private void serve(Socket client) {
+    try (client) {
+      InputStream in = new BufferedInputStream(client.getInputStream());
+      OutputStream out = new BufferedOutputStream(client.getOutputStream());
+      List<byte[]> command;
+      while ((command = readCommand(in)) != null) {
+        reply(command, out);
+        out.flush();
+      }
+    } catch (IOException e) {
+      // client went away
+    }
+  }
+
+  private void reply(List<byte[]> command, OutputStream out) throws IOException {
+    String name = new String(command.get(0), StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+    switch (name) {
+      case "PING" -> simple("PONG", out);
+      case "GET" -> bulk(lookup(key(command, 1)), out);
+      case "MGET" -> {
+        line('*', command.size() - 1, out);
+        for (int i = 1; i < command.size(); i++) {
+          bulk(lookup(key(command, i)), out);
+        }
+      }
+      case "SET" -> {
+        long expiresAt = Long.MAX_VALUE;
+        boolean ifAbsent = false;
+        for (int i = 3; i < command.size(); i++) {
+          String option = key(command, i).toUpperCase(Locale.ROOT);
+          if (option.equals("NX")) {
+            ifAbsent = true;
+            continue;
+          }
+          long amount = Long.parseLong(key(command, ++i));
+          expiresAt = System.currentTimeMillis() + (option.equals("EX") ? amount * 1000 : amount);
+        }
+        Entry entry = new Entry(command.get(2), expiresAt);
+        if (ifAbsent) {
+          synchronized (data) {
+            if (lookup(key(command, 1)) != null) {
+              bulk(null, out);
+              return;
+            }
+            data.put(key(command, 1), entry);
+          }
+        } else {
+          data.put(key(command, 1), entry);
+        }
+        simple("OK", out);
+      }
+      case "INCR" -> {
+        long count;
+        synchronized (data) {
+          byte[] current = lookup(key(command, 1));
+          Entry previous = data.get(key(command, 1));
+          count = (current != null ? Long.parseLong(new String(current, StandardCharsets.UTF_8)) : 0) + 1;
+          data.put(key(command, 1), new Entry(Long.toString(count).getBytes(StandardCharsets.UTF_8),
+                  previous != null ? previous.expiresAt() : Long.MAX_VALUE));
+        }
+        line(':', count, out);
+      }
+      case "PEXPIRE" -> {
+        int updated = 0;
+        synchronized (data) {
+          byte[] current = lookup(key(command, 1));
+          if (current != null) {
+            data.put(key(command, 1), new Entry(current,
+                    System.currentTimeMillis() + Long.parseLong(key(command, 2))));
+            updated = 1;
+          }
+        }
+        line(':', updated, out);
+      }
+      case "DEL" -> {
+        int removed = 0;
+        for (int i = 1; i < command.size(); i++) {
+          removed += data.remove(key(command, i)) != null ? 1 : 0;
+        }
+        line(':', removed, out);
+      }
+      case "DBSIZE" -> line(':', size(), out);
+      case "FLUSHALL" -> {
+        data.clear();
+        simple("OK", out);
+      }
+      default -> out.write(("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private byte[] lookup(String key) {
+    Entry entry = data.get(key);
+    if (entry == null || entry.expired()) {
+      data.remove(key);
+      return null;
+    }
+    return entry.value();
+  }
+
+  private static String key(List<byte[]> command, int index) {
+    return new String(command.get(index), StandardCharsets.UTF_8);
+  }
+
+  private static List<byte[]> readCommand(InputStream in) throws IOException {
+    int type = in.read();
+    if (type < 0) {
+      return null;
+    }
+    if (type != '*') {
+      throw new IOException("Expected an array, got " + type);
+    }
+    int count = Integer.parseInt(readLine(in));
+    List<byte[]> command = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      if (in.read() != '$') {
+        throw new IOException("Expected a bulk string");
+      }
+      int length = Integer.parseInt(readLine(in));
+      command.add(in.readNBytes(length));
+      in.skipNBytes(2);
+    }
+    return command;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int b;
+    while ((b = in.read()) != '\r') {
+      if (b < 0) {
+        throw new IOException("Connection closed");
+      }
+      line.append((char) b);
+    }
+    in.read();
+    return line.toString();
+  }
+
+  private static void simple(String text, OutputStream out) throws IOException {
+    out.write(('+' + text + "\r\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void line(char type, long value, OutputStream out) throws IOException {
+    out.write((type + Long.toString(value) + "\r\n").getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void bulk(byte[] value, OutputStream out) throws IOException {
+    if (value == null) {
+      out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+      return;
+    }
+    line('$', value.length, out);
+    out.write(value);
+    out.write('\r');
+    out.write('\n');
+  }
+
+  private record Entry(byte[] value, long expiresAt) {
+
+    boolean expired() {
+      return System.currentTimeMillis() >= expiresAt;
+    }
+  }
+}
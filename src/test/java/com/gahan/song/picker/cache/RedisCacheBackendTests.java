@@ -0,0 +1,128 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.http.CircuitBreaker;
+import com.gahan.song.picker.http.RateLimiter;
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SharedPlaylist;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisCacheBackendTests {
+
+  private static final CircuitBreaker.Settings BREAKER = new CircuitBreaker.Settings(
+          10, 2, 0.5, Duration.ofSeconds(1), 1.0, Duration.ofMinutes(1), 1);
+
+  private final EmbeddedRespServer server = new EmbeddedRespServer();
+  private final RespClient client = client(server.port());
+
+  RedisCacheBackendTests() throws IOException {
+  }
+
+  @AfterEach
+  void close() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  void nodesShareLoadedValuesAndNegativeAnswers() {
+    RedisCacheBackend<AudioFeatures> nodeA = features();
+    RedisCacheBackend<AudioFeatures> nodeB = features();
+    AudioFeatures halo = new AudioFeatures(0.7, 0.25, 0.6);
+    AtomicInteger loads = new AtomicInteger();
+
+    assertThat(nodeA.get("halo", k -> { loads.incrementAndGet(); return halo; })).isEqualTo(halo);
+    assertThat(nodeA.get("missing", k -> { loads.incrementAndGet(); return null; })).isNull();
+
+    assertThat(nodeB.get("halo", k -> { loads.incrementAndGet(); return null; })).isEqualTo(halo);
+    assertThat(nodeB.get("missing", k -> { loads.incrementAndGet(); return halo; })).isNull();
+    assertThat(loads).hasValue(2);
+    assertThat(server.size()).isEqualTo(2);
+
+    // Preloading pulls the other node's entries into the near tier in one round trip.
+    RedisCacheBackend<AudioFeatures> nodeC = features();
+    assertThat(nodeC.containsKey("halo")).isFalse();
+    assertThat(nodeC.preload(List.of("halo", "missing", "unknown"))).containsExactly("unknown");
+    assertThat(nodeC.containsKey("halo")).isTrue();
+    assertThat(nodeC.containsKey("missing")).isTrue();
+    assertThat(nodeC.containsKey("unknown")).isFalse();
+    assertThat(nodeC.getIfPresent("halo")).isEqualTo(halo);
+    assertThat(nodeC.stats().misses()).isEqualTo(1);
+  }
+
+  @Test
+  void encodesPlaylistsCompactly() {
+    RedisCacheBackend<SharedPlaylist> playlists = new RedisCacheBackend<>("playlist", client, CacheCodecs.PLAYLIST,
+            Duration.ofMinutes(1), null);
+    SharedPlaylist playlist = new SharedPlaylist("snap-1", List.of(
+            new SpotifyTrack("4uLU6hMCjMI75M1A2tKUQC", "Beyoncé – Halo", "Beyoncé", null,
+                    "https://open.spotify.com/track/4uLU6hMCjMI75M1A2tKUQC"),
+            new SpotifyTrack(null, "Local file", "Nobody", null, null)));
+
+    playlists.put("p1", playlist);
+    assertThat(playlists.getIfPresent("p1")).isEqualTo(playlist);
+    assertThat(CacheCodecs.encode(CacheCodecs.PLAYLIST, playlist)).hasSizeLessThan(150);
+  }
+
+  @Test
+  void nodesShareOneRateLimit() throws InterruptedException {
+    RateLimiter unlimited = deadline -> true;
+    RateLimiter nodeA = new RedisRateLimiter("musicbrainz", client, 2, unlimited);
+    RateLimiter nodeB = new RedisRateLimiter("musicbrainz", client, 2, unlimited);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+    // Six permits at two a second span three windows, whichever node asks.
+    long start = System.nanoTime();
+    for (int i = 0; i < 3; i++) {
+      assertThat(nodeA.tryAcquire(deadline)).isTrue();
+      assertThat(nodeB.tryAcquire(deadline)).isTrue();
+    }
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(1000);
+  }
+
+  @Test
+  void onlyOneNodeTakesALease() {
+    Duration ttl = Duration.ofSeconds(5);
+
+    assertThat(client.setIfAbsent("songpicker:lease:mbid:batch", new byte[] {1}, ttl)).isTrue();
+    assertThat(client.setIfAbsent("songpicker:lease:mbid:batch", new byte[] {1}, ttl)).isFalse();
+    assertThat(client.setIfAbsent("songpicker:lease:mbid:other", new byte[] {1}, ttl)).isTrue();
+  }
+
+  @Test
+  void fallsBackToTheLoaderWhenRedisIsDown() throws IOException {
+    int closedPort;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      closedPort = socket.getLocalPort();
+    }
+    try (RespClient unreachable = client(closedPort)) {
+      RedisCacheBackend<String> cache = new RedisCacheBackend<>("mbid", unreachable, CacheCodecs.STRING,
+              Duration.ofMinutes(1), new TtlCache<>(10, Duration.ofMinutes(1)));
+
+      assertThat(cache.get("a", k -> "A")).isEqualTo("A");
+      assertThat(cache.get("b", k -> "B")).isEqualTo("B");
+      assertThat(cache.get("a", k -> "other")).isEqualTo("A");
+      assertThat(unreachable.breaker().state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+  }
+
+  private RedisCacheBackend<AudioFeatures> features() {
+    return new RedisCacheBackend<>("features", client, CacheCodecs.AUDIO_FEATURES, Duration.ofMinutes(1),
+            new TtlCache<>(100, Duration.ofMinutes(1)));
+  }
+
+  private static RespClient client(int port) {
+    return new RespClient("127.0.0.1", port, 4, Duration.ofMillis(500), new CircuitBreaker("redis", BREAKER));
+  }
+}
@@ -0,0 +1,66 @@
+package com.gahan.song.picker.cache;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrackRegistryTests {
+
+  @Test
+  void sharesTracksAndEnrichmentAcrossPlaylists() {
+    TrackRegistry registry = new TrackRegistry(100);
+    SpotifyTrack halo = track("1", "Halo");
+    AudioFeatures features = new AudioFeatures(0.7, 0.4, 0.6);
+
+    TrackRegistry.Refs first = registry.intern(List.of(halo, track("2", "Numb")));
+    registry.setMbid(first, 0, "mbid-halo");
+    registry.setFeatures(first, 0, features);
+
+    // A copy of the same Spotify track in another playlist resolves to the first instance.
+    TrackRegistry.Refs second = registry.intern(List.of(track("3", "Yesterday"), track("1", "Halo")));
+    assertThat(second.refs()).containsExactly(2, 0);
+    assertThat(second.tracks().get(1)).isSameAs(halo);
+
+    TrackRegistry.Enrichment known = registry.enrichment(second);
+    assertThat(known.mbids()).containsExactly(null, "mbid-halo");
+    assertThat(known.features()).containsExactly(null, features);
+    assertThat(registry.stats()).isEqualTo(new CacheStats(1, 3, 0, 3));
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedTrackWhenFull() {
+    TrackRegistry registry = new TrackRegistry(3);
+    AudioFeatures features = new AudioFeatures(0.7, 0.4, 0.6);
+    TrackRegistry.Refs first = registry.intern(List.of(track("1", "a"), track("2", "b"), track("3", "c")));
+    registry.setFeatures(first, 0, features);
+    registry.setFeatures(first, 2, features);
+
+    // The sweep clears every used flag, then takes the first slot whose flag stays clear.
+    TrackRegistry.Refs second = registry.intern(List.of(track("4", "d")));
+    assertThat(second.refs()).containsExactly(0);
+    TrackRegistry.Enrichment known = registry.enrichment(first);
+    assertThat(known.features()).containsExactly(null, null, features);
+
+    // The reused slot ignores writes through old refs; the other refs stay valid.
+    registry.setFeatures(first, 0, new AudioFeatures(1, 1, 1));
+    registry.setFeatures(first, 1, features);
+    assertThat(registry.enrichment(second).features()).containsOnlyNulls();
+    assertThat(registry.enrichment(first).features()).containsExactly(null, features, features);
+    assertThat(first.tracks()).extracting(SpotifyTrack::name).containsExactly("a", "b", "c");
+
+    // Every slot has been read since, so the hand goes a full lap and takes the slot it started at.
+    TrackRegistry.Refs third = registry.intern(List.of(track("5", "e")));
+    assertThat(third.refs()).containsExactly(1);
+    assertThat(registry.enrichment(first).features()).containsExactly(null, null, features);
+    assertThat(registry.stats()).isEqualTo(new CacheStats(0, 5, 2, 3));
+  }
+
+  private static SpotifyTrack track(String id, String name) {
+    return new SpotifyTrack(id, name, "artist", null, null);
+  }
+}
@@ -0,0 +1,56 @@
+package com.gahan.song.picker.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TtlCacheTests {
+
+  @Test
+  void cachesValuesAndNegativeAnswers() {
+    TtlCache<String, String> cache = new TtlCache<>(10, Duration.ofMinutes(1));
+    AtomicInteger loads = new AtomicInteger();
+
+    assertThat(cache.get("a", k -> { loads.incrementAndGet(); return "A"; })).isEqualTo("A");
+    assertThat(cache.get("a", k -> { loads.incrementAndGet(); return "other"; })).isEqualTo("A");
+    assertThat(cache.get("missing", k -> { loads.incrementAndGet(); return null; })).isNull();
+    assertThat(cache.get("missing", k -> { loads.incrementAndGet(); return "late"; })).isNull();
+
+    assertThat(loads).hasValue(2);
+    assertThat(cache.stats()).isEqualTo(new CacheStats(2, 2, 0, 2));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedAndExpiredEntries() {
+    TtlCache<Integer, Integer> bounded = new TtlCache<>(2, Duration.ofMinutes(1));
+    bounded.put(1, 1);
+    bounded.put(2, 2);
+    bounded.get(1, k -> -1);
+    bounded.put(3, 3);
+
+    assertThat(bounded.get(2, k -> -2)).isEqualTo(-2);
+    assertThat(bounded.stats().evictions()).isEqualTo(2);
+
+    TtlCache<Integer, Integer> expiring = new TtlCache<>(2, Duration.ZERO);
+    expiring.put(1, 1);
+    assertThat(expiring.get(1, k -> -1)).isEqualTo(-1);
+  }
+
+  @Test
+  void peekTellsNegativeEntriesFromMisses() {
+    TtlCache<String, String> cache = new TtlCache<>(10, Duration.ofMinutes(1));
+    cache.put("a", "A");
+    cache.put("missing", null);
+
+    assertThat(cache.peek("a")).isEqualTo(new CacheBackend.Hit<>("A"));
+    assertThat(cache.peek("missing")).isEqualTo(new CacheBackend.Hit<>(null));
+    assertThat(cache.peek("unknown")).isNull();
+
+    TtlCache<String, String> expiring = new TtlCache<>(2, Duration.ZERO);
+    expiring.put("a", "A");
+    assertThat(expiring.peek("a")).isNull();
+  }
+}
@@ -0,0 +1,100 @@
+package com.gahan.song.picker.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionQueueTests {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  void servesWaitingClientsRoundRobin() {
+    AdmissionQueue queue = queue(1, 10, 2, Duration.ofMinutes(1));
+    AdmissionQueue.Permit running = queue.acquire("a").join();
+
+    List<String> order = new ArrayList<>();
+    List<CompletableFuture<AdmissionQueue.Permit>> waiting = List.of(
+            track(queue.acquire("a"), "a2", order),
+            track(queue.acquire("a"), "a3", order),
+            track(queue.acquire("b"), "b1", order));
+    assertThatThrownBy(() -> queue.acquire("a")).isInstanceOf(OverloadedException.class);
+    assertThat(queue.queued()).isEqualTo(3);
+
+    running.release();
+    running.release();
+    assertThat(order).containsExactly("a2");
+    waiting.get(0).join().release();
+    waiting.get(2).join().release();
+    waiting.get(1).join().release();
+
+    assertThat(order).containsExactly("a2", "b1", "a3");
+    assertThat(queue.inFlight()).isZero();
+    assertThat(queue.rejected()).isEqualTo(1);
+  }
+
+  @Test
+  void rejectsAtOnceWhenTheExpectedWaitIsTooLong() {
+    AdmissionQueue queue = queue(1, 10, 10, Duration.ofSeconds(5));
+    AdmissionQueue.Permit first = queue.acquire("a").join();
+    clock.addAndGet(Duration.ofSeconds(10).toNanos());
+    first.release();
+
+    queue.acquire("a").join();
+    assertThatThrownBy(() -> queue.acquire("b"))
+            .isInstanceOfSatisfying(OverloadedException.class,
+                    e -> assertThat(e.retryAfter()).isEqualTo(Duration.ofSeconds(10)));
+    assertThat(queue.queued()).isZero();
+  }
+
+  @Test
+  void failsWaitersThatRunOutOfTime() {
+    AdmissionQueue queue = queue(1, 10, 10, Duration.ofMillis(50));
+    AdmissionQueue.Permit running = queue.acquire("a").join();
+    CompletableFuture<AdmissionQueue.Permit> waiter = queue.acquire("b");
+
+    assertThatThrownBy(waiter::join)
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(OverloadedException.class);
+    assertThat(queue.queued()).isZero();
+
+    // The slot goes back to the pool rather than to the expired waiter.
+    running.release();
+    assertThat(queue.inFlight()).isZero();
+  }
+
+  @Test
+  void cancelledWaitersLeaveTheQueue() {
+    AdmissionQueue queue = queue(1, 10, 10, Duration.ofMinutes(1));
+    AdmissionQueue.Permit running = queue.acquire("a").join();
+    CompletableFuture<AdmissionQueue.Permit> abandoned = queue.acquire("b");
+    CompletableFuture<AdmissionQueue.Permit> waiting = queue.acquire("c");
+
+    abandoned.cancel(false);
+    assertThat(queue.queued()).isEqualTo(1);
+
+    running.release();
+    assertThat(waiting).isDone();
+    waiting.join().release();
+    assertThat(queue.inFlight()).isZero();
+    assertThat(queue.queued()).isZero();
+  }
+
+  private AdmissionQueue queue(int maxInFlight, int maxQueued, int perClient, Duration maxWait) {
+    return new AdmissionQueue(new AdmissionQueue.Settings(maxInFlight, maxQueued, perClient, maxWait), clock::get);
+  }
+
+  private static CompletableFuture<AdmissionQueue.Permit> track(CompletableFuture<AdmissionQueue.Permit> permit,
+                                                               String name, List<String> order) {
+    permit.thenRun(() -> order.add(name));
+    return permit;
+  }
+}
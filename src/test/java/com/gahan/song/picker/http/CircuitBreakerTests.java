@@ -0,0 +1,87 @@
+package com.gahan.song.picker.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CircuitBreakerTests {
+
+  private static final long MS = 1_000_000L;
+
+  private final AtomicLong clock = new AtomicLong();
+  private final CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Settings(
+          10, 4, 0.5, Duration.ofMillis(100), 0.5, Duration.ofSeconds(1), 2), clock::get);
+
+  @Test
+  void opensOnFailureRateAndRejectsCalls() {
+    succeed(2);
+    fail(1);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+    fail(1);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    assertThat(breaker.allowsCalls()).isFalse();
+    assertThatThrownBy(() -> breaker.execute(() -> "x", e -> true)).isInstanceOf(CircuitOpenException.class);
+  }
+
+  @Test
+  void opensOnSlowCalls() {
+    for (int i = 0; i < 4; i++) {
+      breaker.execute(() -> clock.addAndGet(150 * MS), e -> true);
+    }
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  @Test
+  void ignoredErrorsCountAsSuccess() {
+    for (int i = 0; i < 10; i++) {
+      assertThatThrownBy(() -> breaker.execute(() -> {
+        throw new IllegalArgumentException("not found");
+      }, e -> false)).isInstanceOf(IllegalArgumentException.class);
+    }
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void closesAfterSuccessfulProbes() {
+    fail(4);
+    clock.addAndGet(1000 * MS);
+
+    assertThat(breaker.allowsCalls()).isTrue();
+    succeed(1);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    succeed(1);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void limitsProbesAndReopensOnFailedProbe() {
+    fail(4);
+    clock.addAndGet(1000 * MS);
+
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+    assertThat(breaker.tryAcquirePermission()).isTrue();
+    assertThat(breaker.tryAcquirePermission()).isFalse();
+
+    breaker.onResult(0, true);
+    assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+  }
+
+  private void succeed(int times) {
+    for (int i = 0; i < times; i++) {
+      breaker.execute(() -> "ok", e -> true);
+    }
+  }
+
+  private void fail(int times) {
+    for (int i = 0; i < times; i++) {
+      assertThatThrownBy(() -> breaker.execute(() -> {
+        throw new IllegalStateException("down");
+      }, e -> true)).isInstanceOf(IllegalStateException.class);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.gahan.song.picker.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HedgerTests {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @AfterEach
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void hedgeAnswersWhenFirstAttemptIsSlow() {
+    Hedger hedger = new Hedger(executor, Duration.ofMillis(20), new RetryBudget(0.1, 0, 10));
+    CountDownLatch never = new CountDownLatch(1);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result = hedger.call(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        await(never);
+      }
+      return "hedge";
+    }, e -> true, deadline(Duration.ofSeconds(5)));
+
+    assertThat(result).isEqualTo("hedge");
+    assertThat(attempts.get()).isEqualTo(2);
+  }
+
+  @Test
+  void waitingForARateLimitSlotDoesNotStartAHedge() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(5, 1);
+    assertThat(bucket.tryAcquire(Long.MAX_VALUE)).isTrue();
+    Hedger hedger = new Hedger(executor, Duration.ofMillis(100), new RetryBudget(0.1, 0, 10), bucket);
+    AtomicInteger attempts = new AtomicInteger();
+
+    // The attempt queues about 200ms for its slot, then answers well within the hedge delay.
+    String result = hedger.call(() -> {
+      attempts.incrementAndGet();
+      sleep(20);
+      return "first";
+    }, e -> true, deadline(Duration.ofSeconds(5)));
+
+    assertThat(result).isEqualTo("first");
+    assertThat(attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  void retriesRetryableFailureOnce() {
+    Hedger hedger = new Hedger(executor, Duration.ofSeconds(10), new RetryBudget(0.1, 0, 10));
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThat(hedger.call(() -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw new IllegalStateException("503");
+      }
+      return "retried";
+    }, e -> true, deadline(Duration.ofSeconds(5)))).isEqualTo("retried");
+
+    AtomicInteger failing = new AtomicInteger();
+    assertThatThrownBy(() -> hedger.call(() -> {
+      failing.incrementAndGet();
+      throw new IllegalStateException("503");
+    }, e -> true, deadline(Duration.ofSeconds(5)))).isInstanceOf(IllegalStateException.class);
+    assertThat(failing.get()).isEqualTo(2);
+  }
+
+  @Test
+  void noExtraAttemptsWithoutBudget() {
+    Hedger hedger = new Hedger(executor, Duration.ofSeconds(10), new RetryBudget(0.1, 0, 0));
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThatThrownBy(() -> hedger.call(() -> {
+      attempts.incrementAndGet();
+      throw new IllegalStateException("503");
+    }, e -> true, deadline(Duration.ofSeconds(5)))).isInstanceOf(IllegalStateException.class);
+    assertThat(attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  void givesUpAtDeadline() {
+    Hedger hedger = new Hedger(executor, Duration.ofMillis(10), new RetryBudget(0.1, 0, 10));
+    CountDownLatch never = new CountDownLatch(1);
+
+    long start = System.nanoTime();
+    assertThatThrownBy(() -> hedger.call(() -> {
+      await(never);
+      return "late";
+    }, e -> true, deadline(Duration.ofMillis(100)))).isInstanceOf(DeadlineExceededException.class);
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+  }
+
+  private static long deadline(Duration timeout) {
+    return System.nanoTime() + timeout.toNanos();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.gahan.song.picker.json;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.PlaylistPage;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecoderTests {
+
+  @Test
+  void decodesPlaylistPageAndSkipsRemovedTracks() throws Exception {
+    String json = """
+        {"total": 2, "href": "ignored", "items": [
+          {"added_at": "2024-01-01", "track": {"id": "abc", "name": "Song", "popularity": 10,
+            "album": {"name": "ignored", "images": [{"url": "x"}]},
+            "artists": [{"name": "First"}, {"name": "Second"}],
+            "preview_url": null, "external_urls": {"spotify": "https://open.spotify.com/track/abc"}}},
+          {"track": null}
+        ]}
+        """;
+
+    PlaylistPage page = decode(SpotifyDecoders.PLAYLIST_PAGE, json);
+
+    assertThat(page.total()).isEqualTo(2);
+    assertThat(page.tracks()).containsExactly(
+            new SpotifyTrack("abc", "Song", "First", null, "https://open.spotify.com/track/abc"));
+  }
+
+  @Test
+  void decodesSearchResultsWithoutArtists() throws Exception {
+    String json = """
+        {"tracks": {"total": 1, "items": [{"id": "x", "name": "Lonely", "artists": []}]}}
+        """;
+
+    assertThat(decode(SpotifyDecoders.SEARCH_RESULTS, json))
+            .containsExactly(new SpotifyTrack("x", "Lonely", "", null, null));
+  }
+
+  @Test
+  void readsOnlyRhythmAndTonalFromLowLevel() throws Exception {
+    String json = """
+        {"lowlevel": {"mfcc": {"mean": [1, 2, 3]}},
+         "rhythm": {"bpm": 120.0, "beats_position": [0.5, 1.0]},
+         "tonal": {"key_key": "C", "key_scale": "major"}}
+        """;
+
+    AudioFeatures features = decode(AcousticBrainzDecoders.LOW_LEVEL, json).toAudioFeatures();
+
+    assertThat(features.energy()).isEqualTo(0.5);
+    assertThat(features.danceability()).isEqualTo(0.8);
+    assertThat(features.valence()).isEqualTo(0.3);
+  }
+
+  private static <T> T decode(JsonDecoder<T> decoder, String json) throws Exception {
+    return decoder.decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+  }
+}
@@ -0,0 +1,152 @@
+package com.gahan.song.picker.loadtest;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load against /api/image/analyze: {@code concurrency} workers
+ * each send a request, wait for the response and send the next, until the
+ * request budget is used up. With several app nodes, requests go to each in
+ * turn. Uploads cycle through {@code distinctImages}
+ * generated images and {@code distinctPlaylists} playlist ids, so the ratio
+ * of cache hits to misses can be controlled.
+ */
+public final class LoadDriver {
+
+  private static final String BOUNDARY = "----song-picker-load-test";
+
+  private final List<URI> endpoints;
+  private final int concurrency;
+  private final int requests;
+  private final int warmupRequests;
+  private final List<byte[]> images;
+  private final int distinctPlaylists;
+  private final HttpClient client;
+
+  public LoadDriver(List<String> appBaseUrls, int concurrency, int requests, int warmupRequests,
+                    int distinctImages, int distinctPlaylists) {
+    this.endpoints = appBaseUrls.stream().map(url -> URI.create(url + "/api/image/analyze")).toList();
+    this.concurrency = concurrency;
+    this.requests = requests;
+    this.warmupRequests = warmupRequests;
+    this.distinctPlaylists = distinctPlaylists;
+    this.images = new ArrayList<>(distinctImages);
+    for (int i = 0; i < distinctImages; i++) {
+      images.add(image(i));
+    }
+    this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+  }
+
+  public LoadReport run() throws InterruptedException {
+    if (warmupRequests > 0) {
+      drive(warmupRequests, new long[warmupRequests], new AtomicInteger(), new AtomicInteger());
+    }
+
+    long[] latencies = new long[requests];
+    AtomicInteger errors = new AtomicInteger();
+    AtomicInteger rejected = new AtomicInteger();
+    long start = System.nanoTime();
+    drive(requests, latencies, errors, rejected);
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    Arrays.sort(latencies);
+    return new LoadReport(requests, errors.get(), rejected.get(), elapsed, latencies);
+  }
+
+  private void drive(int total, long[] latencies, AtomicInteger errors, AtomicInteger rejected) throws InterruptedException {
+    AtomicLong next = new AtomicLong();
+    CountDownLatch done = new CountDownLatch(concurrency);
+    for (int w = 0; w < concurrency; w++) {
+      Thread worker = new Thread(() -> {
+        try {
+          for (long i = next.getAndIncrement(); i < total; i = next.getAndIncrement()) {
+            latencies[(int) i] = send((int) i, errors, rejected);
+          }
+        } finally {
+          done.countDown();
+        }
+      }, "load-driver-" + w);
+      worker.setDaemon(true);
+      worker.start();
+    }
+    done.await();
+  }
+
+  private long send(int sequence, AtomicInteger errors, AtomicInteger rejected) {
+    byte[] body = multipart(images.get(sequence % images.size()),
+            "https://open.spotify.com/playlist/load" + (sequence % distinctPlaylists));
+    HttpRequest request = HttpRequest.newBuilder(endpoints.get(sequence % endpoints.size()))
+            .timeout(Duration.ofMinutes(2))
+            .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+
+    long start = System.nanoTime();
+    try {
+      HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() == 429) {
+        rejected.incrementAndGet();
+      } else if (response.statusCode() != 200 || !response.body().contains("spotify_tracks")) {
+        errors.incrementAndGet();
+      }
+    } catch (IOException e) {
+      errors.incrementAndGet();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      errors.incrementAndGet();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static byte[] multipart(byte[] image, String playlistUrl) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(image.length + 512);
+    String head = "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"playlistUrl\"\r\n\r\n"
+            + playlistUrl + "\r\n"
+            + "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"image\"; filename=\"load.png\"\r\n"
+            + "Content-Type: image/png\r\n\r\n";
+    out.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+    out.writeBytes(image);
+    out.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+    return out.toByteArray();
+  }
+
+  // A small gradient whose colour depends on the seed, so each image hashes differently.
+  private static byte[] image(int seed) {
+    BufferedImage image = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = image.createGraphics();
+    graphics.setPaint(new java.awt.GradientPaint(0, 0, new Color(seed * 37 % 256, 80, 160),
+            320, 240, new Color(240, seed * 91 % 256, 40)));
+    graphics.fillRect(0, 0, 320, 240);
+    graphics.drawString("load " + seed, 10, 20);
+    graphics.dispose();
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ImageIO.write(image, "png", out);
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
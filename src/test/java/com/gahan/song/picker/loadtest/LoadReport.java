@@ -0,0 +1,34 @@
+package com.gahan.song.picker.loadtest;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Outcome of one load run. {@code sortedLatencyNanos} holds one entry per
+ * request, ascending. Requests shed with a 429 count as {@code rejected}, not
+ * as errors.
+ */
+public record LoadReport(int requests, int errors, int rejected, Duration elapsed, long[] sortedLatencyNanos) {
+
+  public double throughput() {
+    return requests / (elapsed.toNanos() / 1e9);
+  }
+
+  public Duration percentile(double p) {
+    if (sortedLatencyNanos.length == 0) {
+      return Duration.ZERO;
+    }
+    int index = (int) Math.ceil(p / 100.0 * sortedLatencyNanos.length) - 1;
+    return Duration.ofNanos(sortedLatencyNanos[Math.max(0, Math.min(index, sortedLatencyNanos.length - 1))]);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+            "requests=%d errors=%d rejected=%d elapsed=%.1fs throughput=%.1f req/s%n"
+                    + "latency ms: p50=%d p90=%d p99=%d p99.9=%d max=%d",
+            requests, errors, rejected, elapsed.toMillis() / 1000.0, throughput(),
+            percentile(50).toMillis(), percentile(90).toMillis(), percentile(99).toMillis(),
+            percentile(99.9).toMillis(), percentile(100).toMillis());
+  }
+}
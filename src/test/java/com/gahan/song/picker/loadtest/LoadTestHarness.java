@@ -0,0 +1,141 @@
+package com.gahan.song.picker.loadtest;
+
+import com.gahan.song.picker.SongPickerApplication;
+import com.gahan.song.picker.cache.EmbeddedRespServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the real application against {@link StubUpstreams} and drives it
+ * with {@link LoadDriver}. Runs entirely on loopback:
+ *
+ * <pre>
+ * mvn -Ploadtest test -Dloadtest.args="concurrency=32 requests=2000 playlistSize=1000"
+ * </pre>
+ *
+ * Arguments are key=value. Stub keys are those of {@link StubSettings}; the
+ * driver takes concurrency, requests, warmup, images and playlists. Keys
+ * containing a dot are passed to the application as properties, e.g.
+ * songpicker.enrichment.threads=32. With nodes=N, N instances share their
+ * caches through an {@link EmbeddedRespServer} and requests are spread
+ * round-robin across them; stage counts are summed over the nodes, so they
+ * show whether adding nodes adds upstream calls.
+ */
+public final class LoadTestHarness {
+
+  private LoadTestHarness() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String arg : args) {
+      int eq = arg.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Expected key=value, got " + arg);
+      }
+      options.put(arg.substring(0, eq), arg.substring(eq + 1));
+    }
+    run(options, true);
+  }
+
+  public static LoadReport run(Map<String, String> options, boolean print) throws IOException, InterruptedException {
+    StubSettings settings = StubSettings.fromArgs(options);
+    int nodes = intOption(options, "nodes", 1);
+    List<ConfigurableApplicationContext> apps = new ArrayList<>(nodes);
+    try (StubUpstreams upstreams = new StubUpstreams(settings);
+         EmbeddedRespServer redis = nodes > 1 ? new EmbeddedRespServer() : null) {
+      Map<String, Object> shared = new LinkedHashMap<>();
+      if (redis != null) {
+        shared.put("songpicker.cache.backend", "redis");
+        shared.put("songpicker.cache.redis.host", "127.0.0.1");
+        shared.put("songpicker.cache.redis.port", redis.port());
+      }
+      List<String> baseUrls = new ArrayList<>(nodes);
+      for (int n = 0; n < nodes; n++) {
+        ConfigurableApplicationContext app = start(upstreams, shared, options);
+        apps.add(app);
+        baseUrls.add("http://127.0.0.1:" + ((WebServerApplicationContext) app).getWebServer().getPort());
+      }
+
+      LoadDriver driver = new LoadDriver(baseUrls,
+              intOption(options, "concurrency", 16),
+              intOption(options, "requests", 500),
+              intOption(options, "warmup", 50),
+              intOption(options, "images", 100),
+              intOption(options, "playlists", 5));
+
+      LoadReport report = driver.run();
+      if (print) {
+        System.out.println(settings);
+        System.out.println(report);
+        printStages(apps.stream().map(app -> app.getBean(MeterRegistry.class)).toList());
+      }
+      return report;
+    } finally {
+      apps.forEach(ConfigurableApplicationContext::close);
+    }
+  }
+
+  private static ConfigurableApplicationContext start(StubUpstreams upstreams, Map<String, Object> shared,
+                                                      Map<String, String> options) throws IOException {
+    Map<String, Object> properties = new LinkedHashMap<>(upstreams.applicationProperties());
+    properties.putAll(shared);
+    properties.put("server.port", 0);
+    properties.put("openai.api.key", "load-test");
+    properties.put("spotify.client.id", "load-test");
+    properties.put("spotify.client.secret", "load-test");
+    properties.put("songpicker.cache.dir", Files.createTempDirectory("song-picker-load").toString());
+    // The stubs have no rate limits and share one host, so the production limits would
+    // measure the limiters instead of the application.
+    properties.put("songpicker.musicbrainz.requests-per-second", 10_000);
+    properties.put("songpicker.acousticbrainz.requests-per-second", 10_000);
+    properties.put("songpicker.http.max-connections-per-host", 256);
+    properties.put("songpicker.http.max-total-connections", 512);
+    options.forEach((key, value) -> {
+      if (key.contains(".")) {
+        properties.put(key, value);
+      }
+    });
+
+    // Passed as command-line arguments so they win over application.properties on the test
+    // classpath, whose cache directory would otherwise carry answers over between runs.
+    String[] args = properties.entrySet().stream()
+            .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+            .toArray(String[]::new);
+    return new SpringApplicationBuilder(SongPickerApplication.class).run(args);
+  }
+
+  private static void printStages(List<MeterRegistry> registries) {
+    Map<String, List<Timer>> stages = new LinkedHashMap<>();
+    for (MeterRegistry registry : registries) {
+      for (Timer timer : registry.find("songpicker.stage").timers()) {
+        stages.computeIfAbsent(timer.getId().getTag("stage"), stage -> new ArrayList<>()).add(timer);
+      }
+    }
+    stages.forEach((stage, timers) -> {
+      long count = timers.stream().mapToLong(Timer::count).sum();
+      double total = timers.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS)).sum();
+      double max = timers.stream().mapToDouble(timer -> timer.max(TimeUnit.MILLISECONDS)).max().orElse(0);
+      System.out.printf(Locale.ROOT, "stage %-20s count=%-7d mean=%.1fms max=%.1fms%n",
+              stage, count, count > 0 ? total / count : 0, max);
+    });
+  }
+
+  private static int intOption(Map<String, String> options, String key, int fallback) {
+    String value = options.get(key);
+    return value != null ? Integer.parseInt(value) : fallback;
+  }
+}
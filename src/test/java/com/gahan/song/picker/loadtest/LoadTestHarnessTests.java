@@ -0,0 +1,28 @@
+package com.gahan.song.picker.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadTestHarnessTests {
+
+  @Test
+  void servesRequestsAgainstStubUpstreams() throws Exception {
+    LoadReport report = LoadTestHarness.run(Map.of(
+            "openAiLatency", "0",
+            "spotifyLatency", "0",
+            "musicBrainzLatency", "0",
+            "acousticBrainzLatency", "0",
+            "playlistSize", "250",
+            "concurrency", "4",
+            "requests", "20",
+            "warmup", "0",
+            "images", "5",
+            "playlists", "2"), false);
+
+    assertThat(report.errors()).isZero();
+    assertThat(report.sortedLatencyNanos()).hasSize(20);
+  }
+}
@@ -0,0 +1,42 @@
+package com.gahan.song.picker.loadtest;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Behaviour of the stand-in upstreams. Latencies are added to every response
+ * from that upstream; {@code errorRate} is the fraction of requests answered
+ * with a 503, and {@code missingFeatureRate} the fraction of recordings that
+ * AcousticBrainz reports as unknown.
+ */
+public record StubSettings(Duration openAiLatency,
+                           Duration spotifyLatency,
+                           Duration musicBrainzLatency,
+                           Duration acousticBrainzLatency,
+                           double errorRate,
+                           double missingFeatureRate,
+                           int playlistSize) {
+
+  public static StubSettings defaults() {
+    return new StubSettings(Duration.ofMillis(1500), Duration.ofMillis(80), Duration.ofMillis(150),
+            Duration.ofMillis(100), 0.0, 0.3, 300);
+  }
+
+  // Keys match the record components, durations in milliseconds, e.g. openAiLatency=800.
+  public static StubSettings fromArgs(Map<String, String> args) {
+    StubSettings d = defaults();
+    return new StubSettings(
+            millis(args, "openAiLatency", d.openAiLatency()),
+            millis(args, "spotifyLatency", d.spotifyLatency()),
+            millis(args, "musicBrainzLatency", d.musicBrainzLatency()),
+            millis(args, "acousticBrainzLatency", d.acousticBrainzLatency()),
+            Double.parseDouble(args.getOrDefault("errorRate", String.valueOf(d.errorRate()))),
+            Double.parseDouble(args.getOrDefault("missingFeatureRate", String.valueOf(d.missingFeatureRate()))),
+            Integer.parseInt(args.getOrDefault("playlistSize", String.valueOf(d.playlistSize()))));
+  }
+
+  private static Duration millis(Map<String, String> args, String key, Duration fallback) {
+    String value = args.get(key);
+    return value != null ? Duration.ofMillis(Long.parseLong(value)) : fallback;
+  }
+}
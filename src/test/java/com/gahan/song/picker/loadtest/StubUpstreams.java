@@ -0,0 +1,236 @@
+package com.gahan.song.picker.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-ins for OpenAI chat completions, the Spotify accounts and Web
+ * API, MusicBrainz recording search and AcousticBrainz low-level documents,
+ * all served from one loopback port. Responses are deterministic for a given
+ * playlist id or query, so repeated runs see the same data.
+ */
+public final class StubUpstreams implements AutoCloseable {
+
+  private static final String[] WORDS = {
+          "love", "night", "dance", "slow", "heart", "city", "rock", "dream", "piano", "summer",
+          "chill", "fire", "blue", "epic", "road", "party", "soft", "gold", "dark", "sweet"
+  };
+
+  private static final Pattern SEARCH_CLAUSE =
+          Pattern.compile("recording:\"((?:[^\"\\\\]|\\\\.)*)\" AND artist:\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+  private static final String[] ANALYSES = {
+          "This image captures a warm, golden hour scene with soft, romantic lighting. The atmosphere is peaceful.",
+          "This image shows a vibrant, high-energy scene full of movement. The mood is energetic and upbeat.",
+          "This image has a dramatic, moody atmosphere with deep contrasts. The scene calls for intense music."
+  };
+
+  private final StubSettings settings;
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  public StubUpstreams(StubSettings settings) throws IOException {
+    this.settings = settings;
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "stub-upstream");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/v1/chat/completions", handler(settings.openAiLatency(), this::chatCompletion));
+    server.createContext("/api/token", handler(settings.spotifyLatency(), this::token));
+    server.createContext("/v1/playlists/", handler(settings.spotifyLatency(), this::playlist));
+    server.createContext("/v1/search", handler(settings.spotifyLatency(), this::search));
+    server.createContext("/ws/2/recording", handler(settings.musicBrainzLatency(), this::recording));
+    server.createContext("/api/v1/", handler(settings.acousticBrainzLatency(), this::lowLevel));
+    server.start();
+  }
+
+  public String baseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  // Application properties that point every upstream at this server.
+  public Map<String, Object> applicationProperties() {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    properties.put("songpicker.openai.base-url", baseUrl());
+    properties.put("songpicker.spotify.api-url", baseUrl());
+    properties.put("songpicker.spotify.accounts-url", baseUrl());
+    properties.put("songpicker.musicbrainz.base-url", baseUrl());
+    properties.put("songpicker.acousticbrainz.base-url", baseUrl());
+    return properties;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private HttpHandler handler(Duration latency, Responder responder) {
+    return exchange -> {
+      try (InputStream body = exchange.getRequestBody()) {
+        body.transferTo(OutputStream.nullOutputStream());
+      }
+      sleep(latency);
+
+      Response response;
+      if (ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+        response = new Response(503, "{\"error\":\"stub failure\"}");
+      } else {
+        try {
+          response = responder.respond(exchange);
+        } catch (RuntimeException e) {
+          response = new Response(500, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+        }
+      }
+      send(exchange, response.status(), response.body());
+    };
+  }
+
+  private Response chatCompletion(HttpExchange exchange) {
+    String content = ANALYSES[ThreadLocalRandom.current().nextInt(ANALYSES.length)];
+    return ok("{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}");
+  }
+
+  private Response token(HttpExchange exchange) {
+    return ok("{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}");
+  }
+
+  // /v1/playlists/{id}?fields=snapshot_id and /v1/playlists/{id}/tracks?offset=..&limit=..
+  private Response playlist(HttpExchange exchange) {
+    String[] path = exchange.getRequestURI().getPath().split("/");
+    String playlistId = path[3];
+    if (path.length < 5) {
+      return ok("{\"snapshot_id\":\"" + playlistId + "-1\"}");
+    }
+
+    Map<String, String> query = query(exchange);
+    int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+    int limit = Integer.parseInt(query.getOrDefault("limit", "100"));
+    int end = Math.min(offset + limit, settings.playlistSize());
+
+    StringBuilder json = new StringBuilder("{\"total\":").append(settings.playlistSize()).append(",\"items\":[");
+    for (int i = offset; i < end; i++) {
+      json.append(i > offset ? "," : "").append("{\"track\":");
+      appendTrack(json, playlistId, i);
+      json.append('}');
+    }
+    return ok(json.append("]}").toString());
+  }
+
+  private Response search(HttpExchange exchange) {
+    StringBuilder json = new StringBuilder("{\"tracks\":{\"items\":[");
+    for (int i = 0; i < 5; i++) {
+      json.append(i > 0 ? "," : "");
+      appendTrack(json, "search", i);
+    }
+    return ok(json.append("]}}").toString());
+  }
+
+  // Every (recording:"title" AND artist:"name") clause of the query is found.
+  private Response recording(HttpExchange exchange) {
+    Matcher clause = SEARCH_CLAUSE.matcher(query(exchange).getOrDefault("query", ""));
+    StringBuilder json = new StringBuilder("{\"recordings\":[");
+    int count = 0;
+    while (clause.find()) {
+      String title = clause.group(1);
+      String artist = clause.group(2);
+      String mbid = UUID.nameUUIDFromBytes((title + '\u001f' + artist).getBytes(StandardCharsets.UTF_8)).toString();
+      json.append(count++ > 0 ? "," : "").append("{\"id\":\"").append(mbid)
+              .append("\",\"score\":100,\"title\":\"").append(title)
+              .append("\",\"artist-credit\":[{\"name\":\"").append(artist).append("\"}]}");
+    }
+    return ok(json.append("],\"count\":").append(count).append('}').toString());
+  }
+
+  // /api/v1/{mbid}/low-level
+  private Response lowLevel(HttpExchange exchange) {
+    String mbid = exchange.getRequestURI().getPath().split("/")[3];
+    int hash = mbid.hashCode() & Integer.MAX_VALUE;
+    if ((hash % 1000) < settings.missingFeatureRate() * 1000) {
+      return new Response(404, "{\"message\":\"Not found\"}");
+    }
+    double bpm = 60 + hash % 120;
+    String scale = hash % 2 == 0 ? "major" : "minor";
+    return ok("{\"lowlevel\":{\"average_loudness\":0.8},\"rhythm\":{\"bpm\":" + bpm + "},"
+            + "\"tonal\":{\"key_key\":\"C\",\"key_scale\":\"" + scale + "\"}}");
+  }
+
+  private static void appendTrack(StringBuilder json, String playlistId, int index) {
+    int hash = (playlistId + index).hashCode() & Integer.MAX_VALUE;
+    String name = WORDS[hash % WORDS.length] + " " + WORDS[(hash / WORDS.length) % WORDS.length] + " " + index;
+    String id = playlistId + "t" + index;
+    json.append("{\"id\":\"").append(id)
+            .append("\",\"name\":\"").append(name)
+            .append("\",\"artists\":[{\"name\":\"Artist ").append(hash % 97)
+            .append("\"}],\"preview_url\":null,\"external_urls\":{\"spotify\":\"https://open.spotify.com/track/")
+            .append(id).append("\"}}");
+  }
+
+  private static Map<String, String> query(HttpExchange exchange) {
+    Map<String, String> params = new LinkedHashMap<>();
+    String raw = exchange.getRequestURI().getRawQuery();
+    if (raw == null) {
+      return params;
+    }
+    for (String pair : raw.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return params;
+  }
+
+  private static void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static void sleep(Duration latency) {
+    if (latency.isZero()) {
+      return;
+    }
+    try {
+      Thread.sleep(latency.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Response ok(String body) {
+    return new Response(200, body);
+  }
+
+  private record Response(int status, String body) {
+  }
+
+  @FunctionalInterface
+  private interface Responder {
+    Response respond(HttpExchange exchange);
+  }
+}
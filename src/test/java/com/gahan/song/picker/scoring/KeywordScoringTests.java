@@ -0,0 +1,49 @@
+package com.gahan.song.picker.scoring;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordScoringTests {
+
+  @Test
+  void matcherFindsOverlappingKeywordsCaseInsensitively() {
+    KeywordMatcher matcher = KeywordMatcher.builder()
+            .add(1, "he", "she")
+            .add(2, "hers")
+            .add(4, "r&b")
+            .build();
+
+    assertThat(matcher.scan("USHERS")).isEqualTo(3);
+    assertThat(matcher.scan("smooth R&B")).isEqualTo(4);
+    assertThat(matcher.scan("nothing here? no")).isEqualTo(1);
+    assertThat(matcher.scan("Café")).isZero();
+    assertThat(matcher.scan(null)).isZero();
+  }
+
+  @Test
+  void scoresMatchTheOriginalRegexRules() {
+    long energetic = KeywordScoring.analysisMask("A Vibrant, lively scene");
+    long calmAndRomantic = KeywordScoring.analysisMask("calm warm evening");
+
+    assertThat(KeywordScoring.keywordScore(energetic,
+            KeywordScoring.trackMask("Dance Party", "Pop Star"))).isEqualTo(5.0);
+    // "slow" suppresses the genre bonus but "up" still matches
+    assertThat(KeywordScoring.keywordScore(energetic,
+            KeywordScoring.trackMask("Slow Rock", "Upside"))).isEqualTo(1.5);
+    assertThat(KeywordScoring.keywordScore(calmAndRomantic,
+            KeywordScoring.trackMask("Slow Love", "Piano Man"))).isEqualTo(3.0 + 1.5 + 3.0 + 2.0);
+    assertThat(KeywordScoring.keywordScore(0L,
+            KeywordScoring.trackMask("Dance", "Metal"))).isZero();
+  }
+
+  @Test
+  void moodProfileFollowsKeywordPrecedence() {
+    assertThat(KeywordScoring.analyzeMoodProfile(KeywordScoring.analysisMask("serene but upbeat")))
+            .isEqualTo(new MoodProfile(0.8, 0.7, 0.7));
+    assertThat(KeywordScoring.analyzeMoodProfile(KeywordScoring.analysisMask("Intense and calm")))
+            .isEqualTo(new MoodProfile(0.2, 0.6, 0.3));
+    assertThat(KeywordScoring.analyzeMoodProfile(KeywordScoring.analysisMask("bright and bold")))
+            .isEqualTo(new MoodProfile(0.5, 0.5, 0.5));
+  }
+}
@@ -0,0 +1,65 @@
+package com.gahan.song.picker.scoring;
+
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoodIndexTests {
+
+  @Test
+  void matchesFullScanIncludingTies() {
+    Random random = new Random(42);
+    TrackColumns columns = columns(20_000, 1.0, random);
+    MoodIndex index = MoodIndex.build(columns);
+    double[] scores = new double[columns.size()];
+
+    for (int query = 0; query < 200; query++) {
+      // Coarse features and moods give plenty of equal scores.
+      MoodProfile mood = new MoodProfile(random.nextInt(11) / 10.0, random.nextInt(11) / 10.0,
+              random.nextInt(11) / 10.0);
+      FeatureScorer.score(columns, mood, 0L, scores);
+      for (int k : new int[] {1, 5, 50}) {
+        assertThat(index.top(mood, 0L, k)).containsExactly(TopK.select(scores, scores.length, k));
+      }
+    }
+  }
+
+  @Test
+  void mergesFallbackScoresForTracksWithoutFeatures() {
+    Random random = new Random(7);
+    TrackColumns columns = columns(5_000, 0.5, random);
+    MoodIndex index = MoodIndex.build(columns);
+
+    // With no keywords the fallback score stays below 0.5, under the best feature matches,
+    // so the random term cannot change the top 5.
+    MoodProfile mood = new MoodProfile(0.8, 0.6, 0.7);
+    double[] scores = new double[columns.size()];
+    FeatureScorer.score(columns, mood, 0L, scores);
+    assertThat(index.top(mood, 0L, 5)).containsExactly(TopK.select(scores, scores.length, 5));
+
+    // Asking for every track returns the unenriched ones too.
+    assertThat(index.top(mood, 0L, columns.size())).hasSize(columns.size()).doesNotHaveDuplicates();
+  }
+
+  private static TrackColumns columns(int size, double enrichedShare, Random random) {
+    List<SpotifyTrack> tracks = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tracks.add(new SpotifyTrack("id" + i, "zz" + i, "nobody", null, null));
+    }
+    TrackColumns columns = TrackColumns.of(tracks);
+    for (int i = 0; i < size; i++) {
+      if (random.nextDouble() < enrichedShare) {
+        columns.setFeatures(i, new AudioFeatures(random.nextInt(21) / 20.0, random.nextInt(21) / 20.0,
+                random.nextInt(21) / 20.0));
+      }
+    }
+    return columns;
+  }
+}
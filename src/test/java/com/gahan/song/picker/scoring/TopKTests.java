@@ -0,0 +1,35 @@
+package com.gahan.song.picker.scoring;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTests {
+
+  @Test
+  void matchesStableSortAndLimit() {
+    Random random = new Random(42);
+    double[] scores = new double[1000];
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = random.nextInt(50) / 10.0; // plenty of ties
+    }
+
+    int[] expected = IntStream.range(0, scores.length).boxed()
+            .sorted(Comparator.comparingDouble((Integer i) -> scores[i]).reversed())
+            .limit(5)
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    assertThat(TopK.select(scores, scores.length, 5)).containsExactly(expected);
+  }
+
+  @Test
+  void returnsEverythingWhenFewerThanK() {
+    assertThat(TopK.select(new double[] {0.1, 0.9, 0.5}, 3, 5)).containsExactly(1, 2, 0);
+    assertThat(TopK.select(new double[0], 0, 5)).isEmpty();
+  }
+}
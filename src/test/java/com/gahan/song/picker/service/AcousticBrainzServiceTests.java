@@ -0,0 +1,183 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.cache.CacheBackends;
+import com.gahan.song.picker.config.ResilienceProperties;
+import com.gahan.song.picker.metrics.PipelineMetrics;
+import com.gahan.song.picker.model.SpotifyTrack;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AcousticBrainzServiceTests {
+
+  private static final Pattern TITLE = Pattern.compile("recording:\"([^\"]*)\"");
+  private static final int RECORDINGS_PER_SONG = 40;
+
+  @TempDir
+  Path cacheDir;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger searches = new AtomicInteger();
+  private final AcousticBrainzService service = new AcousticBrainzService();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    ReflectionTestUtils.setField(service, "restTemplate", new RestTemplate() {
+      @Override
+      public <T> T execute(URI uri, HttpMethod method, RequestCallback requestCallback,
+                           ResponseExtractor<T> responseExtractor) {
+        searches.incrementAndGet();
+        try {
+          return responseExtractor.extractData(new MockClientHttpResponse(
+                  search(query(uri)).getBytes(StandardCharsets.UTF_8), HttpStatus.OK));
+        } catch (IOException e) {
+          throw new RestClientException("bad stub response", e);
+        }
+      }
+    });
+    ReflectionTestUtils.setField(service, "metrics", new PipelineMetrics() {
+      @Override
+      public <T> T time(String stage, Supplier<T> work) {
+        return work.get();
+      }
+    });
+    ReflectionTestUtils.setField(service, "resilience", new ResilienceProperties());
+    ReflectionTestUtils.setField(service, "hedgeExecutor", executor);
+    ReflectionTestUtils.setField(service, "enrichmentExecutor", executor);
+    ReflectionTestUtils.setField(service, "cacheBackends", new CacheBackends());
+    ReflectionTestUtils.setField(service, "cacheDir", cacheDir.toString());
+    ReflectionTestUtils.setField(service, "maxEntries", 1000);
+    ReflectionTestUtils.setField(service, "ttl", Duration.ofHours(1));
+    ReflectionTestUtils.setField(service, "negativeTtl", Duration.ofDays(7));
+    ReflectionTestUtils.setField(service, "musicBrainzUrl", "http://musicbrainz.test");
+    ReflectionTestUtils.setField(service, "acousticBrainzUrl", "http://acousticbrainz.test");
+    ReflectionTestUtils.setField(service, "localStorePath", "");
+    ReflectionTestUtils.setField(service, "localIndexPath", "");
+    ReflectionTestUtils.setField(service, "batchSize", 8);
+    ReflectionTestUtils.setField(service, "musicBrainzRate", 1000.0);
+    ReflectionTestUtils.setField(service, "acousticBrainzRate", 1000.0);
+    service.init();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    service.closeStores();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void tracksCrowdedOutOfAFullPageAreStillResolved() {
+    // Each song has 40 recordings, so a search for eight of them fills the page after
+    // three songs, and a retry of the other five still fills it after three.
+    List<SpotifyTrack> tracks = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      tracks.add(track("Song " + i));
+    }
+
+    List<String> mbids = resolve(tracks);
+
+    for (int i = 0; i < 8; i++) {
+      assertThat(mbids.get(i)).isEqualTo("song-" + i + "-0");
+    }
+  }
+
+  @Test
+  void missFromAFullPageIsNotRecordedAsNotFound() {
+    List<SpotifyTrack> tracks = List.of(track("Lost Song"));
+
+    assertThat(resolve(tracks)).containsOnlyNulls();
+    assertThat(resolve(tracks)).containsOnlyNulls();
+
+    assertThat(searches.get()).isEqualTo(2);
+  }
+
+  @Test
+  void onlyCachedNotFoundAnswersCountAsKnownWithoutFeatures() {
+    List<SpotifyTrack> unknown = List.of(track("Unknown Song"));
+    List<SpotifyTrack> lost = List.of(track("Lost Song"));
+    assertThat(service.knownWithoutFeatures(unknown)).isFalse();
+
+    resolve(unknown);
+    resolve(lost);
+
+    assertThat(service.knownWithoutFeatures(unknown)).isTrue();
+    assertThat(service.knownWithoutFeatures(lost)).isFalse();
+  }
+
+  private List<String> resolve(List<SpotifyTrack> tracks) {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    return service.resolveMusicBrainzIds(tracks, deadline).stream().map(CompletableFuture::join).toList();
+  }
+
+  private static SpotifyTrack track(String name) {
+    return new SpotifyTrack(name.toLowerCase().replace(' ', '-'), name, "The Beatles", null, null);
+  }
+
+  private static String query(URI uri) {
+    for (String param : uri.getRawQuery().split("&")) {
+      if (param.startsWith("query=")) {
+        return URLDecoder.decode(param.substring("query=".length()), StandardCharsets.UTF_8);
+      }
+    }
+    throw new IllegalArgumentException("No query in " + uri);
+  }
+
+  // Results for each searched song in clause order, cut off at the page limit. "Lost Song"
+  // only turns up a full page of other recordings, and "Unknown Song" turns up nothing.
+  private static String search(String query) {
+    List<String> recordings = new ArrayList<>();
+    Matcher titles = TITLE.matcher(query);
+    while (titles.find()) {
+      String title = titles.group(1);
+      if (title.equals("Unknown Song")) {
+        continue;
+      }
+      if (title.equals("Lost Song")) {
+        for (int k = 0; k < BatchedRecordingSearch.RESULT_LIMIT; k++) {
+          recordings.add(recording("other-" + k, "Other Song"));
+        }
+        continue;
+      }
+      String id = title.toLowerCase().replace(' ', '-');
+      for (int k = 0; k < RECORDINGS_PER_SONG; k++) {
+        recordings.add(recording(id + "-" + k, title));
+      }
+    }
+    List<String> page = recordings.subList(0, Math.min(recordings.size(), BatchedRecordingSearch.RESULT_LIMIT));
+    return "{\"recordings\":[" + String.join(",", page) + "]}";
+  }
+
+  private static String recording(String id, String title) {
+    return "{\"id\":\"" + id + "\",\"title\":\"" + title + "\",\"score\":100,"
+            + "\"artist-credit\":[{\"name\":\"The Beatles\"}]}";
+  }
+}
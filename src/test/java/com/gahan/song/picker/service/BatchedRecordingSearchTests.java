@@ -0,0 +1,41 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.model.MusicBrainzRecording;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchedRecordingSearchTests {
+
+  @Test
+  void orsOneQuotedClausePerTrack() {
+    String query = BatchedRecordingSearch.query(List.of(
+            new BatchedRecordingSearch.Track("Let It Be - Remastered 2009", "The Beatles"),
+            new BatchedRecordingSearch.Track("12\" \\ Mix", "Daft Punk feat. Pharrell Williams")));
+
+    assertThat(query).isEqualTo("(recording:\"Let It Be\" AND artist:\"The Beatles\")"
+            + " OR (recording:\"12\\\" \\\\ Mix\" AND artist:\"Daft Punk\")");
+  }
+
+  @Test
+  void matchesResultsBackByNormalizedTitleAndArtist() {
+    List<BatchedRecordingSearch.Track> tracks = List.of(
+            new BatchedRecordingSearch.Track("Halo", "Beyonce"),
+            new BatchedRecordingSearch.Track("Numb - Live", "JAY-Z"),
+            new BatchedRecordingSearch.Track("Yesterday", "The Beatles"),
+            new BatchedRecordingSearch.Track("Unknown Song", "Nobody"));
+    List<MusicBrainzRecording> results = List.of(
+            new MusicBrainzRecording("halo-cover", "Halo", "Some Cover Band", 100),
+            new MusicBrainzRecording("yesterday", "Yesterday", "The Beatles", 100),
+            new MusicBrainzRecording("halo", "Halo", "Beyoncé", 98),
+            new MusicBrainzRecording("numb", "Numb / Encore", "JAY-Z & Linkin Park", 95),
+            new MusicBrainzRecording("numb-encore", "Numb", "Jay‐Z & Linkin Park", 90),
+            new MusicBrainzRecording("yesterday-live", "Yesterday", "The Beatles", 80));
+
+    assertThat(BatchedRecordingSearch.match(tracks, results))
+            .containsExactly("halo", "numb-encore", "yesterday", null);
+  }
+}
@@ -0,0 +1,119 @@
+package com.gahan.song.picker.service;
+
+import com.gahan.song.picker.metrics.PipelineMetrics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpotifyTokenManagerTests {
+
+  private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+  private final AtomicInteger fetches = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private volatile long expiresIn = 3600;
+  private volatile int failFrom = Integer.MAX_VALUE;
+
+  private final SpotifyTokenManager manager = new SpotifyTokenManager(scheduler);
+
+  SpotifyTokenManagerTests() {
+    scheduler.setRemoveOnCancelPolicy(true);
+    ReflectionTestUtils.setField(manager, "clientId", "id");
+    ReflectionTestUtils.setField(manager, "clientSecret", "secret");
+    ReflectionTestUtils.setField(manager, "accountsUrl", "http://accounts.test");
+    ReflectionTestUtils.setField(manager, "refreshMargin", Duration.ofMinutes(5));
+    ReflectionTestUtils.setField(manager, "metrics", new PipelineMetrics() {
+      @Override
+      public <T> T time(String stage, Supplier<T> work) {
+        return work.get();
+      }
+    });
+    ReflectionTestUtils.setField(manager, "restTemplate", new RestTemplate() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> ResponseEntity<T> postForEntity(String url, Object request, Class<T> responseType,
+                                                 Object... uriVariables) {
+        int fetch = fetches.incrementAndGet();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (fetch >= failFrom) {
+          throw new RestClientException("accounts service down");
+        }
+        return (ResponseEntity<T>) ResponseEntity.ok(Map.of("access_token", "token-" + fetch, "expires_in", expiresIn));
+      }
+    });
+  }
+
+  @AfterEach
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  void concurrentCallersShareOneFetch() {
+    List<CompletableFuture<String>> callers = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      callers.add(CompletableFuture.supplyAsync(manager::getToken));
+    }
+    while (fetches.get() == 0) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+
+    assertThat(callers).allSatisfy(caller -> assertThat(caller.join()).isEqualTo("token-1"));
+    assertThat(fetches).hasValue(1);
+    assertThat(scheduler.getQueue()).hasSize(1);
+  }
+
+  @Test
+  void invalidatedTokenIsRefreshedWithOneBackgroundRefreshPending() {
+    release.countDown();
+    assertThat(manager.getToken()).isEqualTo("token-1");
+
+    manager.invalidate("token-1");
+    assertThat(manager.getToken()).isEqualTo("token-2");
+    manager.invalidate("token-1");
+    assertThat(manager.getToken()).isEqualTo("token-2");
+
+    assertThat(fetches).hasValue(2);
+    assertThat(scheduler.getQueue()).hasSize(1);
+  }
+
+  @Test
+  void failedBackgroundRefreshIsRetried() throws InterruptedException {
+    release.countDown();
+    // A lifetime this short schedules the background refresh straight away.
+    expiresIn = 0;
+    failFrom = 2;
+    assertThat(manager.getToken()).isEqualTo("token-1");
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (fetches.get() < 2 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(100);
+    assertThat(fetches).hasValue(2);
+    assertThat(scheduler.getQueue()).hasSize(1);
+    assertThat(((Delayed) scheduler.getQueue().peek()).getDelay(TimeUnit.MILLISECONDS)).isBetween(500L, 1000L);
+  }
+}
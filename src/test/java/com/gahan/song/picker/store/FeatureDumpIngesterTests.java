@@ -0,0 +1,86 @@
+package com.gahan.song.picker.store;
+
+import com.gahan.song.picker.json.AcousticBrainzDecoders;
+import com.gahan.song.picker.model.AudioFeatures;
+import com.gahan.song.picker.model.LowLevelSummary;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeatureDumpIngesterTests {
+
+  // Two submissions, the lower one in A minor at 120 bpm.
+  private static final String TWO_SUBMISSIONS = "8f3471b5-7e6a-48da-86a9-c1c07a0f47ae";
+  private static final String TONAL_ONLY = "0a1b2c3d-4e5f-4a6b-8c7d-9e0f1a2b3c4d";
+  private static final String RHYTHM_WITHOUT_BPM = "ffffffff-0000-4000-8000-000000000001";
+  // Stored under a path longer than a ustar name field.
+  private static final String LONG_PATH = "12345678-9abc-4def-8123-456789abcdef";
+
+  @TempDir
+  static Path dir;
+
+  private static LocalFeatureStore store;
+  private static long written;
+
+  @BeforeAll
+  static void ingestSample() throws Exception {
+    // A chunk size of 2 spills several runs, so the merge is exercised.
+    FeatureDumpIngester ingester = new FeatureDumpIngester(2, dir);
+    try (InputStream tar = FeatureDumpIngesterTests.class.getResourceAsStream("/acousticbrainz/sample-lowlevel.tar")) {
+      ingester.addTar(tar);
+    }
+    written = ingester.write(dir.resolve("features.bin"));
+    store = LocalFeatureStore.open(dir.resolve("features.bin"));
+  }
+
+  @Test
+  void keepsOneRecordPerRecordingAndSkipsUnreadableDocuments() {
+    assertThat(written).isEqualTo(4);
+    assertThat(store.size()).isEqualTo(4);
+    assertThat(store.find(UUID.fromString(LONG_PATH))).isNotNull();
+  }
+
+  @Test
+  void lowestSubmissionWins() {
+    LowLevelSummary summary = store.find(UUID.fromString(TWO_SUBMISSIONS)).toSummary();
+
+    assertThat(summary.bpm()).isEqualTo(120.0);
+    assertThat(summary.key()).isEqualTo("A");
+    assertThat(summary.scale()).isEqualTo("minor");
+  }
+
+  @Test
+  void featuresMatchTheOnlineMapping() throws Exception {
+    assertThat(store.features(TWO_SUBMISSIONS)).isEqualTo(online("""
+        {"rhythm": {"bpm": 120.0}, "tonal": {"key_key": "A", "key_scale": "minor"}}
+        """));
+    assertThat(store.features(TONAL_ONLY)).isEqualTo(online("""
+        {"tonal": {"key_key": "C", "key_scale": "major"}}
+        """));
+    assertThat(store.features(RHYTHM_WITHOUT_BPM)).isEqualTo(online("""
+        {"rhythm": {"beats_count": 10}}
+        """));
+  }
+
+  @Test
+  void missingRecordingsAreNull() {
+    assertThat(store.features("00000000-0000-4000-8000-000000000000")).isNull();
+    assertThat(store.features("deadbeef-0000-4000-8000-00000000000e")).isNull();
+    assertThat(store.features("not-a-uuid")).isNull();
+  }
+
+  private static AudioFeatures online(String json) throws Exception {
+    return AcousticBrainzDecoders.LOW_LEVEL
+            .decode(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))
+            .toAudioFeatures();
+  }
+}
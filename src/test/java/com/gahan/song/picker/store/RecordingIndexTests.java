@@ -0,0 +1,65 @@
+package com.gahan.song.picker.store;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordingIndexTests {
+
+  @TempDir
+  static Path dir;
+
+  private static RecordingIndex index;
+
+  @BeforeAll
+  static void buildSampleIndex() throws Exception {
+    // A chunk size of 3 spills several runs, so the merge is exercised.
+    RecordingIndexBuilder builder = new RecordingIndexBuilder(3, dir);
+    builder.addExport(Path.of(RecordingIndexTests.class.getResource("/musicbrainz").toURI()));
+    builder.addTsv(Path.of(RecordingIndexTests.class.getResource("/musicbrainz/extra-recordings.tsv").toURI()));
+    builder.write(dir.resolve("recordings.bin"));
+    index = RecordingIndex.open(dir.resolve("recordings.bin"));
+  }
+
+  @Test
+  void indexesDistinctRecordingsFromExportAndTsv() {
+    // Ten export rows, one with an invalid MBID and one a second "Yesterday", plus two TSV rows.
+    assertThat(index.size()).isEqualTo(10);
+  }
+
+  @Test
+  void exactMatchKeepsTheFirstRecordingOfADuplicateTitle() {
+    assertThat(index.resolve("Yesterday", "The Beatles"))
+            .isEqualTo(new RecordingMatch("b1a9c0e9-d987-4042-ae91-78d6a3267d69", 1.0));
+  }
+
+  @Test
+  void normalizesSpotifyVersionSuffixesAndFeaturedArtists() {
+    assertThat(index.resolve("Let It Be - Remastered 2009", "Beatles").confidence()).isEqualTo(1.0);
+    assertThat(index.resolve("Get Lucky (feat. Pharrell Williams)", "Daft Punk"))
+            .isEqualTo(new RecordingMatch("3f2e1d0c-0000-4000-8000-000000000007", 1.0));
+    assertThat(index.resolve("HALO", "Beyonce").mbid()).isEqualTo("3f2e1d0c-0000-4000-8000-000000000006");
+    assertThat(index.resolve("Dont Stop Me Now", "Queen").confidence()).isEqualTo(1.0);
+  }
+
+  @Test
+  void fuzzyMatchesScoreBelowExactOnes() {
+    RecordingMatch misspeltArtist = index.resolve("Hey Jude", "Beatls");
+    RecordingMatch misspeltTitle = index.resolve("Bohemian Rapsody", "Queen");
+
+    assertThat(misspeltArtist.mbid()).isEqualTo("3f2e1d0c-0000-4000-8000-000000000003");
+    assertThat(misspeltArtist.confidence()).isBetween(0.8, 0.99);
+    assertThat(misspeltTitle.mbid()).isEqualTo("3f2e1d0c-0000-4000-8000-000000000004");
+    assertThat(misspeltTitle.confidence()).isBetween(0.8, 0.99);
+  }
+
+  @Test
+  void unknownArtistsDoNotMatch() {
+    assertThat(index.resolve("Yesterday", "Completely Unknown Band")).isNull();
+    assertThat(index.resolve("", "Queen")).isNull();
+  }
+}